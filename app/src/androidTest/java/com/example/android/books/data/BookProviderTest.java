@@ -0,0 +1,228 @@
+package com.example.android.books.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookStockEntry;
+import com.example.android.books.data.BookContract.BookTagEntry;
+import com.example.android.books.data.BookContract.LocationEntry;
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.TagEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the writes of {@link BookProvider} against the real database, through the content
+ * resolver the way the app sends them. Every test works on books, tags and locations of its
+ * own and deletes them afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookProviderTest {
+    private ContentResolver mResolver;
+    private final ArrayList<Uri> mBookUris = new ArrayList<>();
+    private final ArrayList<Uri> mTagUris = new ArrayList<>();
+    private final ArrayList<Uri> mLocationUris = new ArrayList<>();
+
+    @Before
+    public void getResolver() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+    }
+
+    @After
+    public void deleteBooks() {
+        for (Uri bookUri : mBookUris) {
+            mResolver.delete(bookUri, null, null);
+        }
+        for (Uri tagUri : mTagUris) {
+            mResolver.delete(tagUri, null, null);
+        }
+        // Only empty locations can go, so after the books.
+        for (Uri locationUri : mLocationUris) {
+            mResolver.delete(locationUri, null, null);
+        }
+    }
+
+    @Test
+    public void archive_restoreBringsBackTagsAndLedger() {
+        Uri bookUri = insertBook(2);
+        long id = ContentUris.parseId(bookUri);
+        ContentValues tag = new ContentValues();
+        tag.put(TagEntry.COLUMN_TAG_NAME, "Test tag " + System.nanoTime());
+        Uri tagUri = mResolver.insert(TagEntry.CONTENT_URI, tag);
+        assertNotNull(tagUri);
+        mTagUris.add(tagUri);
+        ContentValues bookTag = new ContentValues();
+        bookTag.put(BookTagEntry.COLUMN_BOOK_TAG_TAG_ID, ContentUris.parseId(tagUri));
+        assertNotNull(mResolver.insert(BookEntry.buildTagsUri(id), bookTag));
+        // Sell out, so the book has a sale in its ledger.
+        ContentValues soldOut = new ContentValues();
+        soldOut.put(BookEntry.COLUMN_BOOK_QUANTITY, 0);
+        assertEquals(1, mResolver.update(bookUri, soldOut, null, null));
+        int movements = count(BookEntry.buildMovementsUri(id));
+
+        SQLiteDatabase database = BookDbHelper.getInstance(
+                InstrumentationRegistry.getTargetContext()).getWritableDatabase();
+        database.beginTransaction();
+        try {
+            BookArchive.archive(database, new long[] { id });
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertEquals(0, count(BookEntry.buildMovementsUri(id)));
+        assertEquals(0, count(BookEntry.buildTagsUri(id)));
+
+        // Editing the archived book brings it back.
+        ContentValues price = new ContentValues();
+        price.put(BookEntry.COLUMN_BOOK_PRICE, 12);
+        assertEquals(1, mResolver.update(bookUri, price, null, null));
+
+        assertEquals(movements, count(BookEntry.buildMovementsUri(id)));
+        assertEquals(tag.getAsString(TagEntry.COLUMN_TAG_NAME),
+                queryString(BookEntry.buildTagsUri(id), TagEntry.COLUMN_TAG_NAME));
+        assertEquals(0, queryInt(bookUri, BookEntry.COLUMN_BOOK_QUANTITY));
+        assertEquals(12, queryInt(bookUri, BookEntry.COLUMN_BOOK_PRICE));
+    }
+
+    @Test
+    public void batch_keepsWritesNextToANoOpStockWrite() throws Exception {
+        Uri bookUri = insertBook(3);
+        long id = ContentUris.parseId(bookUri);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        // The book's whole stock is at the default location already.
+        operations.add(ContentProviderOperation.newUpdate(
+                LocationEntry.buildBookUri(LocationEntry.DEFAULT_LOCATION_ID, id))
+                .withValue(BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY, 3)
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(bookUri)
+                .withValue(BookEntry.COLUMN_BOOK_PRICE, 20)
+                .build());
+        ContentProviderResult[] results =
+                mResolver.applyBatch(BookContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(0, (int) results[0].count);
+        assertEquals(1, (int) results[1].count);
+        assertEquals(20, queryInt(bookUri, BookEntry.COLUMN_BOOK_PRICE));
+        assertEquals(3, queryInt(bookUri, BookEntry.COLUMN_BOOK_QUANTITY));
+    }
+
+    @Test
+    public void update_takesALowerTotalFromTheOtherLocations() {
+        Uri bookUri = insertBook(0);
+        long id = ContentUris.parseId(bookUri);
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_NAME, "Test location " + System.nanoTime());
+        Uri locationUri = mResolver.insert(LocationEntry.CONTENT_URI, location);
+        assertNotNull(locationUri);
+        mLocationUris.add(locationUri);
+        long locationId = ContentUris.parseId(locationUri);
+        // All of the book's units are away from the default location.
+        ContentValues stock = new ContentValues();
+        stock.put(BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY, 4);
+        assertEquals(1, mResolver.update(LocationEntry.buildBookUri(locationId, id), stock,
+                null, null));
+
+        // The editor only knows the total.
+        ContentValues values = new ContentValues();
+        values.put(BookEntry.COLUMN_BOOK_QUANTITY, 1);
+        assertEquals(1, mResolver.update(bookUri, values, null, null));
+
+        assertEquals(1, queryInt(bookUri, BookEntry.COLUMN_BOOK_QUANTITY));
+        assertEquals(1, queryInt(LocationEntry.buildBookUri(locationId, id),
+                BookEntry.COLUMN_BOOK_QUANTITY));
+    }
+
+    @Test
+    public void upsert_recordsALowerQuantityAsAnAdjustment() {
+        Uri bookUri = insertBook(5);
+        ContentValues values = bookValues(queryString(bookUri,
+                BookEntry.COLUMN_BOOK_PRODUCT_NAME), 2);
+        Uri upsertedUri = mResolver.insert(BookEntry.CONTENT_UPSERT_URI, values);
+
+        assertNotNull(upsertedUri);
+        assertEquals(ContentUris.parseId(bookUri), ContentUris.parseId(upsertedUri));
+        assertEquals(BookContract.UPSERT_OUTCOME_UPDATED,
+                upsertedUri.getQueryParameter(BookContract.QUERY_PARAMETER_UPSERT_OUTCOME));
+        assertEquals(2, queryInt(bookUri, BookEntry.COLUMN_BOOK_QUANTITY));
+
+        // Newest movement first.
+        Cursor cursor = mResolver.query(BookEntry.buildMovementsUri(ContentUris.parseId(bookUri)),
+                new String[] {
+                        MovementEntry.COLUMN_MOVEMENT_KIND,
+                        MovementEntry.COLUMN_MOVEMENT_DELTA
+                },
+                null, null, MovementEntry._ID + " DESC");
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(MovementEntry.KIND_ADJUSTMENT, cursor.getInt(0));
+            assertEquals(-3, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Insert a book with a name no other test uses, and delete it after the test.
+     */
+    private Uri insertBook(int quantity) {
+        Uri bookUri = mResolver.insert(BookEntry.CONTENT_URI,
+                bookValues("Test book " + System.nanoTime(), quantity));
+        assertNotNull(bookUri);
+        mBookUris.add(bookUri);
+        return bookUri;
+    }
+
+    private static ContentValues bookValues(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(BookEntry.COLUMN_BOOK_PRODUCT_NAME, name);
+        values.put(BookEntry.COLUMN_BOOK_PRICE, 10);
+        values.put(BookEntry.COLUMN_BOOK_QUANTITY, quantity);
+        values.put(BookEntry.COLUMN_BOOK_SUPPLIER_NAME, "Test supplier");
+        return values;
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int queryInt(Uri uri, String column) {
+        return Integer.parseInt(queryString(uri, column));
+    }
+
+    private String queryString(Uri uri, String column) {
+        Cursor cursor = mResolver.query(uri, new String[] { column }, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
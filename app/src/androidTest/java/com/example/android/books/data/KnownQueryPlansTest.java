@@ -0,0 +1,142 @@
+package com.example.android.books.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.books.LowStockJobService;
+import com.example.android.books.data.BookContract.ArchivedBookEntry;
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.PriceEntry;
+import com.example.android.books.data.BookContract.SupplierReportEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.books.data.QueryPlanAssert.assertIndexed;
+
+/**
+ * Checks that the queries the app itself sends to {@link BookProvider} use an index, except
+ * where reading everything is the point.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KnownQueryPlansTest {
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void openDatabase() {
+        mDatabase = BookDbHelper.getInstance(InstrumentationRegistry.getTargetContext())
+                .getReadableDatabase();
+    }
+
+    @Test
+    public void catalog_walksNameIndexInOrder() {
+        assertIndexed(mDatabase, books(BookEntry.CATALOG_PROJECTION, null,
+                BookEntry.CATALOG_SORT_ORDER));
+    }
+
+    @Test
+    public void catalogSearch_filtersWhileWalkingNameIndex() {
+        // LIKE matches inside titles, so every name is read, but never sorted.
+        assertIndexed(mDatabase, books(BookEntry.CATALOG_PROJECTION,
+                BookEntry.COLUMN_BOOK_PRODUCT_NAME + " LIKE ? ESCAPE '\\'",
+                BookEntry.CATALOG_SORT_ORDER));
+    }
+
+    @Test
+    public void catalogSections_groupOverNameIndex() {
+        // Grouping and ordering by the leading letter needs b-trees of the letters, not of
+        // the books.
+        assertIndexed(mDatabase, CatalogSectionCounter.buildQueryString(null),
+                "USE TEMP B-TREE FOR GROUP BY", "USE TEMP B-TREE FOR ORDER BY");
+    }
+
+    @Test
+    public void locationCatalog_usesStockKeyAndBookRowIds() {
+        // Only the books of the location are sorted, however many locations there are.
+        assertIndexed(mDatabase, LocationStock.buildCatalogQueryString(
+                BookEntry.CATALOG_PROJECTION, null, BookEntry.CATALOG_SORT_ORDER),
+                "USE TEMP B-TREE FOR ORDER BY");
+    }
+
+    @Test
+    public void bookDetail_usesPrimaryKey() {
+        assertIndexed(mDatabase, books(BookEntry.DETAIL_PROJECTION, BookEntry._ID + "=?", null));
+    }
+
+    @Test
+    public void lowStock_usesLowSinceIndex() {
+        assertIndexed(mDatabase, books(BookEntry.LOW_STOCK_PROJECTION,
+                LowStockJobService.buildSelection(""), BookEntry.COLUMN_BOOK_LOW_SINCE));
+    }
+
+    @Test
+    public void lowStockAfterSeenBooks_usesLowSinceIndex() {
+        assertIndexed(mDatabase, books(BookEntry.LOW_STOCK_PROJECTION,
+                LowStockJobService.buildSelection("1,2"), BookEntry.COLUMN_BOOK_LOW_SINCE));
+    }
+
+    @Test
+    public void archivedBookDetail_usesPrimaryKey() {
+        assertIndexed(mDatabase, SQLiteQueryBuilder.buildQueryString(false,
+                ArchivedBookEntry.TABLE_NAME, BookEntry.DETAIL_PROJECTION, BookEntry._ID + "=?",
+                null, null, null, null));
+    }
+
+    @Test
+    public void coldBooks_readInOrderFromColdIndex() {
+        assertIndexed(mDatabase, BookArchive.getColdBooksQueryString());
+    }
+
+    @Test
+    public void mostValuable_readsStockValueIndexBackwards() {
+        assertIndexed(mDatabase, SQLiteQueryBuilder.buildQueryString(false,
+                BookEntry.TABLE_NAME, BookEntry.CATALOG_PROJECTION, null, null, null,
+                BookEntry.STOCK_VALUE_SORT_ORDER, "0,100"));
+    }
+
+    @Test
+    public void stockValueRange_usesStockValueIndex() {
+        assertIndexed(mDatabase, books(BookEntry.CATALOG_PROJECTION,
+                BookEntry.COLUMN_BOOK_STOCK_VALUE + ">=?", BookEntry.STOCK_VALUE_SORT_ORDER));
+    }
+
+    @Test
+    public void supplierReport_groupsThroughCoveringIndex() {
+        assertIndexed(mDatabase, SupplierReport.buildQueryString(
+                SupplierReportEntry.buildPageUri(0, 50), null, null, null));
+    }
+
+    @Test
+    public void supplierReportByAggregate_onlySortsTheGroups() {
+        assertIndexed(mDatabase, SupplierReport.buildQueryString(
+                SupplierReportEntry.buildPageUri(0, 50), null, null,
+                SupplierReportEntry.COLUMN_STOCK_VALUE + " DESC"),
+                "USE TEMP B-TREE FOR ORDER BY");
+    }
+
+    @Test
+    public void bookMovements_useBookIndex() {
+        assertIndexed(mDatabase, SQLiteQueryBuilder.buildQueryString(false,
+                MovementEntry.TABLE_NAME, null, MovementEntry.COLUMN_MOVEMENT_BOOK_ID + "=?",
+                null, null, MovementEntry._ID, null));
+    }
+
+    @Test
+    public void priceChart_readsRangeOfRollupKey() {
+        assertIndexed(mDatabase, PriceHistory.getChartQueryString(PriceEntry.LEVEL_MONTH));
+    }
+
+    @Test
+    public void rawPriceChart_usesBookTimeIndex() {
+        assertIndexed(mDatabase, PriceHistory.getChartQueryString(PriceEntry.LEVEL_RAW));
+    }
+
+    private static String books(String[] projection, String selection, String sortOrder) {
+        return SQLiteQueryBuilder.buildQueryString(false, BookEntry.TABLE_NAME, projection,
+                selection, null, null, sortOrder, null);
+    }
+}
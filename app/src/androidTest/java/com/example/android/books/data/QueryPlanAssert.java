@@ -0,0 +1,49 @@
+package com.example.android.books.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Test helper that fails when a query plan scans a table or sorts without an index.
+ */
+public final class QueryPlanAssert {
+    // Only static helpers.
+    private QueryPlanAssert() {}
+
+    /**
+     * Fail unless every step of the query's plan uses an index.
+     *
+     * @param sql      The SQL of the query, with placeholders for the arguments
+     * @param expected Plan lines the query is known to need, such as "SCAN TABLE books"
+     *                 for a query that reads the whole catalog. Matched by prefix, so they
+     *                 hold for old and new SQLite plan formats alike.
+     */
+    public static void assertIndexed(SQLiteDatabase database, String sql, String... expected) {
+        List<String> details = QueryPlanChecker.explain(database, sql);
+        List<String> unexpected = new ArrayList<>();
+        for (String problem : QueryPlanChecker.findProblems(details)) {
+            if (!isExpected(problem, expected)) {
+                unexpected.add(problem);
+            }
+        }
+        if (!unexpected.isEmpty()) {
+            fail("Unindexed plan " + unexpected + " for " + sql + ", full plan " + details
+                    + ", expected " + Arrays.toString(expected));
+        }
+    }
+
+    private static boolean isExpected(String problem, String[] expected) {
+        String normalized = problem.replace("SCAN TABLE ", "SCAN ");
+        for (String line : expected) {
+            if (normalized.startsWith(line.replace("SCAN TABLE ", "SCAN "))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.android.books;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.android.books.data.BookContract;
+import com.example.android.books.data.BookContract.ArchivedBookEntry;
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the cold books to the archive, see {@link ArchivedBookEntry}, so the books table stays
+ * the size of the stock that is actually kept.
+ *
+ * Books turn cold slowly, so the job runs once a day while the device is idle and charging.
+ * It archives one batch per transaction until no cold books are left, which keeps every
+ * write lock short even the first time it runs on a large catalog.
+ */
+public class ArchiveJobService extends JobService {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ArchiveJobService.class.getSimpleName();
+
+    /** ID of the job, unique within the app */
+    private static final int JOB_ID = 2;
+
+    /** How often the job runs */
+    private static final long PERIOD_MS = TimeUnit.DAYS.toMillis(1);
+
+    private Thread mWorker;
+
+    /**
+     * Schedule the job, unless it is scheduled already. Scheduling a periodic job again would
+     * start its period over, and the app may well start more than once a day.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, ArchiveJobService.class))
+                .setPeriodic(PERIOD_MS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean finished = false;
+                try {
+                    finished = archiveColdBooks();
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Archiving failed", e);
+                }
+                jobFinished(params, !finished);
+            }
+        }, LOG_TAG);
+        mWorker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Every batch is committed on its own, the next run carries on where this one stopped.
+        mWorker.interrupt();
+        return true;
+    }
+
+    /**
+     * Archive batches of cold books until there are none left.
+     *
+     * @return false if the job was stopped first
+     */
+    private boolean archiveColdBooks() {
+        int total = 0;
+        while (!Thread.interrupted()) {
+            Bundle result = getContentResolver().call(BookEntry.CONTENT_URI,
+                    BookContract.METHOD_ARCHIVE, null, null);
+            int archived = result.getInt(BookContract.EXTRA_ARCHIVED);
+            total += archived;
+            if (archived < ArchivedBookEntry.BATCH_SIZE) {
+                Log.i(LOG_TAG, "Archived " + total + " books");
+                return true;
+            }
+        }
+        return false;
+    }
+}
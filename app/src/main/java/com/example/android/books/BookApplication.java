@@ -0,0 +1,38 @@
+package com.example.android.books;
+
+import android.app.Application;
+import android.content.Context;
+
+import com.example.android.books.data.DatabaseAccessMonitor;
+import com.example.android.books.data.DatabaseWarmUp;
+import com.example.android.books.data.QueryPlanChecker;
+import com.example.android.books.data.StartupTrace;
+
+/**
+ * Application class of the Books app. Starts the database warm-up as soon as the process
+ * starts, so the catalog doesn't pay for opening the database on its first launch, and
+ * makes sure the low stock alerts and the archiving of cold books are scheduled.
+ */
+public class BookApplication extends Application {
+
+    @Override
+    protected void attachBaseContext(Context base) {
+        super.attachBaseContext(base);
+        // Content providers are created right after this, so start the clock here.
+        StartupTrace.markProcessStart();
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            // Report database work on the UI thread before users notice the jank.
+            DatabaseAccessMonitor.setPolicy(DatabaseAccessMonitor.Policy.LOG);
+            // Report queries that scan or sort large tables without an index.
+            QueryPlanChecker.setEnabled(true);
+        }
+        DatabaseWarmUp.start(this);
+        LowStockJobService.schedule(this);
+        ArchiveJobService.schedule(this);
+    }
+}
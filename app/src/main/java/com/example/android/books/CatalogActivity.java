@@ -1,41 +1,64 @@
 package com.example.android.books;
 
 import android.app.LoaderManager;
-import android.content.ContentUris;
+import android.app.SearchManager;
+import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.Toast;
 
 import com.example.android.books.data.BookContract.BookEntry;
 import com.example.android.books.data.BookDbHelper;
+import com.example.android.books.data.CatalogGenerator;
+import com.example.android.books.data.CatalogSeeder;
+import com.example.android.books.data.CatalogSnapshot;
 
 /**
  * Displays list of books that were entered and stored in the app.
  */
-public class CatalogActivity extends AppCompatActivity  implements LoaderManager.LoaderCallbacks<Cursor> {
+public class CatalogActivity extends AppCompatActivity  implements LoaderManager.LoaderCallbacks<CatalogSnapshot> {
 
     // Identifier for the pat data loader */
     private static final int BOOK_LOADER = 0;
 
+    /** Identifier for the loader of the catalog snapshot saved on disk */
+    private static final int SAVED_CATALOG_LOADER = 1;
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogActivity.class.getSimpleName();
+
+    /** Seed and size of the catalog the debug menu generates */
+    private static final long GENERATED_CATALOG_SEED = 42;
+    private static final int GENERATED_CATALOG_SIZE = 10000;
+
+    /** Loader argument holding the text the catalog is filtered by */
+    private static final String ARG_TITLE_FILTER = "title_filter";
+
     // Adapter for the ListView
-    BookCursorAdapter mCursorAdapter;
+    CatalogAdapter mCatalogAdapter;
 
     /** Database helper that will provide us access to the database */
     private BookDbHelper mDbHelper;
 
+    /** Whether the list shows live data, which the saved snapshot must not replace */
+    private boolean mCatalogLoaded;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -60,36 +83,71 @@ public class CatalogActivity extends AppCompatActivity  implements LoaderManager
         View emptyView = findViewById(R.id.empty_view);
         bookListView.setEmptyView(emptyView);
 
-        // Setup an Adapter to create a list item for each row of book data in the Cursor
-        // There is no book data yet (until the loader finishes) so pass in null for the Cursor
-        mCursorAdapter = new BookCursorAdapter(this, null);
-        bookListView.setAdapter(mCursorAdapter);
+        // Setup an Adapter to create a list item for each row of book data in the snapshot
+        // There is no book data yet (until the loader finishes) so the list starts out empty
+        mCatalogAdapter = new CatalogAdapter(this);
+        bookListView.setAdapter(mCatalogAdapter);
+
+        // Rows that scroll off screen no longer need their cover, drop the pending load.
+        bookListView.setRecyclerListener(new AbsListView.RecyclerListener() {
+            @Override
+            public void onMovedToScrapHeap(View view) {
+                mCatalogAdapter.onViewRecycled(view);
+            }
+        });
 
         // Setup item click listener
         bookListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                // Create new intent to go to {@link EditorActivity}
-                Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
-
-                // Form the content URI that represents the specific book that was clicked on,
-                // by appending the "id" (passed as input to this methdo) onto the
-                // {@link BookEntry#CONTENT_URI}.
-                // For example, the URI would be "content://com.example.android.books/books/2"
-                // For example, the URI would be "content://com.example.android.inventory/books/2"
-                // if the book with ID 2 was clicked on.
-                Uri currentBookUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, id);
-
-                // Set the UR on the data fiedl of the intent
-                intent.setData(currentBookUri);
+                // Create new intent to go to {@link EditorActivity}, with the content URI
+                // that represents the specific book that was clicked on,
+                // for example "content://com.example.android.books/books/2".
+                // The row's values go along, so the editor shows them on its first frame.
+                Intent intent = EditorActivity.newIntent(CatalogActivity.this,
+                        mCatalogAdapter.getSnapshot(), position);
 
                 // lauch the {@link EditorActivity} to display the data for the current book.
                 startActivity(intent);
             }
         });
 
+        // Draw the catalog from the snapshot saved on disk by the provider, as long as no
+        // change was committed since. Reading the file is quick, but still off the main
+        // thread, and the live data replaces it. After a configuration change the live
+        // loader already has its data.
+        if (savedInstanceState == null) {
+            getLoaderManager().initLoader(SAVED_CATALOG_LOADER, null, this);
+        }
+
         // Kick off the loader method
         getLoaderManager().initLoader(BOOK_LOADER, null, this);
+
+        handleSearchIntent(getIntent());
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        handleSearchIntent(intent);
+    }
+
+    /**
+     * Respond to the search box: a picked suggestion opens that book, a submitted search
+     * narrows the catalog down to the matching titles.
+     */
+    private void handleSearchIntent(Intent intent) {
+        if (Intent.ACTION_VIEW.equals(intent.getAction()) && intent.getData() != null) {
+            // The suggestion's data is the content URI of the book, e.g. ".../books/2"
+            Intent editorIntent = new Intent(this, EditorActivity.class);
+            editorIntent.setData(intent.getData());
+            startActivity(editorIntent);
+        } else if (Intent.ACTION_SEARCH.equals(intent.getAction())) {
+            Bundle args = new Bundle();
+            args.putString(ARG_TITLE_FILTER, intent.getStringExtra(SearchManager.QUERY));
+            getLoaderManager().restartLoader(BOOK_LOADER, args, this);
+        }
     }
 
 
@@ -132,6 +190,28 @@ public class CatalogActivity extends AppCompatActivity  implements LoaderManager
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Hook the search box up to the suggestions of the provider
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        SearchManager searchManager = (SearchManager) getSystemService(SEARCH_SERVICE);
+        searchView.setSearchableInfo(searchManager.getSearchableInfo(getComponentName()));
+
+        // Closing the search box shows the whole catalog again
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                getLoaderManager().restartLoader(BOOK_LOADER, null, CatalogActivity.this);
+                return true;
+            }
+        });
+
+        menu.findItem(R.id.action_generate_catalog).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -144,6 +224,10 @@ public class CatalogActivity extends AppCompatActivity  implements LoaderManager
             case R.id.action_insert_dummy_data:
                 insertBook();
                 return true;
+            // Respond to a click on the debug "Generate books" menu option
+            case R.id.action_generate_catalog:
+                generateCatalog();
+                return true;
             // Respond to a click on the "Delete all entries" menu option
             case R.id.action_delete_all_entries:
                 deleteAllBooks();
@@ -152,6 +236,33 @@ public class CatalogActivity extends AppCompatActivity  implements LoaderManager
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Insert a synthetic catalog for load testing, on a background thread. The seed is fixed,
+     * so every run inserts the same books.
+     */
+    private void generateCatalog() {
+        final ContentResolver resolver = getContentResolver();
+        final Context appContext = getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtime();
+                final int inserted = CatalogSeeder.insert(resolver,
+                        new CatalogGenerator(GENERATED_CATALOG_SEED, GENERATED_CATALOG_SIZE));
+                final long elapsed = SystemClock.elapsedRealtime() - start;
+                Log.i(LOG_TAG, "Generated " + inserted + " books in " + elapsed + " ms");
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(appContext, appContext.getString(
+                                R.string.generate_catalog_done, inserted, elapsed),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        }, "CatalogGenerator").start();
+    }
+
     /**
      * Helper method to delete all books in the database.
      */
@@ -161,35 +272,39 @@ public class CatalogActivity extends AppCompatActivity  implements LoaderManager
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // Define a projection that specifies the columns from the table we care about.
-        String[] projection = {
-                BookEntry._ID,
-                BookEntry.COLUMN_BOOK_PRODUCT_NAME,
-                BookEntry.COLUMN_BOOK_PRICE,
-                BookEntry.COLUMN_BOOK_QUANTITY
-        };
-
-        // This loader will execute the ContentProvider's query method
-        // on a background thread.
-        return new CursorLoader(this,           // Parent activity context
-                BookEntry.CONTENT_URI,                  // Provider content URI to query
-                projection,                             // Columns to incldue in the resulting Cursor
-                null,                          // No selection clause
-                null,                       // No selection arguments
-                null);                         // Default sort order
+    public Loader<CatalogSnapshot> onCreateLoader(int id, Bundle args) {
+        if (id == SAVED_CATALOG_LOADER) {
+            return new SavedCatalogLoader(this);
+        }
+        // This loader will execute the ContentProvider's query method on a background
+        // thread, with the catalog projection the start-up warm-up already compiled,
+        // and pack the rows into a snapshot.
+        String titleFilter = args == null ? null : args.getString(ARG_TITLE_FILTER);
+        return new CatalogSnapshotLoader(this, titleFilter);
     }
 
     @Override
-    public  void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link BookCursorAdapter} with this new cursor
+    public  void onLoadFinished(Loader<CatalogSnapshot> loader, CatalogSnapshot data) {
+        if (loader.getId() == SAVED_CATALOG_LOADER) {
+            // Only worth showing until the live data is there.
+            if (!mCatalogLoaded && data != null) {
+                mCatalogAdapter.setSnapshot(data);
+            }
+            return;
+        }
+        // Update {@link CatalogAdapter} with this new snapshot
         // containing updated book data
-        mCursorAdapter.swapCursor(data);
+        mCatalogLoaded = true;
+        mCatalogAdapter.setSnapshot(data);
+        getLoaderManager().destroyLoader(SAVED_CATALOG_LOADER);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<CatalogSnapshot> loader) {
+        if (loader.getId() == SAVED_CATALOG_LOADER) {
+            return;
+        }
         // Callback called when the data needs to be deleted.
-        mCursorAdapter.swapCursor(null);
+        mCatalogAdapter.setSnapshot(null);
     }
 }
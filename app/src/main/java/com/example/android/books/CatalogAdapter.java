@@ -0,0 +1,220 @@
+package com.example.android.books;
+
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.SectionIndexer;
+import android.widget.TextView;
+
+import com.example.android.books.data.CatalogSections;
+import com.example.android.books.data.CatalogSnapshot;
+import com.example.android.books.data.StartupTrace;
+
+/**
+ * {@link CatalogAdapter} is an adapter for a list or grid view that uses a
+ * {@link CatalogSnapshot} of book data as its data source. This adapter knows
+ * how to create list items for each row of book data in the snapshot.
+ *
+ * Binding a row reads straight from the snapshot's primitive arrays and formats numbers into
+ * buffers owned by the row, so scrolling doesn't allocate. The fast scroll sections are the
+ * snapshot's section index, so jumping to a letter is an array read.
+ */
+public class CatalogAdapter extends BaseAdapter implements SectionIndexer {
+    /** Enough characters for any int, including the sign */
+    static final int MAX_INT_CHARS = 11;
+
+    /** Whether the first bind of the process was traced already */
+    private static boolean sFirstBindTraced;
+
+    private final LayoutInflater mInflater;
+
+    /** Loads the cover thumbnails in the background */
+    private final CoverLoader mCoverLoader;
+
+    /** Text shown for books without a price, resolved once */
+    private final String mUnknownPrice;
+
+    /** The catalog currently shown */
+    private CatalogSnapshot mSnapshot = CatalogSnapshot.EMPTY;
+
+    /**
+     * Constructs a new {@link CatalogAdapter}.
+     *
+     * @param context The context
+     */
+    public CatalogAdapter(Context context) {
+        mInflater = LayoutInflater.from(context);
+        mCoverLoader = CoverLoader.getInstance(context);
+        mUnknownPrice = context.getString(R.string.unknown_price);
+    }
+
+    /**
+     * Show the given catalog, or an empty list for null.
+     */
+    public void setSnapshot(CatalogSnapshot snapshot) {
+        mSnapshot = snapshot == null ? CatalogSnapshot.EMPTY : snapshot;
+        notifyDataSetChanged();
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    @Override
+    public int getCount() {
+        return mSnapshot.getCount();
+    }
+
+    /**
+     * Returns the name of the book at the position. Not used while binding.
+     */
+    @Override
+    public Object getItem(int position) {
+        return mSnapshot.getName(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mSnapshot.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public Object[] getSections() {
+        return mSnapshot.getSections().getLabels();
+    }
+
+    @Override
+    public int getPositionForSection(int sectionIndex) {
+        CatalogSections sections = mSnapshot.getSections();
+        // Keep within the list, in case the books changed between the two loader queries.
+        return Math.min(sections.getPositionForSection(sectionIndex),
+                Math.max(0, mSnapshot.getCount() - 1));
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        return mSnapshot.getSections().getSectionForPosition(position);
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            // Inflate a list item view using the layout specified in list_item.xml
+            view = mInflater.inflate(R.layout.list_item, parent, false);
+            view.setTag(new ViewHolder(view));
+        }
+        bindView((ViewHolder) view.getTag(), position);
+        return view;
+    }
+
+    /**
+     * This method binds the book data at the given position to the list item views held by
+     * the holder.
+     */
+    private void bindView(ViewHolder holder, int position) {
+        long traceBegin = sFirstBindTraced ? 0 : StartupTrace.begin();
+        CatalogSnapshot snapshot = mSnapshot;
+
+        holder.nameTextView.setText(snapshot.getNamePool(),
+                snapshot.getNameStart(position), snapshot.getNameLength(position));
+
+        CatalogRowText text = holder.text;
+        text.bind(snapshot, position);
+
+        // If the book has no price, then use some default text
+        // that says "Unknown price", so the TextView isn't blank.
+        if (text.priceLength < 0) {
+            holder.priceTextView.setText(mUnknownPrice);
+        } else {
+            holder.priceTextView.setText(text.priceChars, 0, text.priceLength);
+        }
+        holder.quantityTextView.setText(text.quantityChars, 0, text.quantityLength);
+
+        // The cover is decoded in the background, this only starts (or reuses) the request.
+        mCoverLoader.load(holder.coverImageView, snapshot.getId(position),
+                snapshot.getCoverPath(position));
+
+        if (!sFirstBindTraced) {
+            sFirstBindTraced = true;
+            StartupTrace.end(StartupTrace.FIRST_BIND, traceBegin);
+        }
+    }
+
+    /**
+     * Cancel the pending cover load of a row that scrolled off screen.
+     *
+     * @param view The list item view that is being recycled
+     */
+    public void onViewRecycled(View view) {
+        mCoverLoader.cancel(((ViewHolder) view.getTag()).coverImageView);
+    }
+
+    /**
+     * Write the decimal digits of the value to the start of the buffer.
+     *
+     * @return the number of characters written
+     */
+    static int formatInt(int value, char[] buffer) {
+        if (value == 0) {
+            buffer[0] = '0';
+            return 1;
+        }
+        // Work on the negative value so Integer.MIN_VALUE doesn't overflow.
+        boolean negative = value < 0;
+        int remaining = negative ? value : -value;
+        int end = MAX_INT_CHARS;
+        while (remaining != 0) {
+            buffer[--end] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        }
+        if (negative) {
+            buffer[--end] = '-';
+        }
+        int length = MAX_INT_CHARS - end;
+        System.arraycopy(buffer, end, buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Views and text buffers of one list item, created once per inflated view.
+     */
+    private static class ViewHolder {
+        final TextView nameTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final ImageView coverImageView;
+        final CatalogRowText text = new CatalogRowText();
+
+        ViewHolder(View view) {
+            // Find individual views that we want to modify in the list item layout
+            nameTextView = (TextView) view.findViewById(R.id.name);
+            priceTextView = (TextView) view.findViewById(R.id.price);
+            quantityTextView = (TextView) view.findViewById(R.id.quantity);
+            coverImageView = (ImageView) view.findViewById(R.id.cover);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.android.books;
+
+import com.example.android.books.data.CatalogSnapshot;
+
+/**
+ * The number texts of one catalog row, formatted into buffers the row owns. Binding a row
+ * only overwrites the buffers, so scrolling through any number of rows doesn't allocate.
+ */
+final class CatalogRowText {
+    /** Price digits, valid up to {@link #priceLength} */
+    final char[] priceChars = new char[CatalogAdapter.MAX_INT_CHARS];
+
+    /** Quantity digits, valid up to {@link #quantityLength} */
+    final char[] quantityChars = new char[CatalogAdapter.MAX_INT_CHARS];
+
+    /** Length of the price, or -1 if the book has no price */
+    int priceLength;
+
+    /** Length of the quantity */
+    int quantityLength;
+
+    /**
+     * Format the numbers of the book at the position.
+     */
+    void bind(CatalogSnapshot snapshot, int position) {
+        int price = snapshot.getPrice(position);
+        priceLength = price == CatalogSnapshot.NO_PRICE
+                ? -1
+                : CatalogAdapter.formatInt(price, priceChars);
+        quantityLength = CatalogAdapter.formatInt(snapshot.getQuantity(position), quantityChars);
+    }
+}
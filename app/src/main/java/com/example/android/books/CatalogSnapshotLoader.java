@@ -0,0 +1,116 @@
+package com.example.android.books;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.books.data.BookContract;
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.CatalogSectionEntry;
+import com.example.android.books.data.CatalogSections;
+import com.example.android.books.data.CatalogSnapshot;
+
+/**
+ * Loader that queries the catalog on a background thread and packs it into a
+ * {@link CatalogSnapshot}. The cursor is closed right away; the loader watches the books
+ * URI itself and reloads when the catalog changes, at most once per change notification window.
+ * The catalog can be narrowed down to the titles containing a search text.
+ */
+public class CatalogSnapshotLoader extends AsyncTaskLoader<CatalogSnapshot> {
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final String mTitleFilter;
+    private CatalogSnapshot mSnapshot;
+    private boolean mObserverRegistered;
+
+    /**
+     * @param context     The context
+     * @param titleFilter Only load books whose title contains this text, or null for all
+     */
+    public CatalogSnapshotLoader(Context context, String titleFilter) {
+        super(context);
+        mTitleFilter = titleFilter;
+        // The provider announces changes once per window at most, reloading more often
+        // would only reload the same data.
+        setUpdateThrottle(BookContract.CHANGE_NOTIFICATION_WINDOW_MILLIS);
+    }
+
+    @Override
+    public CatalogSnapshot loadInBackground() {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (mTitleFilter != null) {
+            selection = BookEntry.COLUMN_BOOK_PRODUCT_NAME + " LIKE ? ESCAPE '\\'";
+            selectionArgs = new String[] { "%" + mTitleFilter
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_") + "%" };
+        }
+        Cursor cursor = getContext().getContentResolver().query(BookEntry.CONTENT_URI,
+                BookEntry.CATALOG_PROJECTION, selection, selectionArgs,
+                BookEntry.CATALOG_SORT_ORDER);
+        if (cursor == null) {
+            return CatalogSnapshot.EMPTY;
+        }
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = CatalogSnapshot.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        // The fast scroll sections come from the per-letter counts of the provider, with the
+        // same filter. A change between the two queries is caught up by the next load.
+        Cursor sectionCursor = getContext().getContentResolver().query(
+                CatalogSectionEntry.CONTENT_URI, null, selection, selectionArgs, null);
+        if (sectionCursor == null) {
+            return snapshot;
+        }
+        try {
+            return snapshot.withSections(CatalogSections.fromCursor(sectionCursor));
+        } finally {
+            sectionCursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(CatalogSnapshot snapshot) {
+        if (isReset()) {
+            return;
+        }
+        mSnapshot = snapshot;
+        if (isStarted()) {
+            super.deliverResult(snapshot);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(
+                    BookEntry.CONTENT_URI, true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mSnapshot != null) {
+            deliverResult(mSnapshot);
+        }
+        if (takeContentChanged() || mSnapshot == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mSnapshot = null;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.android.books;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads book cover thumbnails into {@link ImageView}s of the catalog list.
+ *
+ * Covers are decoded on a small background pool, downsampled with
+ * {@link BitmapFactory.Options#inSampleSize} to the size of a list row. Decoded thumbnails
+ * are kept in an LRU memory cache sized to a fraction of the heap, backed by a disk cache of
+ * pre-scaled thumbnails so a cover is only decoded at full size once.
+ *
+ * A loader makes thumbnails of one size only, so the memory cache is keyed by the cover path
+ * alone, and a bind that hits the cache allocates nothing.
+ */
+public class CoverLoader {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CoverLoader.class.getSimpleName();
+
+    /** Fraction of the maximum heap given to the memory cache */
+    private static final int MEMORY_CACHE_HEAP_DIVISOR = 8;
+
+    /** Name of the directory inside the app's cache directory holding the thumbnails */
+    private static final String THUMBNAIL_DIRECTORY = "cover_thumbnails";
+
+    /** Upper bound for the size of the thumbnail disk cache */
+    private static final long MAX_DISK_CACHE_BYTES = 16 * 1024 * 1024;
+
+    /** The disk cache is trimmed after this many thumbnails were written */
+    private static final int DISK_CACHE_TRIM_INTERVAL = 32;
+
+    /** Number of threads decoding covers */
+    private static final int DECODER_THREADS = 2;
+
+    private static CoverLoader sInstance;
+
+    private final ContentResolver mContentResolver;
+    private final File mThumbnailDirectory;
+    private final int mThumbnailSize;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(DECODER_THREADS);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int mThumbnailsWritten;
+
+    /**
+     * Returns the process wide cover loader, so that every list shares one memory cache.
+     */
+    public static synchronized CoverLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CoverLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private CoverLoader(Context context) {
+        mContentResolver = context.getContentResolver();
+        mThumbnailDirectory = new File(context.getCacheDir(), THUMBNAIL_DIRECTORY);
+        mThumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.cover_thumbnail_size);
+
+        // Size the cache in kilobytes so large heaps don't overflow the int counter.
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_CACHE_HEAP_DIVISOR);
+        mMemoryCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+    }
+
+    /**
+     * Show the cover of the given book in the view. Any request still pending for the view
+     * is cancelled first, because the view has been recycled for another row.
+     *
+     * @param view      The view of the row
+     * @param bookId    ID of the book
+     * @param coverPath The {@link BookEntry#COLUMN_BOOK_COVER_PATH} of the book, may be null
+     */
+    public void load(ImageView view, long bookId, String coverPath) {
+        if (coverPath == null) {
+            cancel(view);
+            view.setImageDrawable(null);
+            return;
+        }
+
+        String key = getCacheKey(coverPath);
+        CoverRequest pending = (CoverRequest) view.getTag(R.id.cover);
+        if (pending != null) {
+            if (pending.mKey.equals(key)) {
+                // The view is already waiting for this very cover.
+                return;
+            }
+            pending.cancel();
+        }
+
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            view.setTag(R.id.cover, null);
+            view.setImageBitmap(bitmap);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        CoverRequest request = new CoverRequest(view, bookId, key);
+        view.setTag(R.id.cover, request);
+        request.mFuture = mExecutor.submit(request);
+    }
+
+    /**
+     * Cancel the request pending for the view, if any. Called when a row is recycled.
+     */
+    public void cancel(ImageView view) {
+        CoverRequest pending = (CoverRequest) view.getTag(R.id.cover);
+        if (pending != null) {
+            pending.cancel();
+            view.setTag(R.id.cover, null);
+        }
+    }
+
+    /**
+     * Returns the memory cache key of a cover. Runs for every bind, so it must not allocate.
+     */
+    static String getCacheKey(String coverPath) {
+        return coverPath;
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps both dimensions of the decoded
+     * image at or above the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth
+                && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Returns the thumbnail for the key, from the disk cache or by decoding the cover.
+     */
+    private Bitmap loadThumbnail(long bookId, String key) throws IOException {
+        // The disk cache outlives the loader, so its file names include the size.
+        File thumbnailFile = new File(mThumbnailDirectory,
+                Integer.toHexString((key + "@" + mThumbnailSize).hashCode())
+                        + "-" + bookId + ".png");
+        if (thumbnailFile.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(thumbnailFile.getPath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        Bitmap bitmap = decodeCover(bookId);
+        if (bitmap != null) {
+            writeThumbnail(thumbnailFile, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decode the full cover of a book through the provider, downsampled to the row size.
+     */
+    private Bitmap decodeCover(long bookId) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // First pass only reads the dimensions of the image.
+        options.inJustDecodeBounds = true;
+        InputStream in = mContentResolver.openInputStream(BookEntry.buildCoverUri(bookId));
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                mThumbnailSize, mThumbnailSize);
+        options.inJustDecodeBounds = false;
+        in = mContentResolver.openInputStream(BookEntry.buildCoverUri(bookId));
+        Bitmap sampled;
+        try {
+            sampled = BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (sampled == null) {
+            return null;
+        }
+
+        // inSampleSize only scales by powers of two, finish with an exact scale.
+        float scale = Math.min(1f, (float) mThumbnailSize
+                / Math.max(sampled.getWidth(), sampled.getHeight()));
+        if (scale == 1f) {
+            return sampled;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled,
+                Math.max(1, Math.round(sampled.getWidth() * scale)),
+                Math.max(1, Math.round(sampled.getHeight() * scale)),
+                true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+
+    private void writeThumbnail(File thumbnailFile, Bitmap bitmap) {
+        if (!mThumbnailDirectory.isDirectory() && !mThumbnailDirectory.mkdirs()) {
+            return;
+        }
+        File tempFile = new File(mThumbnailDirectory, thumbnailFile.getName() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(thumbnailFile)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to write thumbnail " + thumbnailFile, e);
+            tempFile.delete();
+            return;
+        }
+
+        boolean trim;
+        synchronized (this) {
+            trim = ++mThumbnailsWritten % DISK_CACHE_TRIM_INTERVAL == 0;
+        }
+        if (trim) {
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Delete the least recently written thumbnails until the disk cache fits its budget.
+     */
+    private void trimDiskCache() {
+        File[] files = mThumbnailDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_CACHE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (total <= MAX_DISK_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * A pending cover load for one view. It only delivers its result if the view still
+     * belongs to it when the decode finishes.
+     */
+    private class CoverRequest implements Runnable {
+        private final ImageView mView;
+        private final long mBookId;
+        private final String mKey;
+        private volatile boolean mCancelled;
+        private Future<?> mFuture;
+
+        CoverRequest(ImageView view, long bookId, String key) {
+            mView = view;
+            mBookId = bookId;
+            mKey = key;
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if (mFuture != null) {
+                mFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            Bitmap bitmap;
+            try {
+                bitmap = loadThumbnail(mBookId, mKey);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to load cover of book " + mBookId, e);
+                bitmap = null;
+            }
+            if (bitmap != null) {
+                mMemoryCache.put(mKey, bitmap);
+            }
+            finish(bitmap);
+        }
+
+        /**
+         * Release the view, and show the cover if there is one. A failed request has to
+         * release the view as well, or every later load of the same cover would take it for
+         * still pending and the row would never show the cover again.
+         */
+        private void finish(final Bitmap bitmap) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled && mView.getTag(R.id.cover) == CoverRequest.this) {
+                        mView.setTag(R.id.cover, null);
+                        if (bitmap != null) {
+                            mView.setImageBitmap(bitmap);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
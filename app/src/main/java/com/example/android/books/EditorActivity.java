@@ -17,7 +17,9 @@ package com.example.android.books;
 
 import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -38,7 +40,11 @@ import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.Toast;
 
+import com.example.android.books.data.BookContract;
 import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.CatalogSnapshot;
+import com.example.android.books.data.DuplicateBookException;
+import com.example.android.books.data.VersionConflictException;
 
 
 /**
@@ -50,6 +56,20 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
      */
     private static final int EXISTING_BOOK_LOADER = 0;
 
+    /**
+     * Intent extras with the values of the book as the catalog row showed them, so the editor
+     * shows them right away instead of after its first query. Optional.
+     */
+    static final String EXTRA_NAME = "com.example.android.books.extra.NAME";
+    static final String EXTRA_PRICE = "com.example.android.books.extra.PRICE";
+    static final String EXTRA_QUANTITY = "com.example.android.books.extra.QUANTITY";
+
+    /** Intent extra with the version of the book the other extras were read at */
+    static final String EXTRA_VERSION = "com.example.android.books.extra.VERSION";
+
+    /** Saved instance state key of {@link #mBookHasChanged} */
+    private static final String STATE_BOOK_HAS_CHANGED = "book_has_changed";
+
     /**
      * Content URI for the existing book (null if it's a new book)
      */
@@ -93,6 +113,12 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
      # private int mGender = BookEntry.GENDER_UNKNOWN;
      */
 
+    /**
+     * The version of the existing book the fields show, and which fields a load refills.
+     * Saves only apply if the book is still at that version.
+     */
+    private final EditorFields mFields = new EditorFields();
+
     /** Boolean flag that keeps track of whether the book has been edited (true) or not (false) */
     private boolean mBookHasChanged = false;
 
@@ -157,6 +183,28 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         mSupplierNameEditText = (EditText) findViewById(R.id.edit_book_supplier_name);
         mSupplierPhoneNumberEditText = (EditText) findViewById(R.id.edit_book_supplier_phone_number);
 
+        // Show the values the catalog handed over in the first frame. The loader still reads
+        // the book, and only replaces them if the book changed since the catalog read it.
+        if (mCurrentBookUri != null && intent.hasExtra(EXTRA_VERSION)) {
+            mFields.prefill(intent.getLongExtra(EXTRA_VERSION, -1),
+                    intent.getStringExtra(EXTRA_NAME), intent.getIntExtra(EXTRA_PRICE, 0),
+                    intent.getIntExtra(EXTRA_QUANTITY, 0));
+            // After a configuration change the fields restore what the user typed.
+            if (savedInstanceState == null) {
+                mNameEditText.setText(intent.getStringExtra(EXTRA_NAME));
+                mPriceEditText.setText(mFields.priceChars, 0, mFields.priceLength);
+                mQuantityEditText.setText(mFields.quantityChars, 0, mFields.quantityLength);
+            }
+        }
+
+        // Take back whether the user edited, and what the fields were filled with, so the
+        // book the loader delivers again after a configuration change doesn't overwrite the
+        // restored texts, and leaving still asks about unsaved changes.
+        if (savedInstanceState != null) {
+            mBookHasChanged = savedInstanceState.getBoolean(STATE_BOOK_HAS_CHANGED);
+            mFields.restoreState(savedInstanceState);
+        }
+
         // Setup OnTouchListeners on all the input fields, so we can determine if the user
         // has touched or modified them. This will let us know if there are unsaved changes
         // or not, if the user tries to leave the editor without saving.
@@ -174,6 +222,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     }
 
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_BOOK_HAS_CHANGED, mBookHasChanged);
+        mFields.saveState(outState);
+    }
+
     /**
      * Setup the dropdown spinner that allows the user to select the gender of the book.
      */
@@ -220,8 +275,11 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     /**
      * Get user input from editor and save book into database.
+     *
+     * @return false if nothing was saved, because the book was changed elsewhere since it was
+     *         loaded or another book already has its name and supplier
      */
-    private void saveBook() {
+    private boolean saveBook() {
         // Read from input fields
         // Use trim to eliminate leading or trailing white space
         String nameString = mNameEditText.getText().toString().trim();
@@ -229,8 +287,6 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         String quantityString = mQuantityEditText.getText().toString().trim();
         String supplierNameString = mSupplierNameEditText.getText().toString().trim();
         String supplierPhoneNumberString = mSupplierPhoneNumberEditText.getText().toString().trim();
-        int price = Integer.parseInt(priceString);
-        int quantity = Integer.parseInt(quantityString);
 
         if (mCurrentBookUri == null &&
                 TextUtils.isEmpty(nameString) &&
@@ -240,40 +296,68 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 TextUtils.isEmpty(supplierPhoneNumberString)) {
             // Since no fields were modified, we can return early without creating a new book.
             // No need to create ContentValues and no need to do any ContentProvider operations.
-            return;
+            return true;
         }
 
-        // Create a ContentValues object where column names are the keys,
-        // and book attributes from the editor are the values.
-        ContentValues values = new ContentValues();
-        values.put(BookEntry.COLUMN_BOOK_PRODUCT_NAME, nameString);
         // If the price is not provided by user, dont' try to parse the string into
         // an integer value. Use 0 by default.
-        //int price = 0;
+        int price = 0;
         if (!TextUtils.isEmpty(priceString)) {
             price = Integer.parseInt(priceString);
         }
-        values.put(BookEntry.COLUMN_BOOK_PRICE, price);
         // If the quantity is not provided by user, dont' try to parse the string into
         // an integer value. Use 0 by default.
-        //int quantity = 0;
+        int quantity = 0;
         if (!TextUtils.isEmpty(quantityString)) {
             quantity = Integer.parseInt(quantityString);
         }
-        values.put(BookEntry.COLUMN_BOOK_QUANTITY, quantity);
-        values.put(BookEntry.COLUMN_BOOK_SUPPLIER_NAME, supplierNameString);
-        values.put(BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER, supplierPhoneNumberString);
+
+        // A new book gets every column. An existing one only gets the columns that differ
+        // from what the editor loaded, so a save without changes writes nothing and doesn't
+        // make the catalog reload.
+        int changed = mCurrentBookUri == null ? ~0 : mFields.getChangedColumns(nameString,
+                price, quantity, supplierNameString, supplierPhoneNumberString);
+        if (changed == 0) {
+            return true;
+        }
+
+        // Create a ContentValues object where column names are the keys,
+        // and book attributes from the editor are the values.
+        ContentValues values = new ContentValues();
+        if ((changed & EditorFields.CHANGED_NAME) != 0) {
+            values.put(BookEntry.COLUMN_BOOK_PRODUCT_NAME, nameString);
+        }
+        if ((changed & EditorFields.CHANGED_PRICE) != 0) {
+            values.put(BookEntry.COLUMN_BOOK_PRICE, price);
+        }
+        if ((changed & EditorFields.CHANGED_QUANTITY) != 0) {
+            values.put(BookEntry.COLUMN_BOOK_QUANTITY, quantity);
+        }
+        if ((changed & EditorFields.CHANGED_SUPPLIER_NAME) != 0) {
+            values.put(BookEntry.COLUMN_BOOK_SUPPLIER_NAME, supplierNameString);
+        }
+        if ((changed & EditorFields.CHANGED_SUPPLIER_PHONE) != 0) {
+            values.put(BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER, supplierPhoneNumberString);
+        }
 
         if (mCurrentBookUri == null) {
             // This is a NEW book, so inset a new book into the provider,
-            // returning the content URI for the new book.
-            Uri newUri = getContentResolver().insert(BookEntry.CONTENT_URI, values);
+            // returning the content URI for the new book. A book that is already in the
+            // catalog under the same name and supplier is updated instead, so saving twice
+            // doesn't list it twice.
+            Uri newUri = getContentResolver().insert(BookEntry.CONTENT_UPSERT_URI, values);
 
             // Show a toast message depending on whether or not the insertion was successful.
             if (newUri == null) {
                 // If the new content URI is null, then there was an error with insertion.
                 Toast.makeText(this, getString(R.string.editor_insert_book_failed),
                         Toast.LENGTH_SHORT).show();
+            } else if (BookContract.UPSERT_OUTCOME_UPDATED.equals(newUri.getQueryParameter(
+                    BookContract.QUERY_PARAMETER_UPSERT_OUTCOME))) {
+                // The book was in the catalog already and got these values, say so rather
+                // than pretend a new one was added.
+                Toast.makeText(this, getString(R.string.editor_upsert_book_existing),
+                        Toast.LENGTH_LONG).show();
             } else {
                 // Otherwise, the insertion was successful and we can display a toast.
                 Toast.makeText(this, getString(R.string.editor_insert_book_successful),
@@ -283,8 +367,33 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             // Otherwise, this is an EXISTING book, so update the book with content URI: mCurrentURi
             // and pass in the new ContentValues, Pass in null for the selection and selection args
             // because mCurrentBookUri will already identify the correct row in the database that
-            // we want to modify.
-            int rowAffected = getContentResolver().update(mCurrentBookUri, values, null, null);
+            // we want to modify. The update only applies if nobody changed the book since we
+            // loaded it.
+            Uri updateUri = mCurrentBookUri;
+            if (mFields.getVersion() >= 0) {
+                updateUri = mCurrentBookUri.buildUpon()
+                        .appendQueryParameter(BookContract.QUERY_PARAMETER_EXPECTED_VERSION,
+                                String.valueOf(mFields.getVersion()))
+                        .build();
+            }
+            int rowAffected;
+            try {
+                rowAffected = getContentResolver().update(updateUri, values, null, null);
+            } catch (VersionConflictException e) {
+                // Someone else saved the book first. Show their version instead of silently
+                // overwriting it.
+                Toast.makeText(this, getString(R.string.editor_update_book_conflict),
+                        Toast.LENGTH_LONG).show();
+                mBookHasChanged = false;
+                getLoaderManager().restartLoader(EXISTING_BOOK_LOADER, null, this);
+                return false;
+            } catch (DuplicateBookException e) {
+                // The new name and supplier are taken by another book. Keep the editor open,
+                // so the user can change them.
+                Toast.makeText(this, getString(R.string.editor_update_book_duplicate),
+                        Toast.LENGTH_LONG).show();
+                return false;
+            }
 
             // Show a toast message depending on whether or not the update was successful.
             if (rowAffected == 0) {
@@ -297,6 +406,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                         Toast.LENGTH_SHORT).show();
             }
         }
+        return true;
     }
 
 
@@ -356,9 +466,10 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             // Respond to a click on the "Save" menu option
             case R.id.action_save:
                 // Save book to database
-                saveBook();
-                // Exit activity
-                finish();
+                if (saveBook()) {
+                    // Exit activity
+                    finish();
+                }
                 return true;
             // Respond to a click on the "Delete" menu option
             case R.id.action_delete:
@@ -417,17 +528,27 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         showUnsavedChangesDialog(discardButtonClickListener);
     }
 
+    /**
+     * Returns an intent opening the editor on the book in the given catalog row, with the
+     * row's values handed over.
+     */
+    static Intent newIntent(Context context, CatalogSnapshot snapshot, int position) {
+        int price = snapshot.getPrice(position);
+        return new Intent(context, EditorActivity.class)
+                .setData(ContentUris.withAppendedId(BookEntry.CONTENT_URI,
+                        snapshot.getId(position)))
+                .putExtra(EXTRA_NAME, snapshot.getName(position))
+                // A book without a price reads as 0, like the loader reads it.
+                .putExtra(EXTRA_PRICE, price == CatalogSnapshot.NO_PRICE ? 0 : price)
+                .putExtra(EXTRA_QUANTITY, snapshot.getQuantity(position))
+                .putExtra(EXTRA_VERSION, snapshot.getVersion(position));
+    }
+
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Since the editor shows all book attributes, define a projection that contains
-        // all columns from the book table
-        String[] projection = {
-                BookEntry._ID,
-                BookEntry.COLUMN_BOOK_PRODUCT_NAME,
-                BookEntry.COLUMN_BOOK_PRICE,
-                BookEntry.COLUMN_BOOK_QUANTITY,
-                BookEntry.COLUMN_BOOK_SUPPLIER_NAME,
-                BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER};
+        // Since the editor shows all book attributes, use the projection that contains
+        // all columns the editor shows. The start-up warm-up compiles the same query.
+        String[] projection = BookEntry.DETAIL_PROJECTION;
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
@@ -454,6 +575,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             int quantityColumnIndex = cursor.getColumnIndex(BookEntry.COLUMN_BOOK_QUANTITY);
             int supplierColumnIndex = cursor.getColumnIndex(BookEntry.COLUMN_BOOK_SUPPLIER_NAME);
             int supplierPhoneNumberColumnIndex = cursor.getColumnIndex(BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER);
+            int versionColumnIndex = cursor.getColumnIndex(BookEntry.COLUMN_BOOK_VERSION);
 
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
@@ -461,13 +583,23 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             int quantity = cursor.getInt(quantityColumnIndex);
             String supplier = cursor.getString(supplierColumnIndex);
             String supplierPhoneNumber = cursor.getString(supplierPhoneNumberColumnIndex);
-
-            // Update the views on the screen with the values from the database
-            mNameEditText.setText(name);
-            mPriceEditText.setText(Integer.toString(price));
-            mQuantityEditText.setText(Integer.toString(quantity));
-            mSupplierNameEditText.setText(supplier);
-            mSupplierPhoneNumberEditText.setText(supplierPhoneNumber);
+            long version = cursor.getLong(versionColumnIndex);
+
+            // Update the views on the screen with the values from the database. The fields
+            // already show this version if the catalog handed it over, or if the book was
+            // only requeried, so they are left alone. So are fields the user is editing,
+            // even if someone else saved the book: the save then reports the conflict.
+            int fields = mFields.onLoaded(version, name, price, quantity, supplier,
+                    supplierPhoneNumber, mBookHasChanged);
+            if ((fields & EditorFields.BOOK_FIELDS) != 0) {
+                mNameEditText.setText(name);
+                mPriceEditText.setText(mFields.priceChars, 0, mFields.priceLength);
+                mQuantityEditText.setText(mFields.quantityChars, 0, mFields.quantityLength);
+            }
+            if ((fields & EditorFields.SUPPLIER_FIELDS) != 0) {
+                mSupplierNameEditText.setText(supplier);
+                mSupplierPhoneNumberEditText.setText(supplierPhoneNumber);
+            }
 
             // Gender is a dropdown spinner, so map the constant value from the database
             // into one of the dropdown options (0 is Unknown, 1 is Male, 2 is Female).
@@ -491,6 +623,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         // If the loader is invalidated, clear out all the data from the input fields.
+        mFields.reset();
         mNameEditText.setText("");
         mPriceEditText.setText("");
         mQuantityEditText.setText("");
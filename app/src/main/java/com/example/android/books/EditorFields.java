@@ -0,0 +1,214 @@
+package com.example.android.books;
+
+import android.os.Bundle;
+
+/**
+ * Decides which fields the editor refills when the book it shows is (re)loaded, formats the
+ * numbers for them into buffers it owns, and tells which columns the user actually changed.
+ *
+ * The name, price and quantity are only refilled when the version of the book changed, so a
+ * requery of an unchanged book, or one the catalog already handed over, leaves what the user
+ * typed alone. The supplier fields aren't handed over by the catalog, so they are filled by
+ * the first load in any case.
+ *
+ * Once the user edited the fields, loads leave the ones already filled alone, and the version
+ * stays the one the edits started from. A save then fails its version check if someone else saved
+ * the book in the meantime, instead of the other save silently replacing what the user typed.
+ *
+ * The values the fields were last filled with are kept, so a save only writes the columns
+ * that differ from them, and a save without changes doesn't write at all. They go into the
+ * saved instance state with the texts of the fields, see {@link #saveState}.
+ */
+final class EditorFields {
+    /** Result flag of {@link #onLoaded}: refill the name, price and quantity */
+    static final int BOOK_FIELDS = 1;
+
+    /** Result flag of {@link #onLoaded}: refill the supplier name and phone number */
+    static final int SUPPLIER_FIELDS = 2;
+
+    /** Result flag of {@link #getChangedColumns}: the name changed */
+    static final int CHANGED_NAME = 1;
+
+    /** Result flag of {@link #getChangedColumns}: the price changed */
+    static final int CHANGED_PRICE = 2;
+
+    /** Result flag of {@link #getChangedColumns}: the quantity changed */
+    static final int CHANGED_QUANTITY = 4;
+
+    /** Result flag of {@link #getChangedColumns}: the supplier name changed */
+    static final int CHANGED_SUPPLIER_NAME = 8;
+
+    /** Result flag of {@link #getChangedColumns}: the supplier phone number changed */
+    static final int CHANGED_SUPPLIER_PHONE = 16;
+
+    // Keys of the saved instance state.
+    private static final String STATE_VERSION = "editor_fields_version";
+    private static final String STATE_SUPPLIER_SHOWN = "editor_fields_supplier_shown";
+    private static final String STATE_BOOK_SHOWN = "editor_fields_book_shown";
+    private static final String STATE_NAME = "editor_fields_name";
+    private static final String STATE_PRICE = "editor_fields_price";
+    private static final String STATE_QUANTITY = "editor_fields_quantity";
+    private static final String STATE_SUPPLIER_NAME = "editor_fields_supplier_name";
+    private static final String STATE_SUPPLIER_PHONE = "editor_fields_supplier_phone";
+
+    /** Price digits, valid up to {@link #priceLength} */
+    final char[] priceChars = new char[CatalogAdapter.MAX_INT_CHARS];
+
+    /** Quantity digits, valid up to {@link #quantityLength} */
+    final char[] quantityChars = new char[CatalogAdapter.MAX_INT_CHARS];
+
+    int priceLength;
+
+    int quantityLength;
+
+    /** Version of the book the fields show, or -1 if unknown */
+    private long mVersion = -1;
+
+    /** Whether the supplier fields show the book yet */
+    private boolean mSupplierShown;
+
+    /** Whether the name, price and quantity fields show the book yet */
+    private boolean mBookShown;
+
+    // The values the fields were filled with, texts the way they would be saved.
+    private String mName = "";
+    private int mPrice;
+    private int mQuantity;
+    private String mSupplierName = "";
+    private String mSupplierPhone = "";
+
+    /**
+     * Show the values the catalog handed over, before the book is loaded.
+     */
+    void prefill(long version, String name, int price, int quantity) {
+        mVersion = version;
+        showBook(name, price, quantity);
+    }
+
+    /**
+     * Take the loaded version of the book and return which fields to refill. The numbers are
+     * formatted if the book fields are to be refilled.
+     *
+     * @param edited Whether the user edited the fields; then only the supplier fields are
+     *               filled, if no load filled them yet, and the version isn't taken
+     * @return a combination of {@link #BOOK_FIELDS} and {@link #SUPPLIER_FIELDS}
+     */
+    int onLoaded(long version, String name, int price, int quantity, String supplierName,
+                 String supplierPhone, boolean edited) {
+        int fields = 0;
+        if (!edited && version != mVersion) {
+            mVersion = version;
+            showBook(name, price, quantity);
+            fields |= BOOK_FIELDS | SUPPLIER_FIELDS;
+        }
+        if (!mSupplierShown) {
+            fields |= SUPPLIER_FIELDS;
+        }
+        if ((fields & SUPPLIER_FIELDS) != 0) {
+            mSupplierShown = true;
+            mSupplierName = clean(supplierName);
+            mSupplierPhone = clean(supplierPhone);
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the columns in which the values to save differ from the ones the fields were
+     * filled with. Texts are compared the way they are saved, so spaces typed around a value
+     * aren't a change. Fields that were never filled count as filled with nothing, so
+     * anything typed into them counts as changed.
+     *
+     * @return a combination of the CHANGED flags, 0 if nothing changed
+     */
+    int getChangedColumns(String name, int price, int quantity, String supplierName,
+                          String supplierPhone) {
+        int changed = 0;
+        if (!clean(name).equals(mName)) {
+            changed |= CHANGED_NAME;
+        }
+        if (!mBookShown || price != mPrice) {
+            changed |= CHANGED_PRICE;
+        }
+        if (!mBookShown || quantity != mQuantity) {
+            changed |= CHANGED_QUANTITY;
+        }
+        if (!clean(supplierName).equals(mSupplierName)) {
+            changed |= CHANGED_SUPPLIER_NAME;
+        }
+        if (!clean(supplierPhone).equals(mSupplierPhone)) {
+            changed |= CHANGED_SUPPLIER_PHONE;
+        }
+        return changed;
+    }
+
+    /**
+     * Forget the loaded book, so the next load refills every field.
+     */
+    void reset() {
+        mVersion = -1;
+        mSupplierShown = false;
+        mBookShown = false;
+        mName = "";
+        mSupplierName = "";
+        mSupplierPhone = "";
+    }
+
+    /**
+     * Save what the fields were filled with. The fields restore their texts themselves after
+     * a configuration change, so without this the book the loader delivers again would look
+     * new and overwrite them.
+     */
+    void saveState(Bundle state) {
+        state.putLong(STATE_VERSION, mVersion);
+        state.putBoolean(STATE_SUPPLIER_SHOWN, mSupplierShown);
+        state.putBoolean(STATE_BOOK_SHOWN, mBookShown);
+        state.putString(STATE_NAME, mName);
+        state.putInt(STATE_PRICE, mPrice);
+        state.putInt(STATE_QUANTITY, mQuantity);
+        state.putString(STATE_SUPPLIER_NAME, mSupplierName);
+        state.putString(STATE_SUPPLIER_PHONE, mSupplierPhone);
+    }
+
+    /**
+     * Take back what {@link #saveState} saved, if it saved anything.
+     */
+    void restoreState(Bundle state) {
+        if (!state.containsKey(STATE_VERSION)) {
+            return;
+        }
+        mVersion = state.getLong(STATE_VERSION);
+        mSupplierShown = state.getBoolean(STATE_SUPPLIER_SHOWN);
+        mSupplierName = state.getString(STATE_SUPPLIER_NAME, "");
+        mSupplierPhone = state.getString(STATE_SUPPLIER_PHONE, "");
+        if (state.getBoolean(STATE_BOOK_SHOWN)) {
+            showBook(state.getString(STATE_NAME), state.getInt(STATE_PRICE),
+                    state.getInt(STATE_QUANTITY));
+        } else {
+            mBookShown = false;
+            mName = "";
+        }
+    }
+
+    /**
+     * Returns the version of the book the fields show, or -1 if unknown.
+     */
+    long getVersion() {
+        return mVersion;
+    }
+
+    private void showBook(String name, int price, int quantity) {
+        mBookShown = true;
+        mName = clean(name);
+        mPrice = price;
+        mQuantity = quantity;
+        priceLength = CatalogAdapter.formatInt(price, priceChars);
+        quantityLength = CatalogAdapter.formatInt(quantity, quantityChars);
+    }
+
+    /**
+     * Returns the text the way the editor saves it: trimmed, and empty rather than null.
+     */
+    private static String clean(String text) {
+        return text == null ? "" : text.trim();
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.books;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts one notification for the books that dropped below their reorder threshold.
+ *
+ * The job doesn't poll. It runs when the books change, a little after the change so a burst
+ * of sales results in one run, and finds the books that got low since its previous run with
+ * one query on the low stock index.
+ *
+ * The next run starts after the latest low stock time this run actually saw, not after the
+ * clock time of the run. A book is stamped when its write runs, which can be before the run
+ * but committed only after its query, and such a book must still be found by the next run.
+ * Writes to the books are serialized, so no later commit carries an earlier time, but a later
+ * commit can carry the same time, so the next run starts at that time and skips only the
+ * books this run already saw there.
+ *
+ * A content URI trigger fires once, so the worker schedules the next trigger when the check
+ * is done. Scheduling while the job runs would stop it. A change in between is not lost: the
+ * next run, whenever the books change again, starts where this one got to.
+ */
+public class LowStockJobService extends JobService {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = LowStockJobService.class.getSimpleName();
+
+    /** ID of the job, unique within the app */
+    private static final int JOB_ID = 1;
+
+    /** How long the books must stay unchanged before the job runs */
+    private static final long TRIGGER_UPDATE_DELAY_MS = TimeUnit.SECONDS.toMillis(10);
+
+    /** Longest the job waits for the books to settle before it runs anyway */
+    private static final long TRIGGER_MAX_DELAY_MS = TimeUnit.MINUTES.toMillis(2);
+
+    /** Check interval on devices without content URI triggers */
+    private static final long FALLBACK_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+
+    /** Notification channel of the low stock alerts */
+    private static final String CHANNEL_ID = "low_stock";
+
+    /** ID of the low stock notification, replaced by every run that finds books */
+    private static final int NOTIFICATION_ID = 1;
+
+    /** Number of books listed in the expanded notification */
+    private static final int MAX_NOTIFICATION_LINES = 5;
+
+    /** Preferences holding the low stock time the previous run got up to */
+    private static final String PREFERENCES_NAME = "low_stock_job";
+
+    /**
+     * Preference key of the latest low stock time seen by the previous runs. Older versions
+     * kept the clock time of the run under it, which is just as good a place to start from.
+     */
+    private static final String KEY_LAST_LOW_SINCE = "last_run";
+
+    /**
+     * Preference key of the IDs of the books seen at the latest low stock time, separated by
+     * commas
+     */
+    private static final String KEY_SEEN_IDS = "seen_ids";
+
+    private Thread mWorker;
+
+    /**
+     * Schedule the job, unless it is scheduled already. Scheduling again would stop a run in
+     * progress, and start the period of the fallback job over, and the app may well start
+     * more often than that.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduleNext(context);
+    }
+
+    /**
+     * Returns the selection of the books that got low at or after the given time, except the
+     * books with the given IDs that got low at exactly that time. Its arguments are the time,
+     * twice.
+     *
+     * @param seenIds IDs separated by commas, or empty
+     */
+    public static String buildSelection(String seenIds) {
+        String selection = BookEntry.COLUMN_BOOK_LOW_SINCE + ">=?";
+        if (seenIds.isEmpty()) {
+            return selection;
+        }
+        return selection + " AND NOT (" + BookEntry.COLUMN_BOOK_LOW_SINCE + "=? AND "
+                + BookEntry._ID + " IN (" + seenIds + "))";
+    }
+
+    /**
+     * Schedule the job for the next change of the books, replacing any pending one.
+     */
+    private static void scheduleNext(Context context) {
+        JobInfo.Builder builder = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, LowStockJobService.class));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            builder.addTriggerContentUri(new JobInfo.TriggerContentUri(BookEntry.CONTENT_URI,
+                    JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                    .setTriggerContentUpdateDelay(TRIGGER_UPDATE_DELAY_MS)
+                    .setTriggerContentMaxDelay(TRIGGER_MAX_DELAY_MS);
+        } else {
+            // Content URI triggers need Android 7.0. Older devices check now and then, which
+            // is still a single indexed query per run.
+            builder.setPeriodic(FALLBACK_PERIOD_MS);
+        }
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.schedule(builder.build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!checkLowStock()) {
+                        // Stopped, the job runs again as onStopJob asked.
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Low stock check failed", e);
+                }
+                jobFinished(params, false);
+                // A content URI trigger fires once, the periodic fallback stays scheduled.
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                    scheduleNext(LowStockJobService.this);
+                }
+            }
+        }, LOG_TAG);
+        mWorker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Nothing is committed until the check finishes, so just run it again later.
+        mWorker.interrupt();
+        return true;
+    }
+
+    /**
+     * Notify about the books that got low since the previous run.
+     *
+     * @return false if the job was stopped first
+     */
+    private boolean checkLowStock() {
+        SharedPreferences preferences = getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE);
+        long lastLowSince = preferences.getLong(KEY_LAST_LOW_SINCE, 0);
+        String seenIds = preferences.getString(KEY_SEEN_IDS, "");
+        String time = String.valueOf(lastLowSince);
+
+        Cursor cursor = getContentResolver().query(BookEntry.CONTENT_URI,
+                BookEntry.LOW_STOCK_PROJECTION,
+                buildSelection(seenIds),
+                seenIds.isEmpty() ? new String[] { time } : new String[] { time, time },
+                BookEntry.COLUMN_BOOK_LOW_SINCE);
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            if (Thread.interrupted()) {
+                return false;
+            }
+            if (cursor.getCount() == 0) {
+                return true;
+            }
+            postNotification(cursor);
+            // Sorted by the low stock time, so the last books are the latest ones seen.
+            cursor.moveToLast();
+            long latest = cursor.getLong(3);
+            StringBuilder ids = new StringBuilder();
+            do {
+                if (ids.length() > 0) {
+                    ids.append(',');
+                }
+                ids.append(cursor.getLong(0));
+            } while (cursor.moveToPrevious() && cursor.getLong(3) == latest);
+            if (latest == lastLowSince && !seenIds.isEmpty()) {
+                ids.append(',').append(seenIds);
+            }
+            lastLowSince = latest;
+            seenIds = ids.toString();
+        } finally {
+            cursor.close();
+        }
+        preferences.edit()
+                .putLong(KEY_LAST_LOW_SINCE, lastLowSince)
+                .putString(KEY_SEEN_IDS, seenIds)
+                .apply();
+        return true;
+    }
+
+    /**
+     * Post one notification listing the low books of the cursor.
+     */
+    private void postNotification(Cursor cursor) {
+        createNotificationChannel();
+
+        int count = cursor.getCount();
+        String title = getResources().getQuantityString(R.plurals.low_stock_title, count, count);
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+                .setBigContentTitle(title);
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < MAX_NOTIFICATION_LINES && cursor.moveToNext(); i++) {
+            String name = cursor.getString(1);
+            style.addLine(getString(R.string.low_stock_line, name, cursor.getInt(2)));
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(name);
+        }
+        if (count > MAX_NOTIFICATION_LINES) {
+            style.setSummaryText(getString(R.string.low_stock_more,
+                    count - MAX_NOTIFICATION_LINES));
+        }
+
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, CatalogActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_low_stock)
+                .setContentTitle(title)
+                .setContentText(names)
+                .setStyle(style)
+                .setNumber(count)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true);
+        NotificationManagerCompat.from(this).notify(NOTIFICATION_ID, builder.build());
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.low_stock_channel), NotificationManager.IMPORTANCE_DEFAULT);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.books;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+import com.example.android.books.data.CatalogSnapshot;
+import com.example.android.books.data.CatalogSnapshotFile;
+
+/**
+ * Loader that reads the catalog snapshot the provider saved on disk, see
+ * {@link CatalogSnapshotFile}, on a background thread. Reading it maps the file and copies it
+ * into arrays, which is no work for the main thread during a cold start. Delivers null if
+ * there is no current snapshot. The file is only read once; the live catalog comes from
+ * {@link CatalogSnapshotLoader}.
+ */
+public class SavedCatalogLoader extends AsyncTaskLoader<CatalogSnapshot> {
+    private CatalogSnapshot mSnapshot;
+    private boolean mLoaded;
+
+    public SavedCatalogLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public CatalogSnapshot loadInBackground() {
+        return CatalogSnapshotFile.readCurrent(getContext());
+    }
+
+    @Override
+    public void deliverResult(CatalogSnapshot snapshot) {
+        if (isReset()) {
+            return;
+        }
+        mSnapshot = snapshot;
+        mLoaded = true;
+        if (isStarted()) {
+            super.deliverResult(snapshot);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mLoaded) {
+            deliverResult(mSnapshot);
+        } else {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mSnapshot = null;
+        mLoaded = false;
+    }
+}
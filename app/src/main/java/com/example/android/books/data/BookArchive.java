@@ -0,0 +1,299 @@
+package com.example.android.books.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.books.data.BookContract.ArchivedBookEntry;
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookStockEntry;
+import com.example.android.books.data.BookContract.BookTagEntry;
+import com.example.android.books.data.BookContract.DemandEntry;
+import com.example.android.books.data.BookContract.LocationEntry;
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.PriceHistoryEntry;
+import com.example.android.books.data.BookContract.PriceRollupEntry;
+import com.example.android.books.data.BookContract.SaleEntry;
+import com.example.android.books.data.BookContract.StockSnapshotEntry;
+import com.example.android.books.data.BookContract.TagEntry;
+
+/**
+ * Moves cold books between the books table and the archive, see {@link ArchivedBookEntry}.
+ *
+ * The archive has the columns of the books table in the same order, so a book moves with a
+ * single INSERT ... SELECT * either way. The rows of the tables referring to the books are
+ * deleted with the book row, so they are copied to an archive table of their own first, and
+ * copied back when the book returns: its ledger, sales, demand, prices, stock per location
+ * and tags come back as they were. The hot tables and their indexes only hold the books that
+ * still matter.
+ *
+ * The movements and sales keep their IDs in the archive. Both tables hand out IDs with
+ * AUTOINCREMENT, so no new row takes the ID of an archived one in the meantime.
+ */
+final class BookArchive {
+    /** Every book, hot or archived, to query in place of a table */
+    static final String ALL_BOOKS = "(SELECT * FROM " + BookEntry.TABLE_NAME
+            + " UNION ALL SELECT * FROM " + ArchivedBookEntry.TABLE_NAME + ")";
+
+    /**
+     * The coldest books, up to a limit. Spelled like the partial index of the books out of
+     * stock, so they are read straight from it in order.
+     */
+    private static final String COLD_BOOKS_QUERY = "SELECT " + BookEntry._ID
+            + " FROM " + BookEntry.TABLE_NAME
+            + " WHERE " + BookEntry.COLUMN_BOOK_QUANTITY + " = 0"
+            + " AND " + BookEntry.COLUMN_BOOK_LAST_MODIFIED + " < ?"
+            + " ORDER BY " + BookEntry.COLUMN_BOOK_LAST_MODIFIED + " LIMIT ?";
+
+    /** Suffix of the archive table of each history table */
+    private static final String ARCHIVE_SUFFIX = "_archive";
+
+    /**
+     * The tables holding the history of a book: the name of each, the column with the book
+     * ID, and the condition its archived rows must meet to come back, or null. Locations and
+     * tags may be deleted while a book is archived, and their rows stay behind.
+     */
+    private static final String[][] HISTORY_TABLES = {
+            { MovementEntry.TABLE_NAME, MovementEntry.COLUMN_MOVEMENT_BOOK_ID, null },
+            { StockSnapshotEntry.TABLE_NAME, StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID, null },
+            { SaleEntry.TABLE_NAME, SaleEntry.COLUMN_SALE_BOOK_ID, null },
+            { DemandEntry.TABLE_NAME, DemandEntry.COLUMN_DEMAND_BOOK_ID, null },
+            { PriceHistoryEntry.TABLE_NAME, PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID,
+                    null },
+            { PriceRollupEntry.TABLE_NAME, PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID, null },
+            { BookStockEntry.TABLE_NAME, BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID,
+                    BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + " IN (SELECT "
+                            + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME + ")" },
+            { BookTagEntry.TABLE_NAME, BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID,
+                    BookTagEntry.COLUMN_BOOK_TAG_TAG_ID + " IN (SELECT "
+                            + TagEntry._ID + " FROM " + TagEntry.TABLE_NAME + ")" }
+    };
+
+    // Only static helpers.
+    private BookArchive() {}
+
+    /**
+     * Returns the query the archiving reads the cold books with, for checking its plan.
+     */
+    static String getColdBooksQueryString() {
+        return COLD_BOOKS_QUERY;
+    }
+
+    /**
+     * Create the archive with the columns the books table has now. Future versions that add
+     * a column to the books table have to add it to the archive as well.
+     */
+    static void createTable(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + BookEntry.TABLE_NAME + ")", null);
+        String[] names;
+        String[] types;
+        try {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            int typeIndex = cursor.getColumnIndexOrThrow("type");
+            names = new String[cursor.getCount()];
+            types = new String[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                names[i] = cursor.getString(nameIndex);
+                types[i] = cursor.getString(typeIndex);
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL(getCreateTableSql(names, types));
+    }
+
+    /**
+     * Create the archive tables of the history tables, with their columns as they are now, and
+     * an index by book for moving a book's rows back. Future versions that add a column to a
+     * history table have to add it to its archive table as well.
+     */
+    static void createHistoryTables(SQLiteDatabase db) {
+        for (String[] history : HISTORY_TABLES) {
+            String archiveTable = history[0] + ARCHIVE_SUFFIX;
+            db.execSQL("CREATE TABLE " + archiveTable + " AS SELECT * FROM " + history[0]
+                    + " WHERE 0");
+            db.execSQL("CREATE INDEX " + archiveTable + "_book ON " + archiveTable
+                    + " (" + history[1] + ")");
+        }
+    }
+
+    /**
+     * Returns the statement creating the archive with the given columns, in their order. The
+     * row ID is the book ID; the other columns keep their types, but no constraints or
+     * defaults, since rows only ever come from the books table.
+     */
+    static String getCreateTableSql(String[] names, String[] types) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ")
+                .append(ArchivedBookEntry.TABLE_NAME).append(" (");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(names[i]);
+            if (names[i].equals(BookEntry._ID)) {
+                sql.append(" INTEGER PRIMARY KEY");
+            } else if (!types[i].isEmpty()) {
+                sql.append(' ').append(types[i]);
+            }
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Move up to the given number of cold books to the archive. Must be called inside a
+     * transaction.
+     *
+     * @param before Books last modified before this time, in milliseconds since the epoch,
+     *               are cold if they are out of stock
+     * @return the IDs of the archived books
+     */
+    static long[] archive(SQLiteDatabase database, long before, int limit) {
+        Cursor cursor = database.rawQuery(COLD_BOOKS_QUERY,
+                new String[] { String.valueOf(before), String.valueOf(limit) });
+        long[] ids;
+        try {
+            ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        if (ids.length > 0) {
+            archive(database, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Move the books with the given IDs to the archive, with their history. Must be called
+     * inside a transaction.
+     */
+    static void archive(SQLiteDatabase database, long[] ids) {
+        String selection = getSelection(ids);
+        database.execSQL("INSERT INTO " + ArchivedBookEntry.TABLE_NAME
+                + " SELECT * FROM " + BookEntry.TABLE_NAME + " WHERE " + selection);
+        for (String[] history : HISTORY_TABLES) {
+            database.execSQL("INSERT INTO " + history[0] + ARCHIVE_SUFFIX
+                    + " SELECT * FROM " + history[0]
+                    + " WHERE " + getSelection(history[1], ids));
+        }
+        // The rows just copied go with the cascade.
+        database.delete(BookEntry.TABLE_NAME, selection, null);
+    }
+
+    /**
+     * Move an archived book back to the books table, with its history. Its last modified time
+     * becomes now, so it isn't archived again right away. Must be called inside a transaction.
+     *
+     * Books archived before the history was kept come back without any; see
+     * {@link #hasHistory}.
+     *
+     * @return the price and quantity of the book, or null if it isn't archived
+     */
+    static ContentValues restore(SQLiteDatabase database, long id) {
+        String[] idArgs = { String.valueOf(id) };
+        ContentValues values;
+        Cursor cursor = database.query(ArchivedBookEntry.TABLE_NAME,
+                new String[] { BookEntry.COLUMN_BOOK_PRICE, BookEntry.COLUMN_BOOK_QUANTITY },
+                BookEntry._ID + "=?",
+                idArgs,
+                null,
+                null,
+                null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            values = new ContentValues();
+            values.put(BookEntry.COLUMN_BOOK_PRICE, cursor.getInt(0));
+            values.put(BookEntry.COLUMN_BOOK_QUANTITY, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+
+        database.execSQL("INSERT INTO " + BookEntry.TABLE_NAME
+                + " SELECT * FROM " + ArchivedBookEntry.TABLE_NAME
+                + " WHERE " + BookEntry._ID + "=?", idArgs);
+        database.delete(ArchivedBookEntry.TABLE_NAME, BookEntry._ID + "=?", idArgs);
+        for (String[] history : HISTORY_TABLES) {
+            String archiveTable = history[0] + ARCHIVE_SUFFIX;
+            String selection = history[1] + "=?";
+            database.execSQL("INSERT INTO " + history[0] + " SELECT * FROM " + archiveTable
+                    + " WHERE " + (history[2] == null ? selection
+                            : selection + " AND " + history[2]), idArgs);
+            database.delete(archiveTable, selection, idArgs);
+        }
+        return values;
+    }
+
+    /**
+     * Returns whether the book has a stock ledger. Every book gets one when it is inserted, so
+     * a restored book without one lost its history when it was archived, before the archive
+     * kept it.
+     */
+    static boolean hasHistory(SQLiteDatabase database, long id) {
+        return DatabaseUtils.queryNumEntries(database, StockSnapshotEntry.TABLE_NAME,
+                StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + "=?",
+                new String[] { String.valueOf(id) }) > 0;
+    }
+
+    /**
+     * Delete the archived books matching the selection, with their history. Must be called
+     * inside a transaction.
+     *
+     * @return the number of books deleted
+     */
+    static int delete(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        String books = "SELECT " + BookEntry._ID + " FROM " + ArchivedBookEntry.TABLE_NAME;
+        if (selection != null && !selection.isEmpty()) {
+            books += " WHERE " + selection;
+        }
+        for (String[] history : HISTORY_TABLES) {
+            database.delete(history[0] + ARCHIVE_SUFFIX, history[1] + " IN (" + books + ")",
+                    selectionArgs);
+        }
+        return database.delete(ArchivedBookEntry.TABLE_NAME, selection, selectionArgs);
+    }
+
+    /**
+     * Returns the ID of the archived book with the dedupe key, or -1 if there is none.
+     */
+    static long findBook(SQLiteDatabase database, String key) {
+        Cursor cursor = database.query(ArchivedBookEntry.TABLE_NAME,
+                new String[] { BookEntry._ID },
+                BookEntry.COLUMN_BOOK_DEDUPE_KEY + "=?",
+                new String[] { key },
+                null,
+                null,
+                null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the selection of the books with the given IDs. The IDs are numbers, so they are
+     * written into the SQL directly.
+     */
+    static String getSelection(long[] ids) {
+        return getSelection(BookEntry._ID, ids);
+    }
+
+    /**
+     * Returns the selection of the rows whose column holds one of the given book IDs.
+     */
+    private static String getSelection(String column, long[] ids) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                selection.append(',');
+            }
+            selection.append(ids[i]);
+        }
+        return selection.append(')').toString();
+    }
+}
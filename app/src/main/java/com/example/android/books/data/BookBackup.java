@@ -0,0 +1,392 @@
+package com.example.android.books.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backs the database up into a gzip archive with a SHA-256 checksum next to it, and restores
+ * it from one.
+ *
+ * A backup first takes a consistent copy of the database. With SQLite 3.27 or newer that is
+ * VACUUM INTO on a separate read-only connection, which reads one snapshot while writers keep
+ * committing to the write-ahead log. Older versions copy the database and log files while
+ * holding the write lock, which only waits for the raw file copy, not for the compression.
+ * The copy is then compressed without holding anything.
+ *
+ * A restore checks the archive against its checksum and the unpacked database against
+ * SQLite's own checks before it touches the live database. The swap itself is a rename with
+ * the helper closed, so a crash leaves either the old or the new database, never a mix.
+ *
+ * Both are slow, call them off the main thread.
+ */
+public final class BookBackup {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = BookBackup.class.getSimpleName();
+
+    /** Suffix of the checksum file written next to an archive */
+    public static final String CHECKSUM_SUFFIX = ".sha256";
+
+    /** Suffix of the consistent copy taken before compressing */
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    /** Suffix of the unpacked database waiting to replace the live one */
+    private static final String RESTORE_SUFFIX = ".restore";
+
+    /** Suffix of files being written, renamed once complete */
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    /** Files SQLite keeps next to a database */
+    private static final String[] DATABASE_SIDE_FILE_SUFFIXES = { "-wal", "-shm", "-journal" };
+
+    /** First SQLite version with VACUUM INTO */
+    private static final int[] VACUUM_INTO_VERSION = { 3, 27, 0 };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Only static helpers.
+    private BookBackup() {}
+
+    /**
+     * Write a backup of the database to the archive, and its checksum next to it.
+     *
+     * @return the SHA-256 checksum of the archive, in hex
+     */
+    public static String backup(Context context, BookDbHelper helper, File archive)
+            throws IOException {
+        File databaseFile = context.getDatabasePath(helper.getDatabaseName());
+        File snapshot = new File(databaseFile.getPath() + SNAPSHOT_SUFFIX);
+        deleteDatabaseFiles(snapshot);
+        try {
+            // Opening brings the schema up to date before it is copied.
+            SQLiteDatabase database = helper.getWritableDatabase();
+            long start = System.nanoTime();
+            if (supportsVacuumInto(database)) {
+                snapshotWithVacuumInto(databaseFile, snapshot);
+            } else {
+                snapshotWithFileCopy(database, databaseFile, snapshot);
+            }
+            long copied = System.nanoTime();
+            String checksum = compress(snapshot, archive);
+            Log.i(LOG_TAG, "Backed up " + snapshot.length() + " bytes: copy "
+                    + (copied - start) / 1000000 + " ms, compression "
+                    + (System.nanoTime() - copied) / 1000000 + " ms");
+            return checksum;
+        } finally {
+            deleteDatabaseFiles(snapshot);
+        }
+    }
+
+    /**
+     * Replace the database with the one in the archive. The archive must match its checksum
+     * and hold an intact database of this or an older schema version; otherwise the live
+     * database is left alone.
+     *
+     * @throws IOException if the archive is damaged or can't be restored
+     */
+    public static void restore(Context context, BookDbHelper helper, File archive)
+            throws IOException {
+        verify(archive);
+        File databaseFile = context.getDatabasePath(helper.getDatabaseName());
+        File restored = new File(databaseFile.getPath() + RESTORE_SUFFIX);
+        deleteDatabaseFiles(restored);
+        try {
+            decompress(archive, restored);
+            checkRestorable(restored);
+
+            // Opening the helper is synchronized on it, so nothing reopens the old database
+            // between closing it and the rename. Closing the last connection checkpoints the
+            // log, so the side files left over hold nothing that isn't in the old database.
+            synchronized (helper) {
+                helper.close();
+                deleteSideFiles(databaseFile);
+                if (!restored.renameTo(databaseFile)) {
+                    throw new IOException("Cannot replace " + databaseFile);
+                }
+            }
+        } finally {
+            deleteDatabaseFiles(restored);
+        }
+    }
+
+    /**
+     * Returns the file holding the checksum of the archive.
+     */
+    public static File getChecksumFile(File archive) {
+        return new File(archive.getPath() + CHECKSUM_SUFFIX);
+    }
+
+    private static boolean supportsVacuumInto(SQLiteDatabase database) {
+        String version = DatabaseUtils.stringForQuery(database, "SELECT sqlite_version()", null);
+        return compareVersions(version, VACUUM_INTO_VERSION) >= 0;
+    }
+
+    /**
+     * Compare a dotted version like "3.22.0" with the given version numbers.
+     */
+    static int compareVersions(String version, int[] other) {
+        String[] parts = version.split("\\.");
+        for (int i = 0; i < other.length; i++) {
+            int part = 0;
+            if (i < parts.length) {
+                try {
+                    part = Integer.parseInt(parts[i].trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+            if (part != other[i]) {
+                return part < other[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copy the database with VACUUM INTO. It reads one snapshot on its own read-only
+     * connection, so neither the app's connection nor other writers wait for it.
+     */
+    private static void snapshotWithVacuumInto(File databaseFile, File snapshot) {
+        SQLiteDatabase source = SQLiteDatabase.openDatabase(databaseFile.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY);
+        try {
+            source.execSQL("VACUUM INTO ?", new Object[] { snapshot.getPath() });
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Copy the database and log files with the write lock held, so no commit happens while
+     * they are read, then fold the copied log into the copy.
+     */
+    private static void snapshotWithFileCopy(SQLiteDatabase database, File databaseFile,
+                                             File snapshot) throws IOException {
+        File log = new File(databaseFile.getPath() + "-wal");
+        if (database.isWriteAheadLoggingEnabled()) {
+            // Move what it can into the database first, so there is less log to copy.
+            Cursor cursor = database.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+            cursor.close();
+        }
+        // BEGIN IMMEDIATE: writers wait, readers go on. Nothing is written, so the
+        // transaction is rolled back.
+        database.beginTransactionNonExclusive();
+        try {
+            copyFile(databaseFile, snapshot);
+            if (log.exists()) {
+                copyFile(log, new File(snapshot.getPath() + "-wal"));
+            }
+        } finally {
+            database.endTransaction();
+        }
+
+        SQLiteDatabase copy = SQLiteDatabase.openDatabase(snapshot.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            // Leaving WAL mode checkpoints the whole log and removes it.
+            DatabaseUtils.stringForQuery(copy, "PRAGMA journal_mode=DELETE", null);
+        } finally {
+            copy.close();
+        }
+    }
+
+    /**
+     * Fail unless the unpacked database passes SQLite's checks and this app version can open
+     * it.
+     */
+    private static void checkRestorable(File restored) throws IOException {
+        SQLiteDatabase database;
+        try {
+            database = SQLiteDatabase.openDatabase(restored.getPath(), null,
+                    SQLiteDatabase.OPEN_READONLY);
+        } catch (RuntimeException e) {
+            throw new IOException("Backup doesn't hold a database", e);
+        }
+        try {
+            String check = DatabaseUtils.stringForQuery(database, "PRAGMA quick_check", null);
+            if (!"ok".equals(check)) {
+                throw new IOException("Backup database is damaged: " + check);
+            }
+            if (database.getVersion() > BookDbHelper.DATABASE_VERSION) {
+                throw new IOException("Backup is from a newer app version, schema "
+                        + database.getVersion());
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Compress the file into the archive and write the checksum of the archive next to it.
+     * Both are written under a temporary name first, so a crash leaves no half archive.
+     *
+     * @return the SHA-256 checksum of the archive, in hex
+     */
+    static String compress(File source, File archive) throws IOException {
+        MessageDigest digest = newDigest();
+        File partial = new File(archive.getPath() + PARTIAL_SUFFIX);
+        FileOutputStream fileOut = new FileOutputStream(partial);
+        try {
+            OutputStream out = new GZIPOutputStream(
+                    new DigestOutputStream(fileOut, digest), BUFFER_SIZE);
+            InputStream in = new FileInputStream(source);
+            try {
+                copy(in, out);
+            } finally {
+                in.close();
+            }
+            out.flush();
+            ((GZIPOutputStream) out).finish();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!partial.renameTo(archive)) {
+            partial.delete();
+            throw new IOException("Cannot write " + archive);
+        }
+
+        String checksum = toHex(digest.digest());
+        File checksumFile = getChecksumFile(archive);
+        File partialChecksum = new File(checksumFile.getPath() + PARTIAL_SUFFIX);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(partialChecksum), UTF_8);
+        try {
+            // The format of sha256sum, so the archive can be checked off the device too.
+            writer.write(checksum + "  " + archive.getName() + "\n");
+        } finally {
+            writer.close();
+        }
+        if (!partialChecksum.renameTo(checksumFile)) {
+            partialChecksum.delete();
+            throw new IOException("Cannot write " + checksumFile);
+        }
+        return checksum;
+    }
+
+    /**
+     * Check the archive against the checksum file next to it.
+     *
+     * @throws IOException if the checksum file is missing or doesn't match
+     */
+    static void verify(File archive) throws IOException {
+        String expected;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(getChecksumFile(archive)), UTF_8));
+        try {
+            String line = reader.readLine();
+            expected = line == null ? "" : line.trim().split("\\s+")[0];
+        } finally {
+            reader.close();
+        }
+
+        MessageDigest digest = newDigest();
+        InputStream in = new FileInputStream(archive);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        String actual = toHex(digest.digest());
+        if (!actual.equalsIgnoreCase(expected)) {
+            throw new IOException("Checksum of " + archive + " is " + actual + ", expected "
+                    + expected);
+        }
+    }
+
+    /**
+     * Unpack the archive into the file.
+     */
+    static void decompress(File archive, File target) throws IOException {
+        InputStream in = new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE), BUFFER_SIZE);
+        try {
+            FileOutputStream out = new FileOutputStream(target);
+            try {
+                copy(in, out);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+    }
+
+    private static void deleteDatabaseFiles(File database) {
+        database.delete();
+        deleteSideFiles(database);
+    }
+
+    private static void deleteSideFiles(File database) {
+        for (String suffix : DATABASE_SIDE_FILE_SUFFIXES) {
+            new File(database.getPath() + suffix).delete();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java and Android runtime has SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -54,6 +54,211 @@ public final class BookContract {
      */
     public static final String PATH_BOOKS= "books";
 
+    /**
+     * Path appended to a single book URI to read or write its cover image.
+     * For instance, content://com.example.android.books/books/3/cover is the cover of book 3.
+     */
+    public static final String PATH_COVER = "cover";
+
+    /**
+     * Path appended to a single book URI to read its demand forecast.
+     * For instance, content://com.example.android.books/books/3/forecast.
+     */
+    public static final String PATH_FORECAST = "forecast";
+
+    /**
+     * Path appended to a single book URI to read its quantity at a point in time.
+     * For instance, content://com.example.android.books/books/3/stock?at=1500000000000.
+     */
+    public static final String PATH_STOCK = "stock";
+
+    /**
+     * Path of the stock movement ledger. Appended to a single book URI it lists the
+     * movements of that book, e.g. content://com.example.android.books/books/3/movements.
+     */
+    public static final String PATH_MOVEMENTS = "movements";
+
+    /**
+     * Path appended to the books URI for the catalog sections.
+     * For instance, content://com.example.android.books/books/sections.
+     */
+    public static final String PATH_SECTIONS = "sections";
+
+    /**
+     * Path of the stock locations, such as shelves or stores.
+     * For instance, content://com.example.android.books/locations/2/books is the catalog of
+     * location 2. Appended to a single book URI it lists the book's quantity per location.
+     */
+    public static final String PATH_LOCATIONS = "locations";
+
+    /**
+     * Path appended to a single book URI for its price history.
+     * For instance, content://com.example.android.books/books/3/prices is the price chart of
+     * book 3.
+     */
+    public static final String PATH_PRICES = "prices";
+
+    /**
+     * Path of the tags books can be given, like a genre, a shelf or a promotion. Appended to a
+     * single book URI it lists the tags of that book,
+     * e.g. content://com.example.android.books/books/3/tags.
+     */
+    public static final String PATH_TAGS = "tags";
+
+    /**
+     * Path appended to the books URI to filter the catalog by tags.
+     * For instance, content://com.example.android.books/books/filter?tag=sci-fi lists the
+     * sci-fi books.
+     */
+    public static final String PATH_FILTER = "filter";
+
+    /**
+     * Path of the supplier reports.
+     * For instance, content://com.example.android.books/suppliers/report is the stock report
+     * per supplier.
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /** Path appended to {@link #PATH_SUPPLIERS} for the per-supplier stock report */
+    public static final String PATH_REPORT = "report";
+
+    /**
+     * Query parameter holding the maximum number of rows to return, for paging through
+     * a report or the books.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter holding the number of rows to skip before the first returned row,
+     * used together with {@link #QUERY_PARAMETER_LIMIT}.
+     */
+    public static final String QUERY_PARAMETER_OFFSET = "offset";
+
+    /**
+     * Query parameter of an update URI holding the {@link MovementEntry} kind of the quantity
+     * change, e.g. {@link MovementEntry#KIND_WRITE_OFF}. Without it a lower quantity is
+     * recorded as a sale and a higher one as a receipt.
+     */
+    public static final String QUERY_PARAMETER_MOVEMENT_KIND = "movement";
+
+    /**
+     * Query parameter of an update URI holding the {@link BookEntry#COLUMN_BOOK_VERSION} the
+     * caller last read. The update only applies if the row is still at that version,
+     * otherwise the provider throws a {@link VersionConflictException}.
+     */
+    public static final String QUERY_PARAMETER_EXPECTED_VERSION = "expected_version";
+
+    /**
+     * Query parameter of a book update URI holding the {@link LocationEntry} ID where a
+     * quantity change happens. Without it the new quantity is the book's total: an increase
+     * goes to {@link LocationEntry#DEFAULT_LOCATION_ID}, and a decrease takes the units from
+     * there first, then from the other locations that hold the book.
+     */
+    public static final String QUERY_PARAMETER_LOCATION = "location";
+
+    /**
+     * Boolean query parameter of the books URI for inserts. When true, a book whose name and
+     * supplier match an existing book, ignoring case and whitespace, updates that book instead
+     * of being inserted. The URI returned by an insert then carries
+     * {@link #QUERY_PARAMETER_UPSERT_OUTCOME}. A quantity change of such an update is recorded
+     * as {@link MovementEntry#KIND_ADJUSTMENT}, unless the URI holds
+     * {@link #QUERY_PARAMETER_MOVEMENT_KIND}.
+     */
+    public static final String QUERY_PARAMETER_UPSERT = "upsert";
+
+    /**
+     * Query parameter of the URI returned by an upsert, {@link #UPSERT_OUTCOME_INSERTED} or
+     * {@link #UPSERT_OUTCOME_UPDATED}.
+     */
+    public static final String QUERY_PARAMETER_UPSERT_OUTCOME = "outcome";
+
+    /** Upsert outcome: the book was new and was inserted */
+    public static final String UPSERT_OUTCOME_INSERTED = "inserted";
+
+    /** Upsert outcome: the book existed and was updated */
+    public static final String UPSERT_OUTCOME_UPDATED = "updated";
+
+    /**
+     * Query parameter of the filter URI naming a tag the books must have. Repeat it for more
+     * tags; a book must have all of them.
+     */
+    public static final String QUERY_PARAMETER_TAG = "tag";
+
+    /**
+     * Query parameter of the filter URI naming a tag of which, together with the other tags
+     * given this way, a book must have at least one.
+     */
+    public static final String QUERY_PARAMETER_ANY_TAG = "any_tag";
+
+    /**
+     * Query parameter of the filter URI naming a tag the books must not have. Repeat it to
+     * exclude more tags.
+     */
+    public static final String QUERY_PARAMETER_NOT_TAG = "not_tag";
+
+    /**
+     * Boolean query parameter of the books URI. When true, the query also returns the books
+     * in the archive, see {@link ArchivedBookEntry}. A single book URI finds an archived book
+     * without it.
+     */
+    public static final String QUERY_PARAMETER_INCLUDE_ARCHIVED = "include_archived";
+
+    /**
+     * Changes are announced at most this often. The provider merges the change notifications
+     * of this long into one per URI, so loaders throttling their reloads to it lose nothing.
+     */
+    public static final long CHANGE_NOTIFICATION_WINDOW_MILLIS = 250;
+
+    /**
+     * Method of {@link android.content.ContentResolver#call} writing a gzip backup of the
+     * database to the file whose path is the argument, with its checksum next to it. Call
+     * it off the main thread. The result holds {@link #EXTRA_CHECKSUM} and
+     * {@link #EXTRA_SIZE}.
+     */
+    public static final String METHOD_BACKUP = "backup";
+
+    /**
+     * Method of {@link android.content.ContentResolver#call} replacing the database with the
+     * backup in the file whose path is the argument. The backup is checked first, and the
+     * database is left alone if it is damaged. Call it off the main thread.
+     */
+    public static final String METHOD_RESTORE = "restore";
+
+    /**
+     * Method of {@link android.content.ContentResolver#call} upserting the books in
+     * {@link #EXTRA_ROWS} in one transaction, like an insert with
+     * {@link #QUERY_PARAMETER_UPSERT}. The result holds {@link #EXTRA_IDS} and
+     * {@link #EXTRA_INSERTED}, in the order of the rows.
+     */
+    public static final String METHOD_BULK_UPSERT = "bulk_upsert";
+
+    /** Argument of {@link #METHOD_BULK_UPSERT}: the book values, a ContentValues array */
+    public static final String EXTRA_ROWS = "rows";
+
+    /** Result of {@link #METHOD_BULK_UPSERT}: ID of the book each row was written to */
+    public static final String EXTRA_IDS = "ids";
+
+    /** Result of {@link #METHOD_BULK_UPSERT}: per row, true if inserted, false if updated */
+    public static final String EXTRA_INSERTED = "inserted";
+
+    /**
+     * Method of {@link android.content.ContentResolver#call} moving up to
+     * {@link ArchivedBookEntry#BATCH_SIZE} cold books to the archive, in one transaction. The
+     * argument is null, or the time in milliseconds since the epoch before which a book must
+     * have been modified last to be cold. The result holds {@link #EXTRA_ARCHIVED}; call it
+     * again while that is the whole batch. Call it off the main thread.
+     */
+    public static final String METHOD_ARCHIVE = "archive";
+
+    /** Result of {@link #METHOD_ARCHIVE}: number of books moved to the archive */
+    public static final String EXTRA_ARCHIVED = "archived";
+
+    /** Result of {@link #METHOD_BACKUP}: SHA-256 checksum of the backup file, in hex */
+    public static final String EXTRA_CHECKSUM = "checksum";
+
+    /** Result of {@link #METHOD_BACKUP}: size of the backup file in bytes */
+    public static final String EXTRA_SIZE = "size";
+
 
 
     /**
@@ -67,6 +272,22 @@ public final class BookContract {
         /** The content URI to access the book data in the provider */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_BOOKS);
 
+        /**
+         * The content URI to insert books with {@link BookContract#QUERY_PARAMETER_UPSERT}:
+         * a book with the same name and supplier as an existing one updates that one.
+         */
+        public static final Uri CONTENT_UPSERT_URI = CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_UPSERT, "true")
+                .build();
+
+        /**
+         * The content URI to query the books together with the archived ones, see
+         * {@link BookContract#QUERY_PARAMETER_INCLUDE_ARCHIVED}.
+         */
+        public static final Uri CONTENT_WITH_ARCHIVED_URI = CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_INCLUDE_ARCHIVED, "true")
+                .build();
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of books.
          */
@@ -121,5 +342,1019 @@ public final class BookContract {
          * Type: TEXT
          */
         public final static String COLUMN_BOOK_SUPPLIER_PHONE_NUMBER = "supplier_phone_number";
+
+        /**
+         * File name of the book's cover image inside the app's cover directory, or null if
+         * the book has no cover. The image itself is served by the provider through
+         * {@link #buildCoverUri(long)}.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_BOOK_COVER_PATH = "cover_path";
+
+        /**
+         * Version of the row, incremented by the provider on every update. Callers can't
+         * write it, they pass the version they read as
+         * {@link BookContract#QUERY_PARAMETER_EXPECTED_VERSION} to detect concurrent edits.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_VERSION = "version";
+
+        /**
+         * Quantity below which the book needs to be reordered. The low stock alert fires
+         * once when the quantity drops below it.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_REORDER_THRESHOLD = "reorder_threshold";
+
+        /**
+         * Time, in milliseconds since the epoch, the quantity dropped below the reorder
+         * threshold, or null while it isn't below. Maintained by the database itself,
+         * callers can't write it.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_LOW_SINCE = "low_since";
+
+        /**
+         * Name and supplier of the book, case folded and with whitespace collapsed. No two
+         * books have the same key, books older than the key that were already duplicates
+         * have none. Maintained by the provider, callers can't write it.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_BOOK_DEDUPE_KEY = "dedupe_key";
+
+        /**
+         * Time, in milliseconds since the epoch, the book was inserted or last edited.
+         * Maintained by the database itself, callers can't write it.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_LAST_MODIFIED = "last_modified";
+
+        /**
+         * Value of the stock on hand, price times quantity. Maintained by the database
+         * itself, callers can't write it. The database has an index on it, so sorting or
+         * filtering by it doesn't compute it for every book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_STOCK_VALUE = "stock_value";
+
+        /** Reorder threshold of books that don't set their own */
+        public static final int DEFAULT_REORDER_THRESHOLD = 5;
+
+        /**
+         * Columns shown by the catalog list. Everything that queries the catalog uses this
+         * projection, so the statement compiled at start-up is the one the list runs.
+         * The version lets an editor opened from a row start with the row's values.
+         */
+        public static final String[] CATALOG_PROJECTION = {
+                _ID,
+                COLUMN_BOOK_PRODUCT_NAME,
+                COLUMN_BOOK_PRICE,
+                COLUMN_BOOK_QUANTITY,
+                COLUMN_BOOK_COVER_PATH,
+                COLUMN_BOOK_VERSION
+        };
+
+        /**
+         * Sort order of the catalog list: by name, ignoring the case of ASCII letters. The
+         * database has an index in this order, and {@link CatalogSectionEntry} counts the
+         * books per leading letter in the same order.
+         */
+        public static final String CATALOG_SORT_ORDER =
+                COLUMN_BOOK_PRODUCT_NAME + " COLLATE NOCASE";
+
+        /** Sort order of the most valuable holdings first, read backwards off the index */
+        public static final String STOCK_VALUE_SORT_ORDER = COLUMN_BOOK_STOCK_VALUE + " DESC";
+
+        /** Columns shown by the editor for a single book */
+        public static final String[] DETAIL_PROJECTION = {
+                _ID,
+                COLUMN_BOOK_PRODUCT_NAME,
+                COLUMN_BOOK_PRICE,
+                COLUMN_BOOK_QUANTITY,
+                COLUMN_BOOK_SUPPLIER_NAME,
+                COLUMN_BOOK_SUPPLIER_PHONE_NUMBER,
+                COLUMN_BOOK_VERSION
+        };
+
+        /** Columns the low stock alerts read of a low book */
+        public static final String[] LOW_STOCK_PROJECTION = {
+                _ID,
+                COLUMN_BOOK_PRODUCT_NAME,
+                COLUMN_BOOK_QUANTITY,
+                COLUMN_BOOK_LOW_SINCE
+        };
+
+        /**
+         * Returns the content URI of the first books of a query, at most the given number.
+         * With {@link #STOCK_VALUE_SORT_ORDER} these are the most valuable holdings.
+         */
+        public static Uri buildLimitUri(int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the demand forecast for the book with the given ID.
+         */
+        public static Uri buildForecastUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_FORECAST)
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the quantity the book with the given ID had at the given
+         * time.
+         *
+         * @param atMillis Time in milliseconds since the epoch
+         */
+        public static Uri buildStockUri(long id, long atMillis) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_STOCK)
+                    .appendQueryParameter(StockEntry.QUERY_PARAMETER_AT, String.valueOf(atMillis))
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the stock movements of the book with the given ID.
+         */
+        public static Uri buildMovementsUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_MOVEMENTS)
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the quantities per location of the book with the given ID.
+         */
+        public static Uri buildLocationsUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_LOCATIONS)
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the price chart of the book with the given ID.
+         *
+         * @param fromMillis       Start of the chart, in milliseconds since the epoch
+         * @param toMillis         End of the chart, in milliseconds since the epoch
+         * @param resolutionMillis Time one point of the chart stands for, usually the length
+         *                         of the chart divided by its width in pixels
+         */
+        public static Uri buildPricesUri(long id, long fromMillis, long toMillis,
+                                         long resolutionMillis) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_PRICES)
+                    .appendQueryParameter(PriceEntry.QUERY_PARAMETER_FROM,
+                            String.valueOf(fromMillis))
+                    .appendQueryParameter(PriceEntry.QUERY_PARAMETER_TO,
+                            String.valueOf(toMillis))
+                    .appendQueryParameter(PriceEntry.QUERY_PARAMETER_RESOLUTION,
+                            String.valueOf(resolutionMillis))
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the tags of the book with the given ID. Inserting a
+         * {@link BookTagEntry#COLUMN_BOOK_TAG_TAG_ID} tags the book.
+         */
+        public static Uri buildTagsUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_TAGS)
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of one tag of one book. Deleting it removes the tag from the
+         * book.
+         */
+        public static Uri buildTagUri(long id, long tagId) {
+            return buildTagsUri(id).buildUpon()
+                    .appendPath(String.valueOf(tagId))
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of the books that have all of the required tags, at least
+         * one of the optional tags if any are given, and none of the excluded tags. For
+         * "sci-fi AND discounted AND NOT hardcover" the required tags are sci-fi and
+         * discounted, and hardcover is excluded. Its rows are books, in the sort order of the
+         * query.
+         */
+        public static Uri buildFilterUri(String[] requiredTags, String[] optionalTags,
+                                         String[] excludedTags) {
+            Uri.Builder builder = CONTENT_URI.buildUpon().appendPath(PATH_FILTER);
+            for (String tag : requiredTags) {
+                builder.appendQueryParameter(QUERY_PARAMETER_TAG, tag);
+            }
+            for (String tag : optionalTags) {
+                builder.appendQueryParameter(QUERY_PARAMETER_ANY_TAG, tag);
+            }
+            for (String tag : excludedTags) {
+                builder.appendQueryParameter(QUERY_PARAMETER_NOT_TAG, tag);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Returns the content URI of the cover image for the book with the given ID.
+         */
+        public static Uri buildCoverUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_COVER)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines the stock locations. Every book has a quantity at each
+     * location, see {@link BookStockEntry}, and {@link BookEntry#COLUMN_BOOK_QUANTITY} is the
+     * total over all locations.
+     */
+    public static final class LocationEntry implements BaseColumns {
+        /** Name of database table for locations */
+        public final static String TABLE_NAME = "locations";
+
+        /** The content URI to access the locations */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_LOCATIONS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of locations.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single location.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        /**
+         * The location that exists in every database. Quantity changes that don't name a
+         * location happen here, and it can't be deleted.
+         */
+        public static final long DEFAULT_LOCATION_ID = 1;
+
+        /**
+         * Unique ID number for the location (only for use in the database table).
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the location, unique.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_LOCATION_NAME = "name";
+
+        /**
+         * Returns the content URI of the catalog at the location with the given ID. Its rows
+         * have the columns of {@link BookEntry}, with {@link BookEntry#COLUMN_BOOK_QUANTITY}
+         * being the quantity at the location.
+         */
+        public static Uri buildBooksUri(long locationId) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(locationId))
+                    .appendPath(PATH_BOOKS)
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of a single book at the location. Updating its
+         * {@link BookStockEntry#COLUMN_BOOK_STOCK_QUANTITY} sets the quantity at the location
+         * and records the difference in the stock ledger. A move between two locations is two
+         * such updates, best marked as {@link MovementEntry#KIND_ADJUSTMENT}.
+         */
+        public static Uri buildBookUri(long locationId, long bookId) {
+            return buildBooksUri(locationId).buildUpon()
+                    .appendPath(String.valueOf(bookId))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines the quantity of each book at each location. The provider keeps
+     * the total in {@link BookEntry#COLUMN_BOOK_QUANTITY} in step with these rows, so reading a
+     * total never sums them up.
+     */
+    public static final class BookStockEntry {
+        /** Name of database table for the quantities per location */
+        public final static String TABLE_NAME = "book_stock";
+
+        /**
+         * The MIME type of {@link BookEntry#buildLocationsUri(long)}. Its rows have the
+         * {@link LocationEntry#_ID} and {@link LocationEntry#COLUMN_LOCATION_NAME} of each
+         * location holding the book, and the {@link #COLUMN_BOOK_STOCK_QUANTITY} there.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_LOCATIONS;
+
+        /**
+         * ID of the location.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_STOCK_LOCATION_ID = "location_id";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_STOCK_BOOK_ID = "book_id";
+
+        /**
+         * Units of the book at the location, never negative.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_STOCK_QUANTITY = "quantity";
+    }
+
+    /**
+     * Inner class that defines the archive of cold books: books out of stock that weren't
+     * modified for {@link #COLD_AFTER_MILLIS}. They have the columns of {@link BookEntry} and
+     * keep their ID, and they are left out of the catalog and of every query except
+     * {@link BookContract#QUERY_PARAMETER_INCLUDE_ARCHIVED} and a single book URI. Updating an
+     * archived book, or upserting one with its name and supplier, brings it back, along with
+     * its ledger, sales, prices, stock per location and tags. Deleting books deletes the
+     * matching archived ones as well.
+     */
+    public static final class ArchivedBookEntry {
+        /** Name of database table for the archived books */
+        public final static String TABLE_NAME = "books_archive";
+
+        /** How long a book out of stock stays unmodified before it is cold */
+        public static final long COLD_AFTER_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+        /** Largest number of books one {@link BookContract#METHOD_ARCHIVE} call moves */
+        public static final int BATCH_SIZE = 200;
+    }
+
+    /**
+     * Inner class that defines the tags. A book can have any number of them, see
+     * {@link BookTagEntry}, and the catalog can be filtered by them with
+     * {@link BookEntry#buildFilterUri}.
+     */
+    public static final class TagEntry implements BaseColumns {
+        /** Name of database table for tags */
+        public final static String TABLE_NAME = "tags";
+
+        /** The content URI to access the tags */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_TAGS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of tags.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_TAGS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single tag.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_TAGS;
+
+        /**
+         * Unique ID number for the tag (only for use in the database table).
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the tag, unique ignoring the case of ASCII letters.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_TAG_NAME = "name";
+    }
+
+    /**
+     * Inner class that defines which book has which tag.
+     */
+    public static final class BookTagEntry {
+        /** Name of database table for the tags of the books */
+        public final static String TABLE_NAME = "book_tags";
+
+        /**
+         * The MIME type of {@link BookEntry#buildTagsUri(long)}. Its rows have the
+         * {@link TagEntry#_ID} and {@link TagEntry#COLUMN_TAG_NAME} of each tag of the book.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_TAGS;
+
+        /**
+         * ID of the tag.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_TAG_TAG_ID = "tag_id";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BOOK_TAG_BOOK_ID = "book_id";
+    }
+
+    /**
+     * Inner class that defines the catalog sections: the number of books per leading letter
+     * of their name, in {@link BookEntry#CATALOG_SORT_ORDER}. Summing up the counts gives the
+     * list position where each section starts, which is what fast scrolling jumps to.
+     *
+     * The query takes the same selection as a catalog query, so a filtered catalog gets
+     * matching sections.
+     */
+    public static final class CatalogSectionEntry {
+        /** The content URI to access the sections */
+        public static final Uri CONTENT_URI = BookEntry.CONTENT_URI.buildUpon()
+                .appendPath(PATH_SECTIONS)
+                .build();
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_SECTIONS;
+
+        /**
+         * Leading character of the names in the section, upper case for ASCII letters.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SECTION_LABEL = "section";
+
+        /**
+         * Number of books in the section.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SECTION_COUNT = "count";
+    }
+
+    /**
+     * Inner class that defines the per-supplier stock report. Each row sums up the books of
+     * one supplier. The report is read only and computed from the books table on every query.
+     *
+     * The rows can be sorted by any of the report columns, and paged through with
+     * {@link BookContract#QUERY_PARAMETER_LIMIT} and {@link BookContract#QUERY_PARAMETER_OFFSET}.
+     * Suppliers that tie in the sort order come by name, so pages never repeat or skip one.
+     */
+    public static final class SupplierReportEntry implements BaseColumns {
+        /** The content URI to access the report */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SUPPLIERS)
+                .appendPath(PATH_REPORT)
+                .build();
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS + "." + PATH_REPORT;
+
+        /**
+         * Query parameter holding a reorder point for all books: books with fewer units on
+         * hand than this count as below the reorder point. Without it every book is compared
+         * with its own {@link BookEntry#COLUMN_BOOK_REORDER_THRESHOLD}.
+         */
+        public static final String QUERY_PARAMETER_REORDER_POINT = "reorder_point";
+
+        /**
+         * Lowest ID among the supplier's books, so the report can back a list adapter.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the supplier.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_NAME = BookEntry.COLUMN_BOOK_SUPPLIER_NAME;
+
+        /**
+         * Number of titles from the supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TITLE_COUNT = "title_count";
+
+        /**
+         * Units on hand over all titles from the supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS = "units";
+
+        /**
+         * Value of the stock on hand, the sum of price times quantity.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_VALUE = "stock_value";
+
+        /**
+         * Number of titles from the supplier below their reorder threshold, or below the
+         * {@link #QUERY_PARAMETER_REORDER_POINT} if one is given.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_BELOW_REORDER = "below_reorder";
+
+        /**
+         * Returns the content URI of one page of the report, comparing each book with its
+         * own reorder threshold.
+         *
+         * @param offset Number of rows to skip
+         * @param limit  Maximum number of rows to return
+         */
+        public static Uri buildPageUri(int offset, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_OFFSET, String.valueOf(offset))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Returns the content URI of one page of the report.
+         *
+         * @param reorderPoint Books with fewer units than this count as below reorder point
+         * @param offset       Number of rows to skip
+         * @param limit        Maximum number of rows to return
+         */
+        public static Uri buildPageUri(int reorderPoint, int offset, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_REORDER_POINT,
+                            String.valueOf(reorderPoint))
+                    .appendQueryParameter(QUERY_PARAMETER_OFFSET, String.valueOf(offset))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines the sales history table. Each entry records one decrease of
+     * a book's quantity. Rows are only ever appended, by the provider.
+     */
+    public static final class SaleEntry implements BaseColumns {
+        /** Name of database table for sales */
+        public final static String TABLE_NAME = "sales";
+
+        /**
+         * ID of the book that was sold.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SALE_BOOK_ID = "book_id";
+
+        /**
+         * Number of units sold.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SALE_UNITS = "units";
+
+        /**
+         * Time of the sale in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SALE_TIME = "sold_at";
+    }
+
+    /**
+     * Inner class that defines the demand table. It keeps one running demand estimate per
+     * book that has sold at least once, see {@link DemandModel}.
+     */
+    public static final class DemandEntry {
+        /** Name of database table for the demand estimates */
+        public final static String TABLE_NAME = "demand";
+
+        /**
+         * ID of the book, also the primary key.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DEMAND_BOOK_ID = "book_id";
+
+        /**
+         * Exponentially decayed units sold, as of the last sale.
+         *
+         * Type: REAL
+         */
+        public final static String COLUMN_DEMAND_DECAYED_UNITS = "decayed_units";
+
+        /**
+         * Time of the last sale in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DEMAND_LAST_SALE = "last_sale";
+    }
+
+    /**
+     * Inner class that defines the demand forecast of a book, read through
+     * {@link BookEntry#buildForecastUri(long)}. The forecast is computed on every query.
+     */
+    public static final class ForecastEntry implements BaseColumns {
+        /**
+         * The MIME type of a forecast URI.
+         */
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_FORECAST;
+
+        /**
+         * Query parameter holding the number of days the stock should last after reordering.
+         * Defaults to {@link #DEFAULT_HORIZON_DAYS}.
+         */
+        public static final String QUERY_PARAMETER_HORIZON_DAYS = "horizon_days";
+
+        /** Reorder horizon used when the URI doesn't give one */
+        public static final int DEFAULT_HORIZON_DAYS = 30;
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Expected units sold per day.
+         *
+         * Type: REAL
+         */
+        public final static String COLUMN_DAILY_DEMAND = "daily_demand";
+
+        /**
+         * Days until the book runs out at the expected demand, null if there is no demand.
+         *
+         * Type: REAL
+         */
+        public final static String COLUMN_DAYS_REMAINING = "days_remaining";
+
+        /**
+         * Units to order so the stock lasts for the reorder horizon.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SUGGESTED_REORDER = "suggested_reorder";
+    }
+
+    /**
+     * Inner class that defines the stock movement ledger. Each entry records one change of a
+     * book's quantity, written by the provider in the same transaction as the change. Entries
+     * are never updated; old ones are only removed by compaction, see {@link #CONTENT_URI}.
+     */
+    public static final class MovementEntry implements BaseColumns {
+        /** Name of database table for stock movements */
+        public final static String TABLE_NAME = "stock_movements";
+
+        /**
+         * The content URI of the whole ledger. Deleting it with a
+         * {@link #QUERY_PARAMETER_BEFORE} compacts the ledger: the movements up to that time
+         * are folded into per-book snapshots and removed.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_MOVEMENTS);
+
+        /**
+         * The MIME type of a list of movements.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS;
+
+        /**
+         * Query parameter of a compaction holding the time, in milliseconds since the epoch,
+         * up to which movements are folded into snapshots.
+         */
+        public static final String QUERY_PARAMETER_BEFORE = "before";
+
+        /**
+         * ID of the book whose quantity changed.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MOVEMENT_BOOK_ID = "book_id";
+
+        /**
+         * What caused the change.
+         *
+         * The only possible values are {@link #KIND_RECEIPT}, {@link #KIND_SALE},
+         * {@link #KIND_ADJUSTMENT} or {@link #KIND_WRITE_OFF}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MOVEMENT_KIND = "kind";
+
+        /**
+         * Change of the quantity, negative for units leaving the stock.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MOVEMENT_DELTA = "delta";
+
+        /**
+         * Time of the change in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MOVEMENT_TIME = "moved_at";
+
+        /**
+         * Possible values for the kind of a movement.
+         */
+        public static final int KIND_RECEIPT = 1;
+        public static final int KIND_SALE = 2;
+        public static final int KIND_ADJUSTMENT = 3;
+        public static final int KIND_WRITE_OFF = 4;
+
+        /**
+         * Returns whether or not the given kind is {@link #KIND_RECEIPT}, {@link #KIND_SALE},
+         * {@link #KIND_ADJUSTMENT} or {@link #KIND_WRITE_OFF}.
+         */
+        public static boolean isValidKind(int kind) {
+            return kind == KIND_RECEIPT || kind == KIND_SALE
+                    || kind == KIND_ADJUSTMENT || kind == KIND_WRITE_OFF;
+        }
+    }
+
+    /**
+     * Inner class that defines the stock snapshots. A snapshot records a book's quantity
+     * after a given movement, so a past quantity is found from the nearest snapshot and the
+     * few movements after it.
+     */
+    public static final class StockSnapshotEntry {
+        /** Name of database table for stock snapshots */
+        public final static String TABLE_NAME = "stock_snapshots";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SNAPSHOT_BOOK_ID = "book_id";
+
+        /**
+         * ID of the last movement included in the snapshot, 0 for none.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SNAPSHOT_MOVEMENT_ID = "movement_id";
+
+        /**
+         * Time of the snapshot in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SNAPSHOT_TIME = "taken_at";
+
+        /**
+         * Quantity of the book at that time.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SNAPSHOT_QUANTITY = "quantity";
+    }
+
+    /**
+     * Inner class that defines the quantity of a book at a point in time, read through
+     * {@link BookEntry#buildStockUri(long, long)}.
+     */
+    public static final class StockEntry implements BaseColumns {
+        /**
+         * The MIME type of a stock URI.
+         */
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_STOCK;
+
+        /**
+         * Query parameter holding the time in milliseconds since the epoch. Defaults to now.
+         */
+        public static final String QUERY_PARAMETER_AT = "at";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Quantity of the book at that time, null if the ledger doesn't reach back that far.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_QUANTITY = "quantity";
+
+        /**
+         * The time the quantity is given for.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_AT = "at";
+    }
+
+    /**
+     * Inner class that defines the price history. Every price a book gets, including its
+     * first one, is a row.
+     */
+    public static final class PriceHistoryEntry {
+        /** Name of database table for the price history */
+        public final static String TABLE_NAME = "price_history";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_HISTORY_BOOK_ID = "book_id";
+
+        /**
+         * Time of the change in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_HISTORY_TIME = "changed_at";
+
+        /**
+         * Price of the book from that time on.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_HISTORY_PRICE = "price";
+    }
+
+    /**
+     * Inner class that defines the price rollups: the open, high, low and close price of a
+     * book per day and per month, for every day and month with a price change. They are kept
+     * up to date with every change, so a chart over years reads one row per month.
+     */
+    public static final class PriceRollupEntry {
+        /** Name of database table for the price rollups */
+        public final static String TABLE_NAME = "price_rollups";
+
+        /**
+         * ID of the book.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_BOOK_ID = "book_id";
+
+        /**
+         * Length of the period, {@link PriceEntry#LEVEL_DAY} or {@link PriceEntry#LEVEL_MONTH}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_LEVEL = "level";
+
+        /**
+         * Start of the period in milliseconds since the epoch, at midnight UTC.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_START = "period_start";
+
+        /**
+         * Price at the start of the period, before its first change.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_OPEN = "open";
+
+        /**
+         * Highest price during the period.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_HIGH = "high";
+
+        /**
+         * Lowest price during the period.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_LOW = "low";
+
+        /**
+         * Price after the last change of the period.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_CLOSE = "close";
+
+        /**
+         * Number of price changes during the period.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROLLUP_CHANGES = "changes";
+    }
+
+    /**
+     * Inner class that defines the points of a price chart, read through
+     * {@link BookEntry#buildPricesUri(long, long, long, long)}. Each row is one price change
+     * or one day or month with changes, whichever is the coarsest level still finer than the
+     * requested resolution. Rows are in time order.
+     */
+    public static final class PriceEntry {
+        /**
+         * The MIME type of a price chart URI.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_BOOKS + "." + PATH_PRICES;
+
+        /**
+         * Query parameter holding the start of the chart in milliseconds since the epoch.
+         * Defaults to the first change.
+         */
+        public static final String QUERY_PARAMETER_FROM = "from";
+
+        /**
+         * Query parameter holding the end of the chart in milliseconds since the epoch.
+         * Defaults to now.
+         */
+        public static final String QUERY_PARAMETER_TO = "to";
+
+        /**
+         * Query parameter holding the time in milliseconds one point of the chart stands
+         * for. Defaults to the chart length divided by {@link #DEFAULT_POINTS}.
+         */
+        public static final String QUERY_PARAMETER_RESOLUTION = "resolution";
+
+        /** Number of points the resolution is chosen for when the query doesn't give one */
+        public static final int DEFAULT_POINTS = 300;
+
+        /** Level of the rows: every single price change */
+        public static final int LEVEL_RAW = 0;
+
+        /** Level of the rows: one per day, in UTC */
+        public static final int LEVEL_DAY = 1;
+
+        /** Level of the rows: one per calendar month, in UTC */
+        public static final int LEVEL_MONTH = 2;
+
+        /**
+         * Start of the point: the time of the change, or the start of the day or month.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_AT = "at";
+
+        /**
+         * Price at the start of the point. For a single change it is the new price.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_OPEN = "open";
+
+        /**
+         * Highest price of the point.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_HIGH = "high";
+
+        /**
+         * Lowest price of the point.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_LOW = "low";
+
+        /**
+         * Price at the end of the point.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_CLOSE = "close";
+
+        /**
+         * Level of the point, {@link #LEVEL_RAW}, {@link #LEVEL_DAY} or {@link #LEVEL_MONTH}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE_LEVEL = "level";
     }
-}
\ No newline at end of file
+}
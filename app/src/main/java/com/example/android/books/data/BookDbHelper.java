@@ -2,9 +2,26 @@ package com.example.android.books.data;
 
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import com.example.android.books.data.BookContract.ArchivedBookEntry;
 import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookStockEntry;
+import com.example.android.books.data.BookContract.DemandEntry;
+import com.example.android.books.data.BookContract.LocationEntry;
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.PriceEntry;
+import com.example.android.books.data.BookContract.PriceHistoryEntry;
+import com.example.android.books.data.BookContract.PriceRollupEntry;
+import com.example.android.books.data.BookContract.SaleEntry;
+import com.example.android.books.data.BookContract.StockSnapshotEntry;
+import com.example.android.books.data.BookContract.BookTagEntry;
+import com.example.android.books.data.BookContract.TagEntry;
+
+import java.util.HashSet;
+import java.util.Set;
 
 /*
  * Copyright (C) 2016 The Android Open Source Project
@@ -37,7 +54,54 @@ public class BookDbHelper extends SQLiteOpenHelper {
      * Database version. If you change the database schema,
      * you must increment the database version.
      */
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 16;
+
+    /** Unique index of the dedupe keys */
+    static final String INDEX_DEDUPE_KEY = "books_dedupe_key";
+
+    /** Index covering the columns of the per-supplier report */
+    static final String INDEX_SUPPLIER_REPORT = "books_supplier_report";
+
+    /** Index of the books below their reorder threshold, in the order they got there */
+    static final String INDEX_LOW_STOCK = "books_low_since";
+
+    /** Index of the books out of stock, by the time they were last modified */
+    static final String INDEX_COLD_BOOKS = "books_cold";
+
+    /** Index of the books by stock value */
+    static final String INDEX_STOCK_VALUE = "books_stock_value";
+
+    /** Unique index of the dedupe keys of the archived books */
+    static final String INDEX_ARCHIVE_DEDUPE_KEY = "books_archive_dedupe_key";
+
+    /** Index of the books in catalog order */
+    static final String INDEX_CATALOG_ORDER = "books_name_nocase";
+
+    /** Name of the location every existing book starts out at */
+    private static final String DEFAULT_LOCATION_NAME = "Main";
+
+    /** SQL expression of the current time in milliseconds since the epoch */
+    private static final String SQL_NOW_MILLIS =
+            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /** The helper shared by the provider and the start-up warm-up */
+    private static BookDbHelper sInstance;
+
+    /** Begin timestamp of the database open currently in progress, for {@link StartupTrace} */
+    private long mOpenBeginNanos;
+
+    /**
+     * Returns the process wide helper. Sharing it means the connection, and the statements
+     * compiled into it, are opened once.
+     *
+     * @param context of the app
+     */
+    public static synchronized BookDbHelper getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BookDbHelper(context.getApplicationContext());
+        }
+        return sInstance;
+    }
 
     /**
      * Constructs a new instance of {@link BookDbHelper}.
@@ -48,6 +112,27 @@ public class BookDbHelper extends SQLiteOpenHelper {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
+    /**
+     * This is called first when the database is being opened.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        mOpenBeginNanos = StartupTrace.begin();
+        // Rows referring to a book go away together with the book.
+        db.setForeignKeyConstraintsEnabled(true);
+        // Readers and backups read a snapshot while a write is committing, instead of
+        // waiting for it.
+        db.enableWriteAheadLogging();
+    }
+
+    /**
+     * This is called once the database is open, created and upgraded.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        StartupTrace.end(StartupTrace.DATABASE_OPEN, mOpenBeginNanos);
+    }
+
     /**
      * This is called when the database is created for the first time.
      */
@@ -63,14 +148,477 @@ public class BookDbHelper extends SQLiteOpenHelper {
                 + BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER + " TEXT);";
         // Execute the SQL statement
         db.execSQL(SQL_CREATE_BOOKS_TABLE);
+
+        // The statement above is the version 1 schema. Bring a fresh database up to date
+        // through the same steps an existing installation goes through.
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. Each step moves the schema
+     * forward by exactly one version, so any older database can be brought up to date.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        if (oldVersion < 2) {
+            upgradeToVersion2(db);
+        }
+        if (oldVersion < 3) {
+            upgradeToVersion3(db);
+        }
+        if (oldVersion < 4) {
+            upgradeToVersion4(db);
+        }
+        if (oldVersion < 5) {
+            upgradeToVersion5(db);
+        }
+        if (oldVersion < 6) {
+            upgradeToVersion6(db);
+        }
+        if (oldVersion < 7) {
+            upgradeToVersion7(db);
+        }
+        if (oldVersion < 8) {
+            upgradeToVersion8(db);
+        }
+        if (oldVersion < 9) {
+            upgradeToVersion9(db);
+        }
+        if (oldVersion < 10) {
+            upgradeToVersion10(db);
+        }
+        if (oldVersion < 11) {
+            upgradeToVersion11(db);
+        }
+        if (oldVersion < 12) {
+            upgradeToVersion12(db);
+        }
+        if (oldVersion < 13) {
+            upgradeToVersion13(db);
+        }
+        if (oldVersion < 14) {
+            upgradeToVersion14(db);
+        }
+        if (oldVersion < 15) {
+            upgradeToVersion15(db);
+        }
+        if (oldVersion < 16) {
+            upgradeToVersion16(db);
+        }
+    }
+
+    /**
+     * Version 2: covers are stored as files, the books table only keeps their file name.
+     */
+    private void upgradeToVersion2(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN "
+                + BookEntry.COLUMN_BOOK_COVER_PATH + " TEXT");
+    }
+
+    /**
+     * Version 3: every row carries a version number for optimistic concurrency.
+     */
+    private void upgradeToVersion3(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN "
+                + BookEntry.COLUMN_BOOK_VERSION + " INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Version 4: index covering the per-supplier report. It holds every column the report
+     * reads, in supplier order, so the report is answered from the index alone.
+     */
+    private void upgradeToVersion4(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + INDEX_SUPPLIER_REPORT + " ON " + BookEntry.TABLE_NAME + " ("
+                + BookEntry.COLUMN_BOOK_SUPPLIER_NAME + ", "
+                + BookEntry.COLUMN_BOOK_QUANTITY + ", "
+                + BookEntry.COLUMN_BOOK_PRICE + ")");
+    }
+
+    /**
+     * Version 5: sales history and the running demand estimate of every book that sold.
+     */
+    private void upgradeToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SaleEntry.TABLE_NAME + " ("
+                + SaleEntry._ID + " INTEGER PRIMARY KEY, "
+                + SaleEntry.COLUMN_SALE_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + SaleEntry.COLUMN_SALE_UNITS + " INTEGER NOT NULL, "
+                + SaleEntry.COLUMN_SALE_TIME + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + SaleEntry.TABLE_NAME + "_book ON " + SaleEntry.TABLE_NAME
+                + " (" + SaleEntry.COLUMN_SALE_BOOK_ID + ", " + SaleEntry.COLUMN_SALE_TIME + ")");
+        db.execSQL("CREATE TABLE " + DemandEntry.TABLE_NAME + " ("
+                + DemandEntry.COLUMN_DEMAND_BOOK_ID + " INTEGER PRIMARY KEY REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + DemandEntry.COLUMN_DEMAND_DECAYED_UNITS + " REAL NOT NULL, "
+                + DemandEntry.COLUMN_DEMAND_LAST_SALE + " INTEGER NOT NULL)");
+    }
+
+    /**
+     * Version 6: stock movement ledger and the snapshots that keep reading it cheap. Every
+     * existing book starts its ledger with a snapshot of its current quantity.
+     */
+    private void upgradeToVersion6(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + MovementEntry.TABLE_NAME + " ("
+                + MovementEntry._ID + " INTEGER PRIMARY KEY, "
+                + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + MovementEntry.COLUMN_MOVEMENT_KIND + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_MOVEMENT_DELTA + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_MOVEMENT_TIME + " INTEGER NOT NULL)");
+        // Index entries end with the row ID, so this also orders a book's movements by ID.
+        db.execSQL("CREATE INDEX " + MovementEntry.TABLE_NAME + "_book ON "
+                + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + ")");
+        db.execSQL("CREATE INDEX " + MovementEntry.TABLE_NAME + "_time ON "
+                + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_MOVEMENT_TIME + ")");
+
+        db.execSQL("CREATE TABLE " + StockSnapshotEntry.TABLE_NAME + " ("
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + " INTEGER NOT NULL, "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + " INTEGER NOT NULL, "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_QUANTITY + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + ", "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + ")) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX " + StockSnapshotEntry.TABLE_NAME + "_time ON "
+                + StockSnapshotEntry.TABLE_NAME + " ("
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + ", "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + ")");
+
+        db.execSQL("INSERT INTO " + StockSnapshotEntry.TABLE_NAME + " ("
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + ", "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + ", "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + ", "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_QUANTITY + ") SELECT "
+                + BookEntry._ID + ", 0, ?, " + BookEntry.COLUMN_BOOK_QUANTITY
+                + " FROM " + BookEntry.TABLE_NAME,
+                new Object[] { System.currentTimeMillis() });
+    }
+
+    /**
+     * Version 7: per-book reorder thresholds, and the time each book dropped below its
+     * threshold. Triggers keep that time current on every write, so the low stock job finds
+     * the newly low books through a small partial index instead of checking each update.
+     */
+    private void upgradeToVersion7(SQLiteDatabase db) {
+        String quantity = BookEntry.COLUMN_BOOK_QUANTITY;
+        String threshold = BookEntry.COLUMN_BOOK_REORDER_THRESHOLD;
+        String lowSince = BookEntry.COLUMN_BOOK_LOW_SINCE;
+
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN " + threshold
+                + " INTEGER NOT NULL DEFAULT " + BookEntry.DEFAULT_REORDER_THRESHOLD);
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN " + lowSince + " INTEGER");
+        db.execSQL("UPDATE " + BookEntry.TABLE_NAME + " SET " + lowSince + " = " + SQL_NOW_MILLIS
+                + " WHERE " + quantity + " < " + threshold);
+        db.execSQL("CREATE INDEX " + INDEX_LOW_STOCK + " ON " + BookEntry.TABLE_NAME
+                + " (" + lowSince + ") WHERE " + lowSince + " IS NOT NULL");
+
+        String setLow = " BEGIN UPDATE " + BookEntry.TABLE_NAME + " SET " + lowSince + " = "
+                + SQL_NOW_MILLIS + " WHERE " + BookEntry._ID + " = NEW." + BookEntry._ID + "; END";
+        db.execSQL("CREATE TRIGGER books_low_on_insert AFTER INSERT ON " + BookEntry.TABLE_NAME
+                + " WHEN NEW." + quantity + " < NEW." + threshold + setLow);
+        db.execSQL("CREATE TRIGGER books_low_on_update AFTER UPDATE OF " + quantity + ", "
+                + threshold + " ON " + BookEntry.TABLE_NAME
+                + " WHEN NEW." + quantity + " < NEW." + threshold
+                + " AND NEW." + lowSince + " IS NULL" + setLow);
+        db.execSQL("CREATE TRIGGER books_restocked AFTER UPDATE OF " + quantity + ", "
+                + threshold + " ON " + BookEntry.TABLE_NAME
+                + " WHEN NEW." + quantity + " >= NEW." + threshold
+                + " AND NEW." + lowSince + " IS NOT NULL"
+                + " BEGIN UPDATE " + BookEntry.TABLE_NAME + " SET " + lowSince + " = NULL"
+                + " WHERE " + BookEntry._ID + " = NEW." + BookEntry._ID + "; END");
+
+        // The supplier report now compares each book with its own threshold.
+        db.execSQL("DROP INDEX " + INDEX_SUPPLIER_REPORT);
+        db.execSQL("CREATE INDEX " + INDEX_SUPPLIER_REPORT + " ON " + BookEntry.TABLE_NAME + " ("
+                + BookEntry.COLUMN_BOOK_SUPPLIER_NAME + ", "
+                + quantity + ", "
+                + BookEntry.COLUMN_BOOK_PRICE + ", "
+                + threshold + ")");
+    }
+
+    /**
+     * Version 8: the catalog is sorted by name. The index hands the rows out in that order, so
+     * neither the list nor the section counts sort the whole table.
+     */
+    private void upgradeToVersion8(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + INDEX_CATALOG_ORDER + " ON " + BookEntry.TABLE_NAME
+                + " (" + BookEntry.COLUMN_BOOK_PRODUCT_NAME + " COLLATE NOCASE)");
+    }
+
+    /**
+     * Version 9: quantities per location. The primary key starts with the location, so the
+     * catalog of one location is a range of the key however many locations there are. All
+     * existing stock moves to the default location, which keeps the book totals as they are.
+     */
+    private void upgradeToVersion9(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + LocationEntry.TABLE_NAME + " ("
+                + LocationEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + LocationEntry.COLUMN_LOCATION_NAME + " TEXT NOT NULL UNIQUE)");
+        db.execSQL("INSERT INTO " + LocationEntry.TABLE_NAME + " ("
+                + LocationEntry._ID + ", " + LocationEntry.COLUMN_LOCATION_NAME + ") VALUES ("
+                + LocationEntry.DEFAULT_LOCATION_ID + ", '" + DEFAULT_LOCATION_NAME + "')");
+
+        db.execSQL("CREATE TABLE " + BookStockEntry.TABLE_NAME + " ("
+                + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + " INTEGER NOT NULL REFERENCES "
+                + LocationEntry.TABLE_NAME + "(" + LocationEntry._ID + "), "
+                + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + "(" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + ", "
+                + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + ")) WITHOUT ROWID");
+        // For the locations of one book, and for the cascade when a book is deleted
+        db.execSQL("CREATE INDEX book_stock_book ON " + BookStockEntry.TABLE_NAME
+                + " (" + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + ")");
+
+        db.execSQL("INSERT INTO " + BookStockEntry.TABLE_NAME + " ("
+                + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + ", "
+                + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + ", "
+                + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + ") SELECT "
+                + LocationEntry.DEFAULT_LOCATION_ID + ", " + BookEntry._ID + ", "
+                + BookEntry.COLUMN_BOOK_QUANTITY + " FROM " + BookEntry.TABLE_NAME);
+    }
+
+    /**
+     * Version 10: price history with daily and monthly rollups. The rollups are keyed by
+     * (book, level, period), so a chart is one range of the key. The current prices start the
+     * history, as if every book got its price now.
+     */
+    private void upgradeToVersion10(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + PriceHistoryEntry.TABLE_NAME + " ("
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + "(" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME + " INTEGER NOT NULL, "
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX price_history_book_time ON " + PriceHistoryEntry.TABLE_NAME
+                + " (" + PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID + ", "
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME + ")");
+
+        db.execSQL("CREATE TABLE " + PriceRollupEntry.TABLE_NAME + " ("
+                + PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + "(" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_START + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_OPEN + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_HIGH + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_LOW + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_CLOSE + " INTEGER NOT NULL, "
+                + PriceRollupEntry.COLUMN_ROLLUP_CHANGES + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID + ", "
+                + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + ", "
+                + PriceRollupEntry.COLUMN_ROLLUP_START + ")) WITHOUT ROWID");
+
+        long now = System.currentTimeMillis();
+        db.execSQL("INSERT INTO " + PriceHistoryEntry.TABLE_NAME + " ("
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID + ", "
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME + ", "
+                + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + ") SELECT "
+                + BookEntry._ID + ", " + now + ", " + BookEntry.COLUMN_BOOK_PRICE
+                + " FROM " + BookEntry.TABLE_NAME);
+        for (int level : new int[] { PriceEntry.LEVEL_DAY, PriceEntry.LEVEL_MONTH }) {
+            db.execSQL("INSERT INTO " + PriceRollupEntry.TABLE_NAME + " ("
+                    + PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_START + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_OPEN + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_HIGH + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_LOW + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_CLOSE + ", "
+                    + PriceRollupEntry.COLUMN_ROLLUP_CHANGES + ") SELECT "
+                    + BookEntry._ID + ", " + level + ", "
+                    + PriceResolution.periodStart(level, now) + ", "
+                    + BookEntry.COLUMN_BOOK_PRICE + ", " + BookEntry.COLUMN_BOOK_PRICE + ", "
+                    + BookEntry.COLUMN_BOOK_PRICE + ", " + BookEntry.COLUMN_BOOK_PRICE + ", 1"
+                    + " FROM " + BookEntry.TABLE_NAME);
+        }
+    }
+
+    /**
+     * Version 11: the dedupe key, with a unique index so an insert finds an existing copy of
+     * the book by itself. The key is computed in Java, SQLite can't fold the case of
+     * non-ASCII letters. Of the books that are already duplicates, the oldest gets the key and
+     * the others keep none, so existing data never blocks the upgrade.
+     */
+    private void upgradeToVersion11(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN "
+                + BookEntry.COLUMN_BOOK_DEDUPE_KEY + " TEXT");
+
+        Set<String> keys = new HashSet<>();
+        SQLiteStatement update = db.compileStatement("UPDATE " + BookEntry.TABLE_NAME
+                + " SET " + BookEntry.COLUMN_BOOK_DEDUPE_KEY + "=? WHERE " + BookEntry._ID + "=?");
+        Cursor cursor = db.query(BookEntry.TABLE_NAME,
+                new String[] {
+                        BookEntry._ID,
+                        BookEntry.COLUMN_BOOK_PRODUCT_NAME,
+                        BookEntry.COLUMN_BOOK_SUPPLIER_NAME
+                },
+                null, null, null, null, BookEntry._ID);
+        try {
+            while (cursor.moveToNext()) {
+                String key = DedupeKey.of(cursor.getString(1), cursor.getString(2));
+                if (keys.add(key)) {
+                    update.bindString(1, key);
+                    update.bindLong(2, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_DEDUPE_KEY + " ON " + BookEntry.TABLE_NAME
+                + " (" + BookEntry.COLUMN_BOOK_DEDUPE_KEY + ")");
     }
-}
 
+    /**
+     * Version 12: tags. The tags of the books are keyed by (tag, book), the order the tag
+     * index is loaded in, with an index by book for the tags of one book and the cascade when
+     * a book is deleted.
+     */
+    private void upgradeToVersion12(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TagEntry.TABLE_NAME + " ("
+                + TagEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + TagEntry.COLUMN_TAG_NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE)");
+
+        db.execSQL("CREATE TABLE " + BookTagEntry.TABLE_NAME + " ("
+                + BookTagEntry.COLUMN_BOOK_TAG_TAG_ID + " INTEGER NOT NULL REFERENCES "
+                + TagEntry.TABLE_NAME + "(" + TagEntry._ID + ") ON DELETE CASCADE, "
+                + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + "(" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + "PRIMARY KEY (" + BookTagEntry.COLUMN_BOOK_TAG_TAG_ID + ", "
+                + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID + ")) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX book_tags_book ON " + BookTagEntry.TABLE_NAME
+                + " (" + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID + ")");
+    }
+
+    /**
+     * Version 13: the archive of cold books, and the last modified time that tells which
+     * books are cold. Triggers keep the time current on every insert and edit, and a partial
+     * index holds the books out of stock by that time, so the archive job finds the coldest
+     * ones without scanning the catalog.
+     *
+     * The only past changes the database has a time for are the stock movements, so existing
+     * books start out modified at their latest movement, or now if they have none.
+     */
+    private void upgradeToVersion13(SQLiteDatabase db) {
+        String lastModified = BookEntry.COLUMN_BOOK_LAST_MODIFIED;
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN " + lastModified
+                + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE " + BookEntry.TABLE_NAME + " SET " + lastModified + " = COALESCE("
+                + "(SELECT MAX(" + MovementEntry.COLUMN_MOVEMENT_TIME + ") FROM "
+                + MovementEntry.TABLE_NAME + " WHERE " + MovementEntry.COLUMN_MOVEMENT_BOOK_ID
+                + " = " + BookEntry.TABLE_NAME + "." + BookEntry._ID + "), "
+                + "(SELECT MAX(" + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + ") FROM "
+                + StockSnapshotEntry.TABLE_NAME + " WHERE "
+                + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + " = "
+                + BookEntry.TABLE_NAME + "." + BookEntry._ID + "), "
+                + SQL_NOW_MILLIS + ")");
+
+        String touch = " BEGIN UPDATE " + BookEntry.TABLE_NAME + " SET " + lastModified + " = "
+                + SQL_NOW_MILLIS + " WHERE " + BookEntry._ID + " = NEW." + BookEntry._ID + "; END";
+        db.execSQL("CREATE TRIGGER books_modified_on_insert AFTER INSERT ON "
+                + BookEntry.TABLE_NAME + touch);
+        // Only the columns callers write, not the ones the database and provider maintain.
+        db.execSQL("CREATE TRIGGER books_modified_on_update AFTER UPDATE OF "
+                + BookEntry.COLUMN_BOOK_PRODUCT_NAME + ", "
+                + BookEntry.COLUMN_BOOK_PRICE + ", "
+                + BookEntry.COLUMN_BOOK_QUANTITY + ", "
+                + BookEntry.COLUMN_BOOK_SUPPLIER_NAME + ", "
+                + BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER + ", "
+                + BookEntry.COLUMN_BOOK_COVER_PATH + ", "
+                + BookEntry.COLUMN_BOOK_REORDER_THRESHOLD
+                + " ON " + BookEntry.TABLE_NAME + touch);
+        db.execSQL("CREATE INDEX " + INDEX_COLD_BOOKS + " ON " + BookEntry.TABLE_NAME
+                + " (" + lastModified + ") WHERE " + BookEntry.COLUMN_BOOK_QUANTITY + " = 0");
+
+        BookArchive.createTable(db);
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_ARCHIVE_DEDUPE_KEY + " ON "
+                + ArchivedBookEntry.TABLE_NAME + " (" + BookEntry.COLUMN_BOOK_DEDUPE_KEY + ")");
+    }
+
+    /**
+     * Version 14: the stock value of every book, stored so an index can hand the books out
+     * by value. Triggers keep it equal to price times quantity. The archive gets the column
+     * too, at the same position, so books still move with SELECT *.
+     */
+    private void upgradeToVersion14(SQLiteDatabase db) {
+        String stockValue = BookEntry.COLUMN_BOOK_STOCK_VALUE;
+        String value = BookEntry.COLUMN_BOOK_PRICE + " * " + BookEntry.COLUMN_BOOK_QUANTITY;
+        db.execSQL("ALTER TABLE " + BookEntry.TABLE_NAME + " ADD COLUMN " + stockValue
+                + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE " + BookEntry.TABLE_NAME + " SET " + stockValue + " = " + value);
+        db.execSQL("ALTER TABLE " + ArchivedBookEntry.TABLE_NAME + " ADD COLUMN " + stockValue
+                + " INTEGER");
+        db.execSQL("UPDATE " + ArchivedBookEntry.TABLE_NAME + " SET " + stockValue + " = "
+                + value);
+
+        String setValue = " WHEN NEW." + stockValue + " != NEW." + BookEntry.COLUMN_BOOK_PRICE
+                + " * NEW." + BookEntry.COLUMN_BOOK_QUANTITY
+                + " BEGIN UPDATE " + BookEntry.TABLE_NAME + " SET " + stockValue + " = " + value
+                + " WHERE " + BookEntry._ID + " = NEW." + BookEntry._ID + "; END";
+        db.execSQL("CREATE TRIGGER books_value_on_insert AFTER INSERT ON "
+                + BookEntry.TABLE_NAME + setValue);
+        db.execSQL("CREATE TRIGGER books_value_on_update AFTER UPDATE OF "
+                + BookEntry.COLUMN_BOOK_PRICE + ", " + BookEntry.COLUMN_BOOK_QUANTITY
+                + " ON " + BookEntry.TABLE_NAME + setValue);
+        db.execSQL("CREATE INDEX " + INDEX_STOCK_VALUE + " ON " + BookEntry.TABLE_NAME
+                + " (" + stockValue + ")");
+    }
+
+    /**
+     * Version 15: a new book whose dedupe key belongs to an archived book is ignored, like
+     * one whose key is in the books table already. The unique index can't reach across the
+     * two tables, so a trigger looks the key up in the archive's index, and an insert no
+     * longer needs a query of its own before it. The book being moved back out of the archive
+     * is still there while it is inserted, and must pass.
+     */
+    private void upgradeToVersion15(SQLiteDatabase db) {
+        String key = BookEntry.COLUMN_BOOK_DEDUPE_KEY;
+        db.execSQL("CREATE TRIGGER books_archived_dedupe_key BEFORE INSERT ON "
+                + BookEntry.TABLE_NAME
+                + " WHEN EXISTS (SELECT 1 FROM " + ArchivedBookEntry.TABLE_NAME
+                + " WHERE " + key + " = NEW." + key
+                + " AND " + BookEntry._ID + " IS NOT NEW." + BookEntry._ID + ")"
+                + " BEGIN SELECT RAISE(IGNORE); END");
+    }
+
+    /**
+     * Version 16: archived books keep their history in archive tables of their own, see
+     * {@link BookArchive}. Movements and sales keep their IDs there, so both tables are
+     * rebuilt to hand out IDs with AUTOINCREMENT, which never reuses the ID of a row that was
+     * moved out. Books archived before lost their history already; they start a new one when
+     * they come back, as before.
+     */
+    private void upgradeToVersion16(SQLiteDatabase db) {
+        String movements = MovementEntry.TABLE_NAME;
+        db.execSQL("CREATE TABLE " + movements + "_new ("
+                + MovementEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + MovementEntry.COLUMN_MOVEMENT_KIND + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_MOVEMENT_DELTA + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_MOVEMENT_TIME + " INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO " + movements + "_new SELECT * FROM " + movements);
+        db.execSQL("DROP TABLE " + movements);
+        db.execSQL("ALTER TABLE " + movements + "_new RENAME TO " + movements);
+        db.execSQL("CREATE INDEX " + movements + "_book ON " + movements
+                + " (" + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + ")");
+        db.execSQL("CREATE INDEX " + movements + "_time ON " + movements
+                + " (" + MovementEntry.COLUMN_MOVEMENT_TIME + ")");
+
+        String sales = SaleEntry.TABLE_NAME;
+        db.execSQL("CREATE TABLE " + sales + "_new ("
+                + SaleEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SaleEntry.COLUMN_SALE_BOOK_ID + " INTEGER NOT NULL REFERENCES "
+                + BookEntry.TABLE_NAME + " (" + BookEntry._ID + ") ON DELETE CASCADE, "
+                + SaleEntry.COLUMN_SALE_UNITS + " INTEGER NOT NULL, "
+                + SaleEntry.COLUMN_SALE_TIME + " INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO " + sales + "_new SELECT * FROM " + sales);
+        db.execSQL("DROP TABLE " + sales);
+        db.execSQL("ALTER TABLE " + sales + "_new RENAME TO " + sales);
+        db.execSQL("CREATE INDEX " + sales + "_book ON " + sales
+                + " (" + SaleEntry.COLUMN_SALE_BOOK_ID + ", " + SaleEntry.COLUMN_SALE_TIME + ")");
+
+        BookArchive.createHistoryTables(db);
+    }
+}
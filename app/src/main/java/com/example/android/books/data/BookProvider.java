@@ -1,17 +1,49 @@
 package com.example.android.books.data;
 
+import android.app.SearchManager;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
+import android.provider.BaseColumns;
+import com.example.android.books.data.BookContract.ArchivedBookEntry;
 import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookStockEntry;
+import com.example.android.books.data.BookContract.BookTagEntry;
+import com.example.android.books.data.BookContract.CatalogSectionEntry;
+import com.example.android.books.data.BookContract.DemandEntry;
+import com.example.android.books.data.BookContract.ForecastEntry;
+import com.example.android.books.data.BookContract.LocationEntry;
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.PriceEntry;
+import com.example.android.books.data.BookContract.SaleEntry;
+import com.example.android.books.data.BookContract.StockEntry;
+import com.example.android.books.data.BookContract.SupplierReportEntry;
+import com.example.android.books.data.BookContract.TagEntry;
 import android.util.Log;
 import com.example.android.books.data.BookDbHelper;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * {@link ContentProvider} for Books app.
@@ -29,6 +61,134 @@ public class BookProvider extends ContentProvider {
     /** URI matcher code for the content URI for a single book in the books table */
     private static final int BOOK_ID = 101;
 
+    /** URI matcher code for the content URI for the cover image of a single book */
+    private static final int BOOK_COVER = 102;
+
+    /** URI matcher code for the search suggestions of the catalog search box */
+    private static final int SEARCH_SUGGEST = 103;
+
+    /** URI matcher code for the content URI for the per-supplier stock report */
+    private static final int SUPPLIER_REPORT = 104;
+
+    /** URI matcher code for the content URI for the demand forecast of a single book */
+    private static final int BOOK_FORECAST = 105;
+
+    /** URI matcher code for the content URI for the past quantity of a single book */
+    private static final int BOOK_STOCK = 106;
+
+    /** URI matcher code for the content URI for the stock movements of a single book */
+    private static final int BOOK_MOVEMENTS = 107;
+
+    /** URI matcher code for the content URI for the whole stock movement ledger */
+    private static final int MOVEMENTS = 108;
+
+    /** URI matcher code for the content URI for the catalog sections */
+    private static final int CATALOG_SECTIONS = 109;
+
+    /** URI matcher code for the content URI for the locations table */
+    private static final int LOCATIONS = 110;
+
+    /** URI matcher code for the content URI for a single location */
+    private static final int LOCATION_ID = 111;
+
+    /** URI matcher code for the content URI for the catalog of a location */
+    private static final int LOCATION_BOOKS = 112;
+
+    /** URI matcher code for the content URI for a single book at a location */
+    private static final int LOCATION_BOOK_ID = 113;
+
+    /** URI matcher code for the content URI for the quantities per location of a book */
+    private static final int BOOK_LOCATIONS = 114;
+
+    /** URI matcher code for the content URI for the price chart of a book */
+    private static final int BOOK_PRICES = 115;
+
+    /** URI matcher code for the content URI for the tags table */
+    private static final int TAGS = 116;
+
+    /** URI matcher code for the content URI for a single tag */
+    private static final int TAG_ID = 117;
+
+    /** URI matcher code for the content URI for the tags of a book */
+    private static final int BOOK_TAGS = 118;
+
+    /** URI matcher code for the content URI for one tag of a book */
+    private static final int BOOK_TAG_ID = 119;
+
+    /** URI matcher code for the content URI for the books filtered by tags */
+    private static final int BOOK_FILTER = 120;
+
+    /** The tags of one book, by name */
+    private static final String BOOK_TAGS_QUERY = "SELECT "
+            + TagEntry.TABLE_NAME + "." + TagEntry._ID + ", "
+            + TagEntry.TABLE_NAME + "." + TagEntry.COLUMN_TAG_NAME
+            + " FROM " + BookTagEntry.TABLE_NAME + " JOIN " + TagEntry.TABLE_NAME
+            + " ON " + TagEntry.TABLE_NAME + "." + TagEntry._ID + " = "
+            + BookTagEntry.TABLE_NAME + "." + BookTagEntry.COLUMN_BOOK_TAG_TAG_ID
+            + " WHERE " + BookTagEntry.TABLE_NAME + "." + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID
+            + "=? ORDER BY " + TagEntry.TABLE_NAME + "." + TagEntry.COLUMN_TAG_NAME;
+
+    /** Columns of the past quantity cursor */
+    private static final String[] STOCK_COLUMNS = {
+            StockEntry._ID,
+            StockEntry.COLUMN_STOCK_QUANTITY,
+            StockEntry.COLUMN_STOCK_AT
+    };
+
+    /** Columns of the demand forecast cursor */
+    private static final String[] FORECAST_COLUMNS = {
+            ForecastEntry._ID,
+            ForecastEntry.COLUMN_DAILY_DEMAND,
+            ForecastEntry.COLUMN_DAYS_REMAINING,
+            ForecastEntry.COLUMN_SUGGESTED_REORDER
+    };
+
+    /** Outcome of an upserted row: an existing book was updated */
+    private static final int ROW_UPDATED = 0;
+
+    /** Outcome of an upserted row: the book was new and was inserted */
+    private static final int ROW_INSERTED = 1;
+
+    /** Outcome of an upserted row: an archived book was brought back and updated */
+    private static final int ROW_RESTORED = 2;
+
+    /** Number of suggestions returned when the search box doesn't ask for a limit */
+    private static final int DEFAULT_SUGGESTION_LIMIT = 10;
+
+    /** Upper bound for the number of suggestions, whatever limit the search box asks for */
+    private static final int MAX_SUGGESTION_LIMIT = 50;
+
+    /** Columns of the search suggestions cursor */
+    private static final String[] SUGGESTION_COLUMNS = {
+            BaseColumns._ID,
+            SearchManager.SUGGEST_COLUMN_TEXT_1,
+            SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID
+    };
+
+    /** Name of the directory inside the app's files directory that holds the cover images */
+    private static final String COVER_DIRECTORY = "covers";
+
+    /** MIME type of the cover images served by {@link #openFile(Uri, String)} */
+    private static final String COVER_MIME_TYPE = "image/jpeg";
+
+    /** Handler that receives the close callbacks of cover files opened for writing */
+    private Handler mCoverHandler;
+
+    /** Keeps the on-disk catalog snapshot in step with committed changes */
+    private CatalogSnapshotWriter mSnapshotWriter;
+
+    /** In-memory title index answering the search suggestions */
+    private TitleSuggestions mTitleSuggestions;
+
+    /** Cached per-letter counts of the catalog */
+    private final CatalogSectionCounter mSectionCounter = new CatalogSectionCounter();
+
+    /** Merges the change notifications of bursts of writes */
+    private ChangeNotifier mChangeNotifier;
+
+    /** Filters the catalog by tags, through an index kept current by the writes below */
+    private TagFilter mTagFilter;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -58,6 +218,76 @@ public class BookProvider extends ContentProvider {
         // For example, "content://com.example.android.books/books/3" matches, but
         // "content://com.example.android.books/books" (without a number at the end) doesn't match.
         sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY, BookContract.PATH_BOOKS + "/#", BOOK_ID);
+
+        // The content URI of the form "content://com.example.android.books/books/sections"
+        // will map to the integer code {@link #CATALOG_SECTIONS}. It is read only.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/" + BookContract.PATH_SECTIONS, CATALOG_SECTIONS);
+
+        // The content URI of the form "content://com.example.android.books/books/#/cover" will
+        // map to the integer code {@link #BOOK_COVER}. It is only used with openFile().
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_COVER, BOOK_COVER);
+
+        // The content URI of the form "content://com.example.android.books/books/#/forecast"
+        // will map to the integer code {@link #BOOK_FORECAST}. It is read only.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_FORECAST, BOOK_FORECAST);
+
+        // The stock ledger: "content://com.example.android.books/books/#/stock" is the quantity
+        // of a book at a point in time, "content://com.example.android.books/books/#/movements"
+        // lists the movements of a book and "content://com.example.android.books/movements"
+        // is the whole ledger, which can only be compacted.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_STOCK, BOOK_STOCK);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_MOVEMENTS, BOOK_MOVEMENTS);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY, BookContract.PATH_MOVEMENTS, MOVEMENTS);
+
+        // The locations: "content://com.example.android.books/locations/#/books" is the
+        // catalog of one location, "content://com.example.android.books/locations/#/books/#"
+        // a single book there, and "content://com.example.android.books/books/#/locations"
+        // the quantities of one book per location.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY, BookContract.PATH_LOCATIONS, LOCATIONS);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_LOCATIONS + "/#", LOCATION_ID);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_LOCATIONS + "/#/" + BookContract.PATH_BOOKS, LOCATION_BOOKS);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_LOCATIONS + "/#/" + BookContract.PATH_BOOKS + "/#",
+                LOCATION_BOOK_ID);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_LOCATIONS, BOOK_LOCATIONS);
+
+        // The content URI of the form "content://com.example.android.books/books/#/prices"
+        // will map to the integer code {@link #BOOK_PRICES}. It is read only.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_PRICES, BOOK_PRICES);
+
+        // The tags: "content://com.example.android.books/tags" are all tags,
+        // "content://com.example.android.books/books/#/tags" the tags of one book, and
+        // "content://com.example.android.books/books/filter" the books with a combination of
+        // tags.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY, BookContract.PATH_TAGS, TAGS);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY, BookContract.PATH_TAGS + "/#", TAG_ID);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_TAGS, BOOK_TAGS);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/#/" + BookContract.PATH_TAGS + "/#", BOOK_TAG_ID);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_BOOKS + "/" + BookContract.PATH_FILTER, BOOK_FILTER);
+
+        // The search box asks for suggestions with URIs of the form
+        // "content://com.example.android.books/search_suggest_query/<typed text>".
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                SearchManager.SUGGEST_URI_PATH_QUERY, SEARCH_SUGGEST);
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                SearchManager.SUGGEST_URI_PATH_QUERY + "/*", SEARCH_SUGGEST);
+
+        // The content URI of the form "content://com.example.android.books/suppliers/report"
+        // will map to the integer code {@link #SUPPLIER_REPORT}. It is read only.
+        sUriMatcher.addURI(BookContract.CONTENT_AUTHORITY,
+                BookContract.PATH_SUPPLIERS + "/" + BookContract.PATH_REPORT, SUPPLIER_REPORT);
     }
 
     /**
@@ -69,7 +299,15 @@ public class BookProvider extends ContentProvider {
         // Make sure the variable is a global variable, so it can be referenced from other
         // ContentProvider methods.
         Log.v(LOG_TAG, "inside onCreate()");
-        mDbHelper = new BookDbHelper(getContext());
+        long traceBegin = StartupTrace.begin();
+        mDbHelper = BookDbHelper.getInstance(getContext());
+        mSnapshotWriter = new CatalogSnapshotWriter(getContext(), mDbHelper);
+        mChangeNotifier = new ChangeNotifier(getContext().getContentResolver(),
+                LOG_TAG + "-notifications");
+        mTagFilter = new TagFilter(mDbHelper);
+        mTitleSuggestions = new TitleSuggestions(getContext(), mDbHelper);
+        mTitleSuggestions.start();
+        StartupTrace.end(StartupTrace.PROVIDER_CREATE, traceBegin);
         return true;
     }
 
@@ -83,14 +321,35 @@ public class BookProvider extends ContentProvider {
                         String selection,
                         String[] selectionArgs,
                         String sortOrder) {
+        if (sUriMatcher.match(uri) == SEARCH_SUGGEST) {
+            // Suggestions come from the in-memory title index, no database work involved.
+            return querySuggestions(uri);
+        }
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin("query", uri);
+        try {
+            return performQuery(uri, projection, selection, selectionArgs, sortOrder);
+        } finally {
+            operation.end();
+        }
+    }
+
+    private Cursor performQuery(Uri uri,
+                                String[] projection,
+                                String selection,
+                                String[] selectionArgs,
+                                String sortOrder) {
 
         Log.v(LOG_TAG, "Query method starts.");
+        long traceBegin = StartupTrace.begin();
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
         // This cursor will hold the result of the query
         Cursor cursor;
 
+        // The URI whose changes invalidate the cursor
+        Uri notificationUri = uri;
+
         // Figure out if the URI matcher can match the URI to a specific code
         int match = sUriMatcher.match(uri);
         Log.v(LOG_TAG, "matching " + uri + " to " + match);
@@ -100,13 +359,25 @@ public class BookProvider extends ContentProvider {
                 // projection, selection, selection arguments, and sort order. The cursor
                 // could contain multiple rows of the books table.
                 // TODO: Perform database query on books table
+                // With a limit, an indexed sort order like the stock value reads only the
+                // first entries of the index.
+                String limit = UriParameters.getLimit(uri);
+                if (uri.getBooleanQueryParameter(
+                        BookContract.QUERY_PARAMETER_INCLUDE_ARCHIVED, false)) {
+                    // Asked for explicitly, so a scan of the archive is expected.
+                    cursor = database.query(BookArchive.ALL_BOOKS, projection, selection,
+                            selectionArgs, null, null, sortOrder, limit);
+                    break;
+                }
+                checkQueryPlan(database, BookEntry.TABLE_NAME, projection, selection, sortOrder);
                 cursor = database.query(BookEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
                         null,
                         null,
-                        sortOrder);
+                        sortOrder,
+                        limit);
                 break;
             case BOOK_ID:
                 // For the BOOK_ID code, extract out the ID from the URI.
@@ -122,6 +393,7 @@ public class BookProvider extends ContentProvider {
 
                 // This will perform a query on the books table where the _id equals 3 to return a
                 // Cursor containing that row of the table.
+                checkQueryPlan(database, BookEntry.TABLE_NAME, projection, selection, sortOrder);
                 cursor = database.query(BookEntry.TABLE_NAME,
                         projection,
                         selection,
@@ -129,6 +401,115 @@ public class BookProvider extends ContentProvider {
                         null,
                         null,
                         sortOrder);
+                if (cursor.getCount() == 0) {
+                    // Not a hot book, it may be archived. Only a miss pays for the second look.
+                    cursor.close();
+                    cursor = database.query(ArchivedBookEntry.TABLE_NAME, projection, selection,
+                            selectionArgs, null, null, sortOrder);
+                }
+                break;
+            case LOCATIONS:
+                cursor = database.query(LocationEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                notificationUri = LocationEntry.CONTENT_URI;
+                break;
+            case LOCATION_ID:
+                cursor = database.query(LocationEntry.TABLE_NAME, projection,
+                        LocationEntry._ID + "=?",
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) },
+                        null, null, sortOrder);
+                notificationUri = LocationEntry.CONTENT_URI;
+                break;
+            case LOCATION_BOOKS:
+                // A range of the (location, book) key joined to the books by their row ID.
+                // The quantities change with the books.
+                cursor = LocationStock.queryCatalog(database, parseLocationId(uri), projection,
+                        selection, selectionArgs, sortOrder);
+                notificationUri = BookEntry.CONTENT_URI;
+                break;
+            case LOCATION_BOOK_ID:
+                cursor = LocationStock.queryCatalog(database, parseLocationId(uri), projection,
+                        BookEntry.TABLE_NAME + "." + BookEntry._ID + "=?",
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) }, sortOrder);
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI,
+                        ContentUris.parseId(uri));
+                break;
+            case BOOK_LOCATIONS:
+                cursor = LocationStock.queryBookLocations(database, parseBookId(uri));
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, parseBookId(uri));
+                break;
+            case CATALOG_SECTIONS:
+                // Books per leading letter, cached for the whole catalog until it changes.
+                cursor = mSectionCounter.query(database, selection, selectionArgs);
+                notificationUri = BookEntry.CONTENT_URI;
+                break;
+            case SUPPLIER_REPORT:
+                // One row per supplier, summed up by SQLite in a single grouped query.
+                // The report changes whenever any book changes.
+                cursor = SupplierReport.query(database, uri, projection, selection,
+                        selectionArgs, sortOrder);
+                notificationUri = BookEntry.CONTENT_URI;
+                break;
+            case BOOK_FORECAST:
+                // Computed from the book's running demand estimate, so it changes with the book.
+                cursor = queryForecast(database, uri, parseBookId(uri));
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, parseBookId(uri));
+                break;
+            case BOOK_STOCK:
+                // The nearest snapshot plus the movements after it, never a full replay.
+                cursor = queryStock(database, uri, parseBookId(uri));
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, parseBookId(uri));
+                break;
+            case BOOK_PRICES:
+                // One range of the history or of a rollup, whichever is coarsest for the
+                // resolution.
+                cursor = queryPrices(database, uri, parseBookId(uri));
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, parseBookId(uri));
+                break;
+            case TAGS:
+                cursor = database.query(TagEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null,
+                        sortOrder == null ? TagEntry.COLUMN_TAG_NAME : sortOrder);
+                notificationUri = TagEntry.CONTENT_URI;
+                break;
+            case TAG_ID:
+                cursor = database.query(TagEntry.TABLE_NAME, projection,
+                        TagEntry._ID + "=?",
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) },
+                        null, null, sortOrder);
+                notificationUri = TagEntry.CONTENT_URI;
+                break;
+            case BOOK_TAGS:
+                cursor = database.rawQuery(BOOK_TAGS_QUERY,
+                        new String[] { String.valueOf(parseBookId(uri)) });
+                notificationUri = BookEntry.buildTagsUri(parseBookId(uri));
+                break;
+            case BOOK_FILTER:
+                // The tags pick the books from the in-memory index, the database only reads
+                // and sorts the rows of the picked ones. Tag changes are below the books URI.
+                cursor = mTagFilter.query(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
+                notificationUri = BookEntry.CONTENT_URI;
+                break;
+            case BOOK_MOVEMENTS:
+                // The ledger of one book, oldest movement first unless asked otherwise.
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        MovementEntry.COLUMN_MOVEMENT_BOOK_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { String.valueOf(parseBookId(uri)) });
+                if (sortOrder == null) {
+                    sortOrder = MovementEntry._ID;
+                }
+                checkQueryPlan(database, MovementEntry.TABLE_NAME, projection, selection,
+                        sortOrder);
+                cursor = database.query(MovementEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+                notificationUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, parseBookId(uri));
                 break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
@@ -137,8 +518,112 @@ public class BookProvider extends ContentProvider {
         // Set notification URI on the Cursor.
         // so we know what content URI the Cursor was created for.
         // If the data at this URI changes, then we know we need to update the Cursor.
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
+
+        StartupTrace.end(StartupTrace.FIRST_QUERY, traceBegin);
+        return cursor;
+    }
+
+    /**
+     * In debug builds, look at the plan of a query that callers shaped with their own
+     * selection and sort order. See {@link QueryPlanChecker}.
+     */
+    private static void checkQueryPlan(SQLiteDatabase database,
+                                       String table,
+                                       String[] projection,
+                                       String selection,
+                                       String sortOrder) {
+        if (QueryPlanChecker.isEnabled()) {
+            QueryPlanChecker.check(database, SQLiteQueryBuilder.buildQueryString(false, table,
+                    projection, selection, null, null, sortOrder, null));
+        }
+    }
+
+    /**
+     * Return the quantity of a single book at the time given by the URI, now by default.
+     */
+    private Cursor queryStock(SQLiteDatabase database, Uri uri, long id) {
+        long at = UriParameters.getLong(uri, StockEntry.QUERY_PARAMETER_AT,
+                System.currentTimeMillis());
+        MatrixCursor stock = new MatrixCursor(STOCK_COLUMNS, 1);
+        stock.addRow(new Object[] { id, StockLedger.quantityAt(database, id, at), at });
+        return stock;
+    }
+
+    /**
+     * Return the price chart of a single book for the range and resolution given by the URI.
+     */
+    private Cursor queryPrices(SQLiteDatabase database, Uri uri, long id) {
+        long to = UriParameters.getLong(uri, PriceEntry.QUERY_PARAMETER_TO,
+                System.currentTimeMillis());
+        long from = UriParameters.getLong(uri, PriceEntry.QUERY_PARAMETER_FROM, 0);
+        long resolution = UriParameters.getLong(uri, PriceEntry.QUERY_PARAMETER_RESOLUTION,
+                PriceResolution.defaultResolution(from, to));
+        if (QueryPlanChecker.isEnabled()) {
+            QueryPlanChecker.check(database, PriceHistory.getChartQueryString(
+                    PriceResolution.pickLevel(resolution)));
+        }
+        return PriceHistory.queryChart(database, id, from, to, resolution);
+    }
+
+    /**
+     * Return the demand forecast of a single book. The daily demand is the book's running
+     * estimate decayed to now, the rest follows from the quantity on hand.
+     */
+    private Cursor queryForecast(SQLiteDatabase database, Uri uri, long id) {
+        int horizonDays = UriParameters.getInt(uri, ForecastEntry.QUERY_PARAMETER_HORIZON_DAYS,
+                ForecastEntry.DEFAULT_HORIZON_DAYS);
+        Cursor cursor = database.rawQuery("SELECT b." + BookEntry.COLUMN_BOOK_QUANTITY
+                        + ", d." + DemandEntry.COLUMN_DEMAND_DECAYED_UNITS
+                        + ", d." + DemandEntry.COLUMN_DEMAND_LAST_SALE
+                        + " FROM " + BookEntry.TABLE_NAME + " b LEFT JOIN "
+                        + DemandEntry.TABLE_NAME + " d ON d." + DemandEntry.COLUMN_DEMAND_BOOK_ID
+                        + " = b." + BookEntry._ID
+                        + " WHERE b." + BookEntry._ID + " = ?",
+                new String[] { String.valueOf(id) });
+        MatrixCursor forecast = new MatrixCursor(FORECAST_COLUMNS, 1);
+        try {
+            if (cursor.moveToFirst()) {
+                int quantity = cursor.getInt(0);
+                double dailyDemand = cursor.isNull(1) ? 0 : DemandModel.dailyDemand(
+                        cursor.getDouble(1), cursor.getLong(2), System.currentTimeMillis());
+                double daysRemaining = DemandModel.daysRemaining(quantity, dailyDemand);
+                forecast.addRow(new Object[] {
+                        id,
+                        dailyDemand,
+                        Double.isInfinite(daysRemaining) ? null : daysRemaining,
+                        DemandModel.suggestedReorder(quantity, dailyDemand, horizonDays)
+                });
+            }
+        } finally {
+            cursor.close();
+        }
+        return forecast;
+    }
 
+    /**
+     * Return the books whose title has a word starting with the text typed in the search box.
+     */
+    private Cursor querySuggestions(Uri uri) {
+        String prefix = uri.getPathSegments().size() > 1 ? uri.getLastPathSegment() : "";
+        int limit;
+        try {
+            limit = Math.min(UriParameters.getInt(uri, SearchManager.SUGGEST_PARAMETER_LIMIT,
+                    DEFAULT_SUGGESTION_LIMIT), MAX_SUGGESTION_LIMIT);
+        } catch (IllegalArgumentException e) {
+            // The search box shouldn't break over a bad limit, it gets the default instead.
+            Log.w(LOG_TAG, e.getMessage());
+            limit = DEFAULT_SUGGESTION_LIMIT;
+        }
+
+        long[] ids = new long[limit];
+        String[] titles = new String[limit];
+        int count = mTitleSuggestions.getIndex().suggest(prefix, limit, ids, titles);
+
+        MatrixCursor cursor = new MatrixCursor(SUGGESTION_COLUMNS, count);
+        for (int i = 0; i < count; i++) {
+            cursor.addRow(new Object[] { ids[i], titles[i], ids[i] });
+        }
         return cursor;
     }
 
@@ -147,38 +632,34 @@ public class BookProvider extends ContentProvider {
      */
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
-        final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case BOOKS:
-                return insertBook(uri, contentValues);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin("insert", uri);
+        try {
+            final int match = sUriMatcher.match(uri);
+            switch (match) {
+                case BOOKS:
+                    return insertBook(uri, contentValues);
+                case LOCATIONS:
+                    return insertLocation(uri, contentValues);
+                case TAGS:
+                    return insertTag(uri, contentValues);
+                case BOOK_TAGS:
+                    return insertBookTag(uri, contentValues);
+                default:
+                    throw new IllegalArgumentException("Insertion is not supported for " + uri);
+            }
+        } finally {
+            operation.end();
         }
     }
 
     /**
      * Insert a book into the database with the given content values. Return the new content URI
-     * for that specific row in the database.
+     * for that specific row in the database. With {@link BookContract#QUERY_PARAMETER_UPSERT},
+     * a book with the same dedupe key updates the existing book instead.
      */
     private Uri insertBook(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(BookEntry.COLUMN_BOOK_PRODUCT_NAME);
-        if (name == null) {
-            throw new IllegalArgumentException("Book requires a name");
-        }
-        // Check that the gender is valid
-        Integer gender = values.getAsInteger(BookEntry.COLUMN_BOOK_PRICE);
-        /*
-        if (gender == null || !BookEntry.isValidGender(gender)) {
-            throw new IllegalArgumentException("Book requires valid gender");
-        }
-        */
-        // If the weight is provided, check that it's greater than or equal to 0 kg
-        Integer quantity = values.getAsInteger(BookEntry.COLUMN_BOOK_QUANTITY);
-        if (quantity != null && quantity < 0) {
-            throw new IllegalArgumentException("Book requires valid quantity");
-        }
-        // No need to check the breed, any value is valid (including null).
+        checkNewBookValues(values);
+        boolean upsert = uri.getBooleanQueryParameter(BookContract.QUERY_PARAMETER_UPSERT, false);
 
         // We already know were in the BOOKS case from the UriMatcher result,
         // so we need to continue walking down the diagram and get a database object,
@@ -193,8 +674,24 @@ public class BookProvider extends ContentProvider {
         // passing in the book table name and the ContentValues object.
         // The return value is the ID of the new row that was just created,
         // in the form of a long data type (which can store numbers larger than the int data type).
-        // Insert the new book with the given values
-        long id = database.insert(BookEntry.TABLE_NAME, null, values);
+        // Insert the new book with the given values. Its initial quantity opens the book's
+        // stock ledger, in the same transaction.
+        long id;
+        long row = ROW_INSERTED;
+        database.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            if (upsert) {
+                long[] outcome = upsertBookRow(database, uri, values, now);
+                id = outcome[0];
+                row = outcome[1];
+            } else {
+                id = insertBookRow(database, values, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
         // Based on the ID, we can determine if the database operation went smoothly or not.
         // If the ID is equal to -1, then we know the insertion failed. Otherwise,
@@ -208,8 +705,24 @@ public class BookProvider extends ContentProvider {
             return null;
         }
 
+        // An updated book is in the tag index already and adding it again changes nothing. One
+        // brought back from the archive by an upsert brought its tags along.
+        if (row == ROW_RESTORED) {
+            mTagFilter.onBookRestored(id);
+        } else {
+            mTagFilter.onBookAdded(id);
+        }
         // Notify all listeners that the data has changed for the book content URI.
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyBooksChanged(uri);
+
+        if (upsert) {
+            return ContentUris.withAppendedId(BookEntry.CONTENT_URI, id).buildUpon()
+                    .appendQueryParameter(BookContract.QUERY_PARAMETER_UPSERT_OUTCOME,
+                            row == ROW_INSERTED
+                                    ? BookContract.UPSERT_OUTCOME_INSERTED
+                                    : BookContract.UPSERT_OUTCOME_UPDATED)
+                    .build();
+        }
 
         // Once we know the ID of the new row in the table,
         // return the new URI with the ID appended to the end of it.
@@ -217,6 +730,343 @@ public class BookProvider extends ContentProvider {
         return ContentUris.withAppendedId(uri, id);
     }
 
+    /**
+     * Check the values of a new book.
+     */
+    private static void checkNewBookValues(ContentValues values) {
+        // Check that the name is not null
+        String name = values.getAsString(BookEntry.COLUMN_BOOK_PRODUCT_NAME);
+        if (name == null) {
+            throw new IllegalArgumentException("Book requires a name");
+        }
+        // Check that the gender is valid
+        Integer gender = values.getAsInteger(BookEntry.COLUMN_BOOK_PRICE);
+        /*
+        if (gender == null || !BookEntry.isValidGender(gender)) {
+            throw new IllegalArgumentException("Book requires valid gender");
+        }
+        */
+        // If the weight is provided, check that it's greater than or equal to 0 kg
+        Integer quantity = values.getAsInteger(BookEntry.COLUMN_BOOK_QUANTITY);
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Book requires valid quantity");
+        }
+        // No need to check the breed, any value is valid (including null).
+
+        checkDedupeKeyValues(values);
+        checkMaintainedValues(values);
+        checkReorderValues(values);
+    }
+
+    /**
+     * Check that an insert or update doesn't write the dedupe key, which the provider derives
+     * from the name and supplier.
+     */
+    private static void checkDedupeKeyValues(ContentValues values) {
+        if (values.containsKey(BookEntry.COLUMN_BOOK_DEDUPE_KEY)) {
+            throw new IllegalArgumentException("Book dedupe key can't be written");
+        }
+    }
+
+    /**
+     * Check that an insert or update doesn't write the columns the database keeps current by
+     * itself.
+     */
+    private static void checkMaintainedValues(ContentValues values) {
+        if (values.containsKey(BookEntry.COLUMN_BOOK_LAST_MODIFIED)) {
+            throw new IllegalArgumentException("Book last modified time can't be written");
+        }
+        if (values.containsKey(BookEntry.COLUMN_BOOK_STOCK_VALUE)) {
+            throw new IllegalArgumentException("Book stock value can't be written");
+        }
+    }
+
+    /**
+     * Insert one book row, open its stock ledger with its initial quantity and start its price
+     * history. Must be called inside a transaction. Like a book in the books table, an
+     * archived book with the same dedupe key makes the insert fail; the database checks both
+     * within the insert.
+     *
+     * @return the ID of the new row, or -1 if it couldn't be inserted
+     */
+    private static long insertBookRow(SQLiteDatabase database, ContentValues values, long now) {
+        long id = database.insert(BookEntry.TABLE_NAME, null, DedupeKey.withKey(values));
+        if (id != -1) {
+            startBookHistory(database, id, values, now);
+        }
+        return id;
+    }
+
+    /**
+     * Insert one book row, or update the book with the same dedupe key if there is one. Must
+     * be called inside a transaction.
+     *
+     * The insert itself finds out whether the book exists: it is ignored when the key belongs
+     * to a book, hot or archived, and only then is the existing book looked up. SQLite before
+     * 3.24 has no upsert statement that could update it in the same step. An archived book with
+     * the key is brought back first, and then updated like any other.
+     *
+     * The quantity of an upserted row is a count of the books on hand, not a sale, so unless
+     * the caller gives a movement kind the change is recorded as an adjustment.
+     *
+     * @param uri Insert URI; the query parameters of an update apply to the existing book
+     * @return {book ID, {@link #ROW_INSERTED}, {@link #ROW_UPDATED} or {@link #ROW_RESTORED}},
+     *         or {-1, {@link #ROW_UPDATED}} if it couldn't be written
+     */
+    private long[] upsertBookRow(SQLiteDatabase database, Uri uri, ContentValues values,
+                                 long now) {
+        ContentValues keyed = DedupeKey.withKey(values);
+        long id = database.insertWithOnConflict(BookEntry.TABLE_NAME, null, keyed,
+                SQLiteDatabase.CONFLICT_IGNORE);
+        if (id != -1) {
+            startBookHistory(database, id, values, now);
+            return new long[] { id, ROW_INSERTED };
+        }
+
+        String key = keyed.getAsString(BookEntry.COLUMN_BOOK_DEDUPE_KEY);
+        int row = ROW_UPDATED;
+        id = DedupeKey.findBook(database, key);
+        if (id == -1) {
+            id = BookArchive.findBook(database, key);
+            if (id != -1) {
+                restoreBookRow(database, id, now);
+                row = ROW_RESTORED;
+            }
+        }
+        if (id != -1) {
+            Uri.Builder bookUri = ContentUris.withAppendedId(BookEntry.CONTENT_URI, id)
+                    .buildUpon()
+                    .encodedQuery(uri.getEncodedQuery());
+            if (uri.getQueryParameter(BookContract.QUERY_PARAMETER_MOVEMENT_KIND) == null) {
+                bookUri.appendQueryParameter(BookContract.QUERY_PARAMETER_MOVEMENT_KIND,
+                        String.valueOf(MovementEntry.KIND_ADJUSTMENT));
+            }
+            updateBookRows(database, bookUri.build(), values, BookEntry._ID + "=?",
+                    new String[] { String.valueOf(id) });
+        }
+        return new long[] { id, row };
+    }
+
+    /**
+     * Move an archived book back to the books table, with its history. A book archived before
+     * the archive kept the history starts it again like a new book. Must be called inside a
+     * transaction.
+     *
+     * @return true if the book was archived
+     */
+    private static boolean restoreBookRow(SQLiteDatabase database, long id, long now) {
+        ContentValues values = BookArchive.restore(database, id);
+        if (values == null) {
+            return false;
+        }
+        if (!BookArchive.hasHistory(database, id)) {
+            startBookHistory(database, id, values, now);
+        }
+        return true;
+    }
+
+    /**
+     * Open the stock ledger of a new book with its initial quantity and start its price
+     * history.
+     */
+    private static void startBookHistory(SQLiteDatabase database, long id, ContentValues values,
+                                         long now) {
+        Integer quantity = values.getAsInteger(BookEntry.COLUMN_BOOK_QUANTITY);
+        StockLedger.recordNewBook(database, id, quantity == null ? 0 : quantity, now);
+        LocationStock.recordNewBook(database, id, quantity == null ? 0 : quantity);
+        Integer price = values.getAsInteger(BookEntry.COLUMN_BOOK_PRICE);
+        PriceHistory.recordNewBook(database, id, price == null ? 0 : price, now);
+    }
+
+    /**
+     * Insert a location. Return the new content URI of the location.
+     */
+    private Uri insertLocation(Uri uri, ContentValues values) {
+        checkLocationValues(values);
+        String name = values.getAsString(LocationEntry.COLUMN_LOCATION_NAME);
+        if (name == null) {
+            throw new IllegalArgumentException("Location requires a name");
+        }
+        long id = mDbHelper.getWritableDatabase().insert(LocationEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        mChangeNotifier.notifyChange(LocationEntry.CONTENT_URI);
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Insert a tag. Return the new content URI of the tag, or null if a tag of that name
+     * already exists.
+     */
+    private Uri insertTag(Uri uri, ContentValues values) {
+        for (String column : values.keySet()) {
+            if (!column.equals(TagEntry.COLUMN_TAG_NAME)) {
+                throw new IllegalArgumentException("Tag column " + column + " can't be written");
+            }
+        }
+        String name = values.getAsString(TagEntry.COLUMN_TAG_NAME);
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Tag requires a name");
+        }
+        long id = mDbHelper.getWritableDatabase().insert(TagEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        mTagFilter.onTagAdded(id, name);
+        mChangeNotifier.notifyChange(TagEntry.CONTENT_URI);
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Give a book the tag in {@link BookTagEntry#COLUMN_BOOK_TAG_TAG_ID}. Giving it a tag it
+     * already has changes nothing. Return the content URI of the tag of the book.
+     */
+    private Uri insertBookTag(Uri uri, ContentValues values) {
+        Long tagId = values.getAsLong(BookTagEntry.COLUMN_BOOK_TAG_TAG_ID);
+        if (values.size() != 1 || tagId == null) {
+            throw new IllegalArgumentException("Book tag requires a tag ID");
+        }
+        long bookId = parseBookId(uri);
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            if (DatabaseUtils.queryNumEntries(database, BookEntry.TABLE_NAME,
+                    BookEntry._ID + "=?", new String[] { String.valueOf(bookId) }) == 0) {
+                throw new IllegalArgumentException("Unknown book " + bookId);
+            }
+            if (DatabaseUtils.queryNumEntries(database, TagEntry.TABLE_NAME,
+                    TagEntry._ID + "=?", new String[] { String.valueOf(tagId) }) == 0) {
+                throw new IllegalArgumentException("Unknown tag " + tagId);
+            }
+            ContentValues bookTag = new ContentValues();
+            bookTag.put(BookTagEntry.COLUMN_BOOK_TAG_TAG_ID, tagId);
+            bookTag.put(BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID, bookId);
+            database.insertWithOnConflict(BookTagEntry.TABLE_NAME, null, bookTag,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        mTagFilter.onBookTagged(tagId, bookId);
+        mChangeNotifier.notifyChange(uri);
+        return BookEntry.buildTagUri(bookId, tagId);
+    }
+
+    /**
+     * Check the values of a location insert or update. Only the name can be written.
+     */
+    private static void checkLocationValues(ContentValues values) {
+        for (String column : values.keySet()) {
+            if (!column.equals(LocationEntry.COLUMN_LOCATION_NAME)) {
+                throw new IllegalArgumentException("Location column " + column
+                        + " can't be written");
+            }
+        }
+        if (values.containsKey(LocationEntry.COLUMN_LOCATION_NAME)) {
+            String name = values.getAsString(LocationEntry.COLUMN_LOCATION_NAME);
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Location requires a name");
+            }
+        }
+    }
+
+    /**
+     * Insert many books in one transaction, with one change notification for all of them.
+     * A bulk load of thousands of books then costs one journal commit instead of one each.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin("bulkInsert", uri);
+        try {
+            final int match = sUriMatcher.match(uri);
+            switch (match) {
+                case BOOKS:
+                    return bulkInsertBooks(uri, values);
+                default:
+                    throw new IllegalArgumentException("Insertion is not supported for " + uri);
+            }
+        } finally {
+            operation.end();
+        }
+    }
+
+    /**
+     * With {@link BookContract#QUERY_PARAMETER_UPSERT}, books that already exist are updated
+     * and count as written too.
+     */
+    private int bulkInsertBooks(Uri uri, ContentValues[] values) {
+        // Check everything first, so a bad row doesn't leave half of the batch behind.
+        for (ContentValues bookValues : values) {
+            checkNewBookValues(bookValues);
+        }
+
+        boolean upsert = uri.getBooleanQueryParameter(BookContract.QUERY_PARAMETER_UPSERT, false);
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        int inserted = 0;
+        List<Long> writtenIds = new ArrayList<>();
+        List<Long> restoredIds = new ArrayList<>();
+        database.beginTransaction();
+        try {
+            for (ContentValues bookValues : values) {
+                long id;
+                if (upsert) {
+                    long[] outcome = upsertBookRow(database, uri, bookValues, now);
+                    id = outcome[0];
+                    if (outcome[1] == ROW_RESTORED) {
+                        restoredIds.add(id);
+                    }
+                } else {
+                    id = insertBookRow(database, bookValues, now);
+                }
+                if (id != -1) {
+                    writtenIds.add(id);
+                    inserted++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // Updated books are in the tag index already, see insertBook().
+        for (long id : writtenIds) {
+            mTagFilter.onBookAdded(id);
+        }
+        for (long id : restoredIds) {
+            mTagFilter.onBookRestored(id);
+        }
+
+        if (inserted < values.length) {
+            Log.e(LOG_TAG, "Failed to insert " + (values.length - inserted) + " rows for " + uri);
+        }
+        if (inserted > 0) {
+            notifyBooksChanged(uri);
+        }
+        return inserted;
+    }
+
+    /**
+     * Check the reorder columns of an insert or update. The low stock time is maintained by
+     * the database, and the threshold can't be negative.
+     */
+    private static void checkReorderValues(ContentValues values) {
+        if (values.containsKey(BookEntry.COLUMN_BOOK_LOW_SINCE)) {
+            throw new IllegalArgumentException("Book low stock time can't be written");
+        }
+        if (values.containsKey(BookEntry.COLUMN_BOOK_REORDER_THRESHOLD)) {
+            Integer threshold = values.getAsInteger(BookEntry.COLUMN_BOOK_REORDER_THRESHOLD);
+            if (threshold == null || threshold < 0) {
+                throw new IllegalArgumentException("Book requires valid reorder threshold");
+            }
+        }
+    }
+
     /**
      * Updates the data at the given selection and selection arguments, with the new ContentValues.
      */
@@ -225,6 +1075,18 @@ public class BookProvider extends ContentProvider {
                       ContentValues contentValues,
                       String selection,
                       String[] selectionArgs) {
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin("update", uri);
+        try {
+            return performUpdate(uri, contentValues, selection, selectionArgs);
+        } finally {
+            operation.end();
+        }
+    }
+
+    private int performUpdate(Uri uri,
+                              ContentValues contentValues,
+                              String selection,
+                              String[] selectionArgs) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case BOOKS:
@@ -245,6 +1107,10 @@ public class BookProvider extends ContentProvider {
                 selection = BookEntry._ID + "=?";
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
                 return updateBook(uri, contentValues, selection, selectionArgs);
+            case LOCATION_ID:
+                return updateLocation(uri, contentValues);
+            case LOCATION_BOOK_ID:
+                return updateLocationStock(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -292,6 +1158,15 @@ public class BookProvider extends ContentProvider {
         }
         // No need to check for the breed, nay value is valid (including null)
 
+        // The version is owned by the provider, callers pass it as the expected version.
+        if (values.containsKey(BookEntry.COLUMN_BOOK_VERSION)) {
+            throw new IllegalArgumentException("Book version can't be written");
+        }
+
+        checkDedupeKeyValues(values);
+        checkMaintainedValues(values);
+        checkReorderValues(values);
+
         // If there are no values to update, then don't try to update the database
         if (values.size() == 0) {
             return 0;
@@ -301,31 +1176,382 @@ public class BookProvider extends ContentProvider {
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(BookEntry.TABLE_NAME, values, selection, selectionArgs);
+        // Perform the update on the database and get the number of rows affected. Editing an
+        // archived book brings it back, in the same transaction. Only an update of a single
+        // book that found nothing looks in the archive, so edits of hot books don't pay for it.
+        boolean restored = false;
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            rowsUpdated = updateBookRows(database, uri, values, selection, selectionArgs);
+            if (rowsUpdated == 0 && sUriMatcher.match(uri) == BOOK_ID) {
+                restored = restoreBookRow(database, ContentUris.parseId(uri),
+                        System.currentTimeMillis());
+                if (restored) {
+                    rowsUpdated = updateBookRows(database, uri, values, selection,
+                            selectionArgs);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
+        if (restored) {
+            mTagFilter.onBookRestored(ContentUris.parseId(uri));
+        }
         // if 1 or more rows were updated, then notify all listeners that the data at the
         // given URI has changed
-        if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        if (rowsUpdated != 0 || restored) {
+            notifyBooksChanged(uri);
         }
 
         // return the nubmer rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Update the selected books with checked values, in a transaction of its own or as part of
+     * the caller's. Every quantity change is recorded in the stock ledger, and sales also feed
+     * the demand estimates, in the same transaction, so they never disagree with the books. A
+     * new name or supplier also gets the books new dedupe keys.
+     *
+     * @return the number of rows updated
+     */
+    private int updateBookRows(SQLiteDatabase database,
+                               Uri uri,
+                               ContentValues values,
+                               String selection,
+                               String[] selectionArgs) {
+        String expectedVersion = uri.getQueryParameter(BookContract.QUERY_PARAMETER_EXPECTED_VERSION);
+        String movementKind = uri.getQueryParameter(BookContract.QUERY_PARAMETER_MOVEMENT_KIND);
+        // Without a location the change is to the total, see LocationStock#applyTotalDelta.
+        long locationId = UriParameters.getLong(uri, BookContract.QUERY_PARAMETER_LOCATION, -1);
+        Integer newQuantity = values.getAsInteger(BookEntry.COLUMN_BOOK_QUANTITY);
+        Integer newPrice = values.getAsInteger(BookEntry.COLUMN_BOOK_PRICE);
+        boolean rekey = values.containsKey(BookEntry.COLUMN_BOOK_PRODUCT_NAME)
+                || values.containsKey(BookEntry.COLUMN_BOOK_SUPPLIER_NAME);
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            long[] rekeyedIds = rekey ? queryBookIds(database, selection, selectionArgs) : null;
+            long[][] changes = newQuantity == null ? null : queryValueChanges(database,
+                    BookEntry.COLUMN_BOOK_QUANTITY, selection, selectionArgs, expectedVersion,
+                    newQuantity);
+            long[][] priceChanges = newPrice == null ? null : queryValueChanges(database,
+                    BookEntry.COLUMN_BOOK_PRICE, selection, selectionArgs, expectedVersion,
+                    newPrice);
+
+            rowsUpdated = updateVersioned(database, values, selection, selectionArgs,
+                    expectedVersion);
+
+            // An update of a single book that matched nothing either lost a race with another
+            // writer or targeted a missing book. Only this rare path pays for telling them apart.
+            if (rowsUpdated == 0 && expectedVersion != null
+                    && sUriMatcher.match(uri) == BOOK_ID
+                    && DatabaseUtils.queryNumEntries(database, BookEntry.TABLE_NAME,
+                            selection, selectionArgs) > 0) {
+                throw new VersionConflictException("Book " + ContentUris.parseId(uri)
+                        + " is no longer at version " + expectedVersion);
+            }
+
+            long now = System.currentTimeMillis();
+            if (changes != null && rowsUpdated != 0) {
+                for (long[] change : changes) {
+                    long bookId = change[0];
+                    int delta = newQuantity - (int) change[1];
+                    int kind = StockLedger.resolveKind(movementKind, delta);
+                    if (locationId == -1) {
+                        LocationStock.applyTotalDelta(database, bookId, delta);
+                    } else {
+                        LocationStock.applyDelta(database, locationId, bookId, delta);
+                    }
+                    StockLedger.recordMovement(database, bookId, kind, delta, newQuantity, now);
+                    if (kind == MovementEntry.KIND_SALE) {
+                        recordSale(database, bookId, -delta, now);
+                    }
+                }
+            }
+            if (priceChanges != null && rowsUpdated != 0) {
+                for (long[] change : priceChanges) {
+                    PriceHistory.recordChange(database, change[0], (int) change[1], newPrice,
+                            now);
+                }
+            }
+            if (rekeyedIds != null && rowsUpdated != 0) {
+                DedupeKey.refresh(database, rekeyedIds);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Return the IDs of the books matching the selection.
+     */
+    private static long[] queryBookIds(SQLiteDatabase database,
+                                       String selection,
+                                       String[] selectionArgs) {
+        Cursor cursor = database.query(BookEntry.TABLE_NAME,
+                new String[] { BookEntry._ID },
+                selection,
+                selectionArgs,
+                null,
+                null,
+                null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Rename a location.
+     */
+    private int updateLocation(Uri uri, ContentValues values) {
+        checkLocationValues(values);
+        if (values.size() == 0) {
+            return 0;
+        }
+        int rowsUpdated = mDbHelper.getWritableDatabase().update(LocationEntry.TABLE_NAME,
+                values,
+                LocationEntry._ID + "=?",
+                new String[] { String.valueOf(ContentUris.parseId(uri)) });
+        if (rowsUpdated != 0) {
+            mChangeNotifier.notifyChange(LocationEntry.CONTENT_URI);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Set the quantity of a book at a location. The book's total changes by the same amount
+     * and the difference is recorded in the stock ledger, all in one transaction.
+     *
+     * @return 1 if the quantity changed, 0 if it was already at that value or the book
+     *         doesn't exist. An archived book is brought back, unless the quantity is 0.
+     */
+    private int updateLocationStock(Uri uri, ContentValues values) {
+        Integer quantity = values.getAsInteger(BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY);
+        if (values.size() != 1 || quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Book stock requires a valid quantity");
+        }
+        long locationId = parseLocationId(uri);
+        long bookId = ContentUris.parseId(uri);
+        String movementKind = uri.getQueryParameter(BookContract.QUERY_PARAMETER_MOVEMENT_KIND);
+        String[] bookIdArgs = new String[] { String.valueOf(bookId) };
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        boolean restored = false;
+        database.beginTransaction();
+        try {
+            LocationStock.checkLocation(database, locationId);
+            // Archived books are out of stock, so a quantity of 0 changes nothing for them.
+            int delta = quantity - LocationStock.quantityAt(database, locationId, bookId);
+            // Nothing was written when these return, but the transaction still has to end
+            // successfully: inside applyBatch, a failed nested transaction rolls back the
+            // whole batch.
+            if (delta == 0) {
+                database.setTransactionSuccessful();
+                return 0;
+            }
+            if (DatabaseUtils.queryNumEntries(database, BookEntry.TABLE_NAME,
+                    BookEntry._ID + "=?", bookIdArgs) == 0) {
+                restored = restoreBookRow(database, bookId, System.currentTimeMillis());
+                if (!restored) {
+                    database.setTransactionSuccessful();
+                    return 0;
+                }
+            }
+            int kind = StockLedger.resolveKind(movementKind, delta);
+            LocationStock.applyDelta(database, locationId, bookId, delta);
+            database.execSQL("UPDATE " + BookEntry.TABLE_NAME
+                    + " SET " + BookEntry.COLUMN_BOOK_QUANTITY + " = "
+                    + BookEntry.COLUMN_BOOK_QUANTITY + " + ?, "
+                    + BookEntry.COLUMN_BOOK_VERSION + " = " + BookEntry.COLUMN_BOOK_VERSION + " + 1"
+                    + " WHERE " + BookEntry._ID + "=?", new Object[] { delta, bookId });
+            int total = (int) DatabaseUtils.longForQuery(database,
+                    "SELECT " + BookEntry.COLUMN_BOOK_QUANTITY + " FROM " + BookEntry.TABLE_NAME
+                            + " WHERE " + BookEntry._ID + "=?", bookIdArgs);
+
+            long now = System.currentTimeMillis();
+            StockLedger.recordMovement(database, bookId, kind, delta, total, now);
+            if (kind == MovementEntry.KIND_SALE) {
+                recordSale(database, bookId, -delta, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (restored) {
+            mTagFilter.onBookRestored(bookId);
+        }
+        notifyBooksChanged(ContentUris.withAppendedId(BookEntry.CONTENT_URI, bookId));
+        return 1;
+    }
+
+    /**
+     * Return the books an update of the column to the given value changes, as {book ID, old
+     * value} pairs. Books already at that value are left out; the selection is the one of the
+     * update, including the expected version.
+     */
+    private long[][] queryValueChanges(SQLiteDatabase database,
+                                       String column,
+                                       String selection,
+                                       String[] selectionArgs,
+                                       String expectedVersion,
+                                       int newValue) {
+        if (expectedVersion != null) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    BookEntry.COLUMN_BOOK_VERSION + "=?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[] { expectedVersion });
+        }
+        Cursor cursor = database.query(BookEntry.TABLE_NAME,
+                new String[] { BookEntry._ID, column },
+                DatabaseUtils.concatenateWhere(selection, column + "!=" + newValue),
+                selectionArgs,
+                null,
+                null,
+                null);
+        try {
+            long[][] changes = new long[cursor.getCount()][];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                changes[i] = new long[] { cursor.getLong(0), cursor.getInt(1) };
+            }
+            return changes;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Append a sale to the sales history and fold it into the book's running demand estimate.
+     * Must be called inside the transaction that lowered the quantity.
+     */
+    private void recordSale(SQLiteDatabase database, long bookId, int units, long now) {
+        ContentValues sale = new ContentValues();
+        sale.put(SaleEntry.COLUMN_SALE_BOOK_ID, bookId);
+        sale.put(SaleEntry.COLUMN_SALE_UNITS, units);
+        sale.put(SaleEntry.COLUMN_SALE_TIME, now);
+        database.insertOrThrow(SaleEntry.TABLE_NAME, null, sale);
+
+        double decayedUnits = 0;
+        long lastSale = now;
+        Cursor cursor = database.query(DemandEntry.TABLE_NAME,
+                new String[] {
+                        DemandEntry.COLUMN_DEMAND_DECAYED_UNITS,
+                        DemandEntry.COLUMN_DEMAND_LAST_SALE
+                },
+                DemandEntry.COLUMN_DEMAND_BOOK_ID + "=?",
+                new String[] { String.valueOf(bookId) },
+                null,
+                null,
+                null);
+        try {
+            if (cursor.moveToFirst()) {
+                decayedUnits = cursor.getDouble(0);
+                lastSale = cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        ContentValues demand = new ContentValues();
+        demand.put(DemandEntry.COLUMN_DEMAND_BOOK_ID, bookId);
+        demand.put(DemandEntry.COLUMN_DEMAND_DECAYED_UNITS,
+                DemandModel.addSale(decayedUnits, lastSale, units, now));
+        demand.put(DemandEntry.COLUMN_DEMAND_LAST_SALE, Math.max(lastSale, now));
+        database.insertWithOnConflict(DemandEntry.TABLE_NAME, null, demand,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Update the selected books and bump their version, in a single statement. If an expected
+     * version is given, only rows still at that version are updated, so concurrent writers
+     * stay correct without locking or reading the row first.
+     *
+     * @return the number of rows updated
+     */
+    private int updateVersioned(SQLiteDatabase database,
+                                ContentValues values,
+                                String selection,
+                                String[] selectionArgs,
+                                String expectedVersion) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(BookEntry.TABLE_NAME).append(" SET ");
+        int argumentCount = values.size()
+                + (selectionArgs == null ? 0 : selectionArgs.length)
+                + (expectedVersion == null ? 0 : 1);
+        Object[] bindArgs = new Object[argumentCount];
+        int index = 0;
+        for (String column : values.keySet()) {
+            sql.append(column).append("=?,");
+            bindArgs[index++] = values.get(column);
+        }
+        sql.append(BookEntry.COLUMN_BOOK_VERSION).append('=')
+                .append(BookEntry.COLUMN_BOOK_VERSION).append("+1");
+
+        String where = selection;
+        if (expectedVersion != null) {
+            where = DatabaseUtils.concatenateWhere(where, BookEntry.COLUMN_BOOK_VERSION + "=?");
+        }
+        if (where != null && !where.isEmpty()) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (selectionArgs != null) {
+            for (String selectionArg : selectionArgs) {
+                bindArgs[index++] = selectionArg;
+            }
+        }
+        if (expectedVersion != null) {
+            bindArgs[index] = Long.parseLong(expectedVersion);
+        }
+
+        SQLiteStatement statement = database.compileStatement(sql.toString());
+        try {
+            for (int i = 0; i < bindArgs.length; i++) {
+                DatabaseUtils.bindObjectToProgram(statement, i + 1, bindArgs[i]);
+            }
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
 
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin("delete", uri);
+        try {
+            return performDelete(uri, selection, selectionArgs);
+        } finally {
+            operation.end();
+        }
+    }
+
+    private int performDelete(Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Tracek the number of rows that were deleted
         int rowsDeleted;
 
+        // Cover files of the deleted books, removed once the rows are gone
+        List<String> coverPaths;
+
+        // The deleted books, removed from the tag index once the rows are gone
+        long[] bookIds;
+
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case BOOKS:
@@ -336,7 +1562,19 @@ public class BookProvider extends ContentProvider {
                 // Get writeable database
                 // Delete all rows that match the selection and selection args
                 // return database.delete(BookEntry.TABLE_NAME, selection, selectionArgs);
-                rowsDeleted = database.delete(BookEntry.TABLE_NAME, selection, selectionArgs);
+                // The archived books matching the selection go as well, or deleting every
+                // book would leave the archived ones behind, to come back on the next edit.
+                database.beginTransaction();
+                try {
+                    coverPaths = queryCoverPaths(database, BookArchive.ALL_BOOKS, selection,
+                            selectionArgs);
+                    bookIds = queryBookIds(database, selection, selectionArgs);
+                    rowsDeleted = database.delete(BookEntry.TABLE_NAME, selection, selectionArgs)
+                            + BookArchive.delete(database, selection, selectionArgs);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
                 break;
             case BOOK_ID:
                 // Example inputs to delete() method:
@@ -347,8 +1585,34 @@ public class BookProvider extends ContentProvider {
                 selection = BookEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 // return database.delete(BookEntry.TABLE_NAME, selection, selectionArgs);
+                coverPaths = queryCoverPaths(database, BookEntry.TABLE_NAME, selection,
+                        selectionArgs);
+                bookIds = queryBookIds(database, selection, selectionArgs);
                 rowsDeleted = database.delete(BookEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted == 0) {
+                    // An archived book isn't in the tag index, only its archived rows go.
+                    coverPaths = queryCoverPaths(database, ArchivedBookEntry.TABLE_NAME,
+                            selection, selectionArgs);
+                    database.beginTransaction();
+                    try {
+                        rowsDeleted = BookArchive.delete(database, selection, selectionArgs);
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                }
                 break;
+            case MOVEMENTS:
+                // Compaction of the ledger. It changes no quantity, only how far back the
+                // ledger reaches, so the catalog snapshot stays valid.
+                return compactMovements(database, uri);
+            case LOCATION_ID:
+                // Locations hold no books, so the catalog stays valid as well.
+                return deleteLocation(database, ContentUris.parseId(uri));
+            case TAG_ID:
+                return deleteTag(database, ContentUris.parseId(uri));
+            case BOOK_TAG_ID:
+                return deleteBookTag(database, uri);
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
@@ -356,13 +1620,423 @@ public class BookProvider extends ContentProvider {
         // if 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            mTagFilter.onBooksRemoved(bookIds);
+            deleteCoverFiles(coverPaths);
+            notifyBooksChanged(uri);
         }
 
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
+    /**
+     * Delete an empty location, with the zero quantities recorded for it.
+     *
+     * @throws IllegalArgumentException for the default location, or a location that still
+     *                                  holds units, which have to be moved first
+     */
+    private int deleteLocation(SQLiteDatabase database, long locationId) {
+        if (locationId == LocationEntry.DEFAULT_LOCATION_ID) {
+            throw new IllegalArgumentException("The default location can't be deleted");
+        }
+        String[] locationIdArgs = new String[] { String.valueOf(locationId) };
+        int rowsDeleted;
+        database.beginTransaction();
+        try {
+            if (LocationStock.unitsAt(database, locationId) > 0) {
+                throw new IllegalArgumentException("Location " + locationId + " still holds books");
+            }
+            database.delete(BookStockEntry.TABLE_NAME,
+                    BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + "=?", locationIdArgs);
+            rowsDeleted = database.delete(LocationEntry.TABLE_NAME,
+                    LocationEntry._ID + "=?", locationIdArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (rowsDeleted != 0) {
+            mChangeNotifier.notifyChange(LocationEntry.CONTENT_URI);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Delete a tag, which removes it from all books.
+     */
+    private int deleteTag(SQLiteDatabase database, long tagId) {
+        int rowsDeleted = database.delete(TagEntry.TABLE_NAME, TagEntry._ID + "=?",
+                new String[] { String.valueOf(tagId) });
+        if (rowsDeleted != 0) {
+            mTagFilter.onTagRemoved(tagId);
+            mChangeNotifier.notifyChange(TagEntry.CONTENT_URI);
+            // Filters by the tag match other books now.
+            mChangeNotifier.notifyChange(BookEntry.CONTENT_URI);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Remove one tag from one book.
+     */
+    private int deleteBookTag(SQLiteDatabase database, Uri uri) {
+        long bookId = parseBookId(uri);
+        long tagId = ContentUris.parseId(uri);
+        int rowsDeleted = database.delete(BookTagEntry.TABLE_NAME,
+                BookTagEntry.COLUMN_BOOK_TAG_TAG_ID + "=? AND "
+                        + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID + "=?",
+                new String[] { String.valueOf(tagId), String.valueOf(bookId) });
+        if (rowsDeleted != 0) {
+            mTagFilter.onBookUntagged(tagId, bookId);
+            mChangeNotifier.notifyChange(BookEntry.buildTagsUri(bookId));
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Fold the stock movements before the time given by the URI into snapshots and remove
+     * them.
+     *
+     * @return the number of movements removed
+     */
+    private int compactMovements(SQLiteDatabase database, Uri uri) {
+        long before = UriParameters.getLong(uri, MovementEntry.QUERY_PARAMETER_BEFORE, -1);
+        if (before < 0) {
+            throw new IllegalArgumentException("Compaction requires a time in " + uri);
+        }
+        int movementsDeleted;
+        database.beginTransaction();
+        try {
+            movementsDeleted = StockLedger.compact(database, before);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (movementsDeleted != 0) {
+            mChangeNotifier.notifyChange(BookEntry.CONTENT_URI);
+        }
+        return movementsDeleted;
+    }
+
+    /**
+     * Apply the operations in one transaction. Their change notifications are held back until
+     * it is committed and then merged, so a batch of any size costs observers one reload.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        boolean committed = false;
+        database.beginTransaction();
+        mChangeNotifier.beginBatch();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } finally {
+            database.endTransaction();
+            if (!committed) {
+                // The operations passed their changes on to the tag index already.
+                mTagFilter.invalidate();
+            }
+            if (mChangeNotifier.endBatch()) {
+                // The operations already dropped the cached counts and asked for a snapshot,
+                // but before the batch was committed, so the new state may have been missed.
+                mSectionCounter.invalidate();
+                mSnapshotWriter.onCatalogChanged();
+            }
+        }
+    }
+
+    /**
+     * Back up or restore the database, see {@link BookContract#METHOD_BACKUP} and
+     * {@link BookContract#METHOD_RESTORE}, upsert books, see
+     * {@link BookContract#METHOD_BULK_UPSERT}, or archive cold books, see
+     * {@link BookContract#METHOD_ARCHIVE}. The provider isn't exported, so the archive path
+     * always comes from this app.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        DatabaseAccessMonitor.Operation operation = DatabaseAccessMonitor.begin(method,
+                BookEntry.CONTENT_URI);
+        try {
+            switch (method) {
+                case BookContract.METHOD_BACKUP:
+                    File archive = getArchive(method, arg);
+                    Bundle result = new Bundle();
+                    result.putString(BookContract.EXTRA_CHECKSUM,
+                            BookBackup.backup(getContext(), mDbHelper, archive));
+                    result.putLong(BookContract.EXTRA_SIZE, archive.length());
+                    return result;
+                case BookContract.METHOD_RESTORE:
+                    BookBackup.restore(getContext(), mDbHelper, getArchive(method, arg));
+                    mTagFilter.invalidate();
+                    // Everything may have changed.
+                    notifyBooksChanged(BookEntry.CONTENT_URI);
+                    mChangeNotifier.notifyChange(LocationEntry.CONTENT_URI);
+                    return null;
+                case BookContract.METHOD_BULK_UPSERT:
+                    return bulkUpsertBooks(extras);
+                case BookContract.METHOD_ARCHIVE:
+                    return archiveBooks(arg);
+                default:
+                    return super.call(method, arg, extras);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to " + method + " " + arg, e);
+            throw new IllegalStateException("Failed to " + method + " " + arg, e);
+        } finally {
+            operation.end();
+        }
+    }
+
+    private static File getArchive(String method, String arg) {
+        if (arg == null) {
+            throw new IllegalArgumentException("Method " + method + " needs a file path");
+        }
+        return new File(arg);
+    }
+
+    /**
+     * Upsert the books of {@link BookContract#EXTRA_ROWS} in one transaction, and return
+     * where each one went. Unlike {@link #bulkInsert}, a row that can't be written fails the
+     * whole call, so the results always line up with the rows.
+     */
+    private Bundle bulkUpsertBooks(Bundle extras) {
+        Parcelable[] rows = extras == null ? null
+                : extras.getParcelableArray(BookContract.EXTRA_ROWS);
+        if (rows == null) {
+            throw new IllegalArgumentException("Bulk upsert needs rows");
+        }
+        ContentValues[] values = new ContentValues[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            values[i] = (ContentValues) rows[i];
+            checkNewBookValues(values[i]);
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        long[] ids = new long[values.length];
+        boolean[] inserted = new boolean[values.length];
+        List<Long> restoredIds = new ArrayList<>();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < values.length; i++) {
+                long[] outcome = upsertBookRow(database, BookEntry.CONTENT_UPSERT_URI, values[i],
+                        now);
+                if (outcome[0] == -1) {
+                    throw new IllegalArgumentException("Failed to upsert row " + i);
+                }
+                ids[i] = outcome[0];
+                inserted[i] = outcome[1] == ROW_INSERTED;
+                if (outcome[1] == ROW_RESTORED) {
+                    restoredIds.add(outcome[0]);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // Updated books are in the tag index already, see insertBook().
+        for (long id : ids) {
+            mTagFilter.onBookAdded(id);
+        }
+        for (long id : restoredIds) {
+            mTagFilter.onBookRestored(id);
+        }
+        if (values.length > 0) {
+            notifyBooksChanged(BookEntry.CONTENT_URI);
+        }
+        Bundle result = new Bundle();
+        result.putLongArray(BookContract.EXTRA_IDS, ids);
+        result.putBooleanArray(BookContract.EXTRA_INSERTED, inserted);
+        return result;
+    }
+
+    /**
+     * Move one batch of cold books to the archive. Each batch is a transaction of its own, so
+     * archiving a large catalog never holds up other writers for long.
+     *
+     * @param arg null, or the time before which the books must have been modified last
+     */
+    private Bundle archiveBooks(String arg) {
+        long before = arg == null
+                ? System.currentTimeMillis() - ArchivedBookEntry.COLD_AFTER_MILLIS
+                : Long.parseLong(arg);
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long[] ids;
+        database.beginTransaction();
+        try {
+            ids = BookArchive.archive(database, before, ArchivedBookEntry.BATCH_SIZE);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (ids.length > 0) {
+            mTagFilter.onBooksRemoved(ids);
+            notifyBooksChanged(BookEntry.CONTENT_URI);
+        }
+        Bundle result = new Bundle();
+        result.putInt(BookContract.EXTRA_ARCHIVED, ids.length);
+        return result;
+    }
+
+    /**
+     * Open the cover image of a book. Covers are kept as files in the app's private storage
+     * and the books table only stores their file name.
+     *
+     * Opening a cover for writing always creates a new file. The book row is pointed at it
+     * once the writer closes the descriptor, so readers never see a half written image and
+     * thumbnails cached under the old file name simply stop being used.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != BOOK_COVER) {
+            throw new IllegalArgumentException("Cannot open file for unknown URI " + uri);
+        }
+        final long id = parseBookId(uri);
+        File coverDirectory = getCoverDirectory();
+
+        if (mode.contains("w")) {
+            if (!coverDirectory.isDirectory() && !coverDirectory.mkdirs()) {
+                throw new FileNotFoundException("Cannot create " + coverDirectory);
+            }
+            final String fileName = id + "-" + System.currentTimeMillis() + ".jpg";
+            final File file = new File(coverDirectory, fileName);
+            try {
+                return ParcelFileDescriptor.open(file, ParcelFileDescriptor.parseMode(mode),
+                        getCoverHandler(), new ParcelFileDescriptor.OnCloseListener() {
+                            @Override
+                            public void onClose(IOException e) {
+                                if (e == null) {
+                                    replaceCover(id, fileName);
+                                } else {
+                                    Log.e(LOG_TAG, "Failed to write cover for book " + id, e);
+                                    file.delete();
+                                }
+                            }
+                        });
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new FileNotFoundException("Cannot open " + file + ": " + e.getMessage());
+            }
+        }
+
+        // Archived books keep their cover, like every other column.
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        List<String> coverPaths = queryCoverPaths(database, BookArchive.ALL_BOOKS,
+                BookEntry._ID + "=?", new String[] { String.valueOf(id) });
+        if (coverPaths.isEmpty()) {
+            throw new FileNotFoundException("No cover for " + uri);
+        }
+        return ParcelFileDescriptor.open(new File(coverDirectory, coverPaths.get(0)),
+                ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    /**
+     * Point the book with the given ID at a newly written cover file and remove the old one.
+     * The version is bumped like for any other change, so the catalog and the snapshot file
+     * don't keep showing the old cover.
+     */
+    private void replaceCover(long id, String fileName) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        String selection = BookEntry._ID + "=?";
+        String[] selectionArgs = new String[] { String.valueOf(id) };
+        List<String> oldCoverPaths = queryCoverPaths(database, BookEntry.TABLE_NAME, selection,
+                selectionArgs);
+
+        ContentValues values = new ContentValues();
+        values.put(BookEntry.COLUMN_BOOK_COVER_PATH, fileName);
+        if (updateVersioned(database, values, selection, selectionArgs, null) == 0) {
+            // The book was deleted while its cover was being written.
+            new File(getCoverDirectory(), fileName).delete();
+            return;
+        }
+        deleteCoverFiles(oldCoverPaths);
+        notifyBooksChanged(ContentUris.withAppendedId(BookEntry.CONTENT_URI, id));
+    }
+
+    /**
+     * Tell observers that books changed after the change was committed, and schedule a new
+     * on-disk catalog snapshot. Observers hear of it at the end of the current notification
+     * window, see {@link ChangeNotifier}.
+     */
+    private void notifyBooksChanged(Uri uri) {
+        mSectionCounter.invalidate();
+        mChangeNotifier.notifyChange(uri);
+        mSnapshotWriter.onCatalogChanged();
+    }
+
+    /**
+     * Return the cover file names of the books in the table matching the selection. Books
+     * without a cover are skipped.
+     */
+    private List<String> queryCoverPaths(SQLiteDatabase database,
+                                         String table,
+                                         String selection,
+                                         String[] selectionArgs) {
+        List<String> coverPaths = new ArrayList<>();
+        Cursor cursor = database.query(table,
+                new String[] { BookEntry.COLUMN_BOOK_COVER_PATH },
+                DatabaseUtils.concatenateWhere(selection,
+                        BookEntry.COLUMN_BOOK_COVER_PATH + " IS NOT NULL"),
+                selectionArgs,
+                null,
+                null,
+                null);
+        try {
+            while (cursor.moveToNext()) {
+                coverPaths.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return coverPaths;
+    }
+
+    /**
+     * Delete the given cover files from the cover directory.
+     */
+    private void deleteCoverFiles(List<String> coverPaths) {
+        File coverDirectory = getCoverDirectory();
+        for (String coverPath : coverPaths) {
+            if (!new File(coverDirectory, coverPath).delete()) {
+                Log.w(LOG_TAG, "Failed to delete cover " + coverPath);
+            }
+        }
+    }
+
+    /**
+     * Returns the book ID of a URI below a single book, like ".../books/3/cover".
+     */
+    private static long parseBookId(Uri uri) {
+        return Long.parseLong(uri.getPathSegments().get(1));
+    }
+
+    /**
+     * Returns the location ID of a URI below a single location, like ".../locations/2/books".
+     */
+    private static long parseLocationId(Uri uri) {
+        return Long.parseLong(uri.getPathSegments().get(1));
+    }
+
+    private File getCoverDirectory() {
+        return new File(getContext().getFilesDir(), COVER_DIRECTORY);
+    }
+
+    private synchronized Handler getCoverHandler() {
+        if (mCoverHandler == null) {
+            HandlerThread thread = new HandlerThread(LOG_TAG + "-covers");
+            thread.start();
+            mCoverHandler = new Handler(thread.getLooper());
+        }
+        return mCoverHandler;
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      * UriMatcher BOOKS case ? Return MIME type BookEntry.CONTENT_LIST_TYPE
@@ -377,6 +2051,43 @@ public class BookProvider extends ContentProvider {
                 return BookEntry.CONTENT_LIST_TYPE;
             case BOOK_ID:
                 return BookEntry.CONTENT_ITEM_TYPE;
+            case BOOK_COVER:
+                return COVER_MIME_TYPE;
+            case SEARCH_SUGGEST:
+                return SearchManager.SUGGEST_MIME_TYPE;
+            case CATALOG_SECTIONS:
+                return CatalogSectionEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_REPORT:
+                return SupplierReportEntry.CONTENT_LIST_TYPE;
+            case BOOK_FORECAST:
+                return ForecastEntry.CONTENT_ITEM_TYPE;
+            case BOOK_STOCK:
+                return StockEntry.CONTENT_ITEM_TYPE;
+            case BOOK_MOVEMENTS:
+            case MOVEMENTS:
+                return MovementEntry.CONTENT_LIST_TYPE;
+            case LOCATIONS:
+                return LocationEntry.CONTENT_LIST_TYPE;
+            case LOCATION_ID:
+                return LocationEntry.CONTENT_ITEM_TYPE;
+            case LOCATION_BOOKS:
+                return BookEntry.CONTENT_LIST_TYPE;
+            case LOCATION_BOOK_ID:
+                return BookEntry.CONTENT_ITEM_TYPE;
+            case BOOK_LOCATIONS:
+                return BookStockEntry.CONTENT_LIST_TYPE;
+            case BOOK_PRICES:
+                return PriceEntry.CONTENT_LIST_TYPE;
+            case TAGS:
+                return TagEntry.CONTENT_LIST_TYPE;
+            case TAG_ID:
+                return TagEntry.CONTENT_ITEM_TYPE;
+            case BOOK_TAGS:
+                return BookTagEntry.CONTENT_LIST_TYPE;
+            case BOOK_TAG_ID:
+                return TagEntry.CONTENT_ITEM_TYPE;
+            case BOOK_FILTER:
+                return BookEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
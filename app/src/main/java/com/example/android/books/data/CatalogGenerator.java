@@ -0,0 +1,169 @@
+package com.example.android.books.data;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a synthetic catalog for load testing. The same seed and size always produce the
+ * same books, so a slowdown seen at some catalog size can be reproduced exactly.
+ *
+ * The distributions roughly follow a real bookshop:
+ * <ul>
+ *   <li>titles of one to a dozen words, mostly short, each ending in a unique serial</li>
+ *   <li>suppliers drawn from a Zipf distribution, so a few suppliers carry most titles</li>
+ *   <li>log-normal prices around 15, with a long tail of expensive books</li>
+ *   <li>exponential quantities around 20, with some books out of stock</li>
+ * </ul>
+ *
+ * The generator only produces values; a {@link RowSink} decides where they go.
+ */
+public final class CatalogGenerator {
+    /**
+     * Receives the generated books, one call per book.
+     */
+    public interface RowSink {
+        void addBook(String name, int price, int quantity, String supplierName,
+                     String supplierPhone);
+    }
+
+    /** Exponent of the supplier Zipf distribution */
+    private static final double SUPPLIER_ZIPF_EXPONENT = 1.1;
+
+    /** Books per supplier on average, which sets the size of the supplier population */
+    private static final int BOOKS_PER_SUPPLIER = 50;
+
+    /** Median price of a book */
+    private static final double MEDIAN_PRICE = 15;
+
+    /** Spread of the log-normal prices */
+    private static final double PRICE_SIGMA = 0.6;
+
+    /** Mean quantity of the books in stock */
+    private static final double MEAN_QUANTITY = 20;
+
+    /** Share of the books that are out of stock */
+    private static final double OUT_OF_STOCK_SHARE = 0.08;
+
+    /** Probability of one more word in a title, so most titles are short */
+    private static final double NEXT_WORD_PROBABILITY = 0.7;
+
+    /** Longest title in words, before the serial */
+    private static final int MAX_TITLE_WORDS = 12;
+
+    private static final String[] WORDS = {
+            "the", "art", "of", "programming", "silent", "river", "algorithms", "history",
+            "modern", "garden", "night", "data", "structures", "ancient", "city", "learning",
+            "a", "guide", "to", "cooking", "winter", "light", "introduction", "systems",
+            "design", "ocean", "stories", "lost", "empire", "practical", "mountain", "theory",
+            "and", "in", "secret", "letters", "complete", "book", "music", "machines",
+            // Accented words, so collation and search see more than ASCII
+            "\u00e9lan", "caf\u00e9", "\u00fcber", "na\u00efve", "se\u00f1or",
+            "\u00e5ngstr\u00f6m"
+    };
+
+    private static final String[] SUPPLIER_SUFFIXES = {
+            "Press", "Books", "Publishing", "House", "Editions", "Media"
+    };
+
+    private final long mSeed;
+    private final int mCount;
+
+    /**
+     * @param seed  Seed of the random values
+     * @param count Number of books to generate
+     */
+    public CatalogGenerator(long seed, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative book count " + count);
+        }
+        mSeed = seed;
+        mCount = count;
+    }
+
+    /**
+     * Returns the number of distinct suppliers the catalog draws from.
+     */
+    public int getSupplierCount() {
+        return Math.max(1, mCount / BOOKS_PER_SUPPLIER);
+    }
+
+    /**
+     * Generate all books into the sink, in order.
+     */
+    public void generate(RowSink sink) {
+        Random random = new Random(mSeed);
+        double[] supplierCumulative = zipfCumulative(getSupplierCount(), SUPPLIER_ZIPF_EXPONENT);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < mCount; i++) {
+            name.setLength(0);
+            appendTitle(random, name, i + 1);
+
+            int price = (int) Math.max(1, Math.round(
+                    MEDIAN_PRICE * Math.exp(PRICE_SIGMA * random.nextGaussian())));
+
+            int quantity = random.nextDouble() < OUT_OF_STOCK_SHARE ? 0
+                    : (int) Math.round(-Math.log(1 - random.nextDouble()) * MEAN_QUANTITY);
+
+            int supplier = sample(supplierCumulative, random.nextDouble());
+            sink.addBook(name.toString(), price, quantity, supplierName(supplier),
+                    supplierPhone(supplier));
+        }
+    }
+
+    private static void appendTitle(Random random, StringBuilder name, int serial) {
+        int words = 1;
+        while (words < MAX_TITLE_WORDS && random.nextDouble() < NEXT_WORD_PROBABILITY) {
+            words++;
+        }
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (w > 0) {
+                name.append(' ');
+            }
+            name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        name.append(" #").append(serial);
+    }
+
+    /**
+     * Returns the name of the supplier of the given rank, 0 being the largest.
+     */
+    static String supplierName(int rank) {
+        String word = WORDS[rank % WORDS.length];
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1) + " "
+                + SUPPLIER_SUFFIXES[(rank / WORDS.length) % SUPPLIER_SUFFIXES.length]
+                + " " + (rank + 1);
+    }
+
+    private static String supplierPhone(int rank) {
+        return String.format(Locale.ROOT, "555-%03d-%04d", (rank / 10000) % 1000, rank % 10000);
+    }
+
+    /**
+     * Returns the cumulative probabilities of ranks 0 to n - 1 under a Zipf distribution.
+     */
+    static double[] zipfCumulative(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Returns the rank whose cumulative probability first reaches the uniform value.
+     */
+    static int sample(double[] cumulative, double uniform) {
+        int index = Arrays.binarySearch(cumulative, uniform);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1);
+    }
+}
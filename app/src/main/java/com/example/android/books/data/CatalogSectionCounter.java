@@ -0,0 +1,114 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.CatalogSectionEntry;
+
+/**
+ * Counts the books per leading letter with one grouped query, and keeps the counts of the
+ * whole catalog until the books change.
+ *
+ * The query reads every name once, so a 100k book catalog costs one pass over the names per
+ * change, not one per scroll. Filtered catalogs are small and counted on every query.
+ */
+final class CatalogSectionCounter {
+    /** Columns of the sections cursor */
+    private static final String[] COLUMNS = {
+            CatalogSectionEntry.COLUMN_SECTION_LABEL,
+            CatalogSectionEntry.COLUMN_SECTION_COUNT
+    };
+
+    /**
+     * Leading character of the name. SQLite only folds the case of ASCII letters, exactly
+     * like the NOCASE collation of the catalog order, so each section is one run of the list.
+     */
+    private static final String SECTION_EXPRESSION =
+            "upper(substr(" + BookEntry.COLUMN_BOOK_PRODUCT_NAME + ", 1, 1))";
+
+    private final Object mLock = new Object();
+
+    /** Incremented by every change of the books, so counts of older data aren't cached */
+    private long mGeneration;
+
+    /** Counts of the whole catalog, or null until counted */
+    private String[] mLabels;
+    private int[] mCounts;
+
+    /**
+     * Return the sections of the books matching the selection, in catalog order.
+     */
+    Cursor query(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        long generation;
+        synchronized (mLock) {
+            if (selection == null && mLabels != null) {
+                return toCursor(mLabels, mCounts);
+            }
+            generation = mGeneration;
+        }
+
+        String sql = buildQueryString(selection);
+        String[] labels;
+        int[] counts;
+        Cursor cursor = database.rawQuery(sql, selectionArgs);
+        try {
+            labels = new String[cursor.getCount()];
+            counts = new int[labels.length];
+            for (int i = 0; i < labels.length && cursor.moveToNext(); i++) {
+                labels[i] = cursor.getString(0);
+                counts[i] = cursor.getInt(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (selection == null) {
+            synchronized (mLock) {
+                // Only keep the counts if no change was committed while counting.
+                if (generation == mGeneration) {
+                    mLabels = labels;
+                    mCounts = counts;
+                }
+            }
+        }
+        return toCursor(labels, counts);
+    }
+
+    /**
+     * Returns the SQL counting the books matching the selection per section.
+     */
+    static String buildQueryString(String selection) {
+        return SQLiteQueryBuilder.buildQueryString(false, BookEntry.TABLE_NAME,
+                new String[] {
+                        SECTION_EXPRESSION + " AS " + CatalogSectionEntry.COLUMN_SECTION_LABEL,
+                        "COUNT(*) AS " + CatalogSectionEntry.COLUMN_SECTION_COUNT
+                },
+                selection,
+                CatalogSectionEntry.COLUMN_SECTION_LABEL,
+                null,
+                CatalogSectionEntry.COLUMN_SECTION_LABEL + " COLLATE NOCASE",
+                null);
+    }
+
+    /**
+     * Forget the cached counts. Called after every committed change of the books.
+     */
+    void invalidate() {
+        synchronized (mLock) {
+            mGeneration++;
+            mLabels = null;
+            mCounts = null;
+        }
+    }
+
+    private static Cursor toCursor(String[] labels, int[] counts) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            cursor.addRow(new Object[] { labels[i], counts[i] });
+        }
+        return cursor;
+    }
+}
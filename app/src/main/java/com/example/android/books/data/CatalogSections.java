@@ -0,0 +1,112 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+
+import com.example.android.books.data.BookContract.CatalogSectionEntry;
+
+import java.util.Arrays;
+
+/**
+ * Immutable section index of the catalog list: a label per section and the list position
+ * where the section starts. Built from the per-letter counts of the provider, so finding the
+ * start of a section is an array read, whatever the size of the catalog.
+ */
+public final class CatalogSections {
+    /** Label of the section of names that don't start with a character */
+    static final String EMPTY_NAME_LABEL = "#";
+
+    /** A catalog without sections */
+    public static final CatalogSections EMPTY = new CatalogSections(new String[0], new int[0]);
+
+    private final String[] mLabels;
+
+    /** List position of the first row of each section */
+    private final int[] mStarts;
+
+    /** Number of rows in all sections */
+    private final int mCount;
+
+    /**
+     * @param labels Label of each section, in list order
+     * @param counts Number of rows in each section
+     */
+    public CatalogSections(String[] labels, int[] counts) {
+        if (labels.length != counts.length) {
+            throw new IllegalArgumentException("Got " + labels.length + " labels for "
+                    + counts.length + " counts");
+        }
+        mLabels = new String[labels.length];
+        mStarts = new int[counts.length];
+        int position = 0;
+        for (int i = 0; i < counts.length; i++) {
+            mLabels[i] = labels[i] == null || labels[i].isEmpty() ? EMPTY_NAME_LABEL : labels[i];
+            mStarts[i] = position;
+            position += counts[i];
+        }
+        mCount = position;
+    }
+
+    /**
+     * Build the sections from a cursor over {@link CatalogSectionEntry}, in list order. The
+     * cursor is read from the first row to the last but not closed.
+     */
+    public static CatalogSections fromCursor(Cursor cursor) {
+        int labelColumnIndex = cursor.getColumnIndexOrThrow(
+                CatalogSectionEntry.COLUMN_SECTION_LABEL);
+        int countColumnIndex = cursor.getColumnIndexOrThrow(
+                CatalogSectionEntry.COLUMN_SECTION_COUNT);
+        String[] labels = new String[cursor.getCount()];
+        int[] counts = new int[labels.length];
+        cursor.moveToPosition(-1);
+        for (int i = 0; i < labels.length && cursor.moveToNext(); i++) {
+            labels[i] = cursor.getString(labelColumnIndex);
+            counts[i] = cursor.getInt(countColumnIndex);
+        }
+        return new CatalogSections(labels, counts);
+    }
+
+    /**
+     * Returns the section labels. The array is shared, don't modify it.
+     */
+    public String[] getLabels() {
+        return mLabels;
+    }
+
+    /**
+     * Returns the number of rows the sections cover.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the list position where the section starts. Sections out of range are clamped
+     * to the first or last one.
+     */
+    public int getPositionForSection(int section) {
+        if (mStarts.length == 0) {
+            return 0;
+        }
+        return mStarts[Math.max(0, Math.min(section, mStarts.length - 1))];
+    }
+
+    /**
+     * Returns the section the list position falls into.
+     */
+    public int getSectionForPosition(int position) {
+        if (mStarts.length == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(mStarts, position);
+        if (index < 0) {
+            // Not a section start, so it belongs to the section starting before it.
+            index = -index - 2;
+        } else {
+            // Empty sections start where the next one does, pick the last of them.
+            while (index + 1 < mStarts.length && mStarts[index + 1] == position) {
+                index++;
+            }
+        }
+        return Math.max(0, index);
+    }
+}
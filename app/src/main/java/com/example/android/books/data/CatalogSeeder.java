@@ -0,0 +1,72 @@
+package com.example.android.books.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+/**
+ * Inserts a generated catalog through the provider's bulk insert, in batches so the values of
+ * a million books never sit in memory at once.
+ */
+public final class CatalogSeeder {
+    /** Number of books per bulk insert, each batch being one transaction */
+    private static final int BATCH_SIZE = 1000;
+
+    // Only static helpers.
+    private CatalogSeeder() {}
+
+    /**
+     * Generate the books and insert them. Does disk work, so don't call it on the main thread.
+     *
+     * @return the number of books inserted
+     */
+    public static int insert(ContentResolver resolver, CatalogGenerator generator) {
+        BatchSink sink = new BatchSink(resolver);
+        generator.generate(sink);
+        sink.flush();
+        return sink.mInserted;
+    }
+
+    /**
+     * Collects the generated books and bulk inserts every full batch.
+     */
+    private static final class BatchSink implements CatalogGenerator.RowSink {
+        private final ContentResolver mResolver;
+        private final ContentValues[] mBatch = new ContentValues[BATCH_SIZE];
+        private int mSize;
+        private int mInserted;
+
+        BatchSink(ContentResolver resolver) {
+            mResolver = resolver;
+        }
+
+        @Override
+        public void addBook(String name, int price, int quantity, String supplierName,
+                            String supplierPhone) {
+            ContentValues values = new ContentValues();
+            values.put(BookEntry.COLUMN_BOOK_PRODUCT_NAME, name);
+            values.put(BookEntry.COLUMN_BOOK_PRICE, price);
+            values.put(BookEntry.COLUMN_BOOK_QUANTITY, quantity);
+            values.put(BookEntry.COLUMN_BOOK_SUPPLIER_NAME, supplierName);
+            values.put(BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER, supplierPhone);
+            mBatch[mSize++] = values;
+            if (mSize == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (mSize == 0) {
+                return;
+            }
+            ContentValues[] batch = mBatch;
+            if (mSize < BATCH_SIZE) {
+                batch = new ContentValues[mSize];
+                System.arraycopy(mBatch, 0, batch, 0, mSize);
+            }
+            mInserted += mResolver.bulkInsert(BookEntry.CONTENT_URI, batch);
+            mSize = 0;
+        }
+    }
+}
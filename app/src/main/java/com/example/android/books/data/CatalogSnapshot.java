@@ -0,0 +1,239 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, column oriented copy of the catalog list.
+ *
+ * Only the columns the list shows are kept, each in a primitive array indexed by list
+ * position. Names are stored back to back in a single char pool, so reading a row for display
+ * needs neither a {@link Cursor} nor a {@link String} per row. A snapshot is built once, off the
+ * main thread, from the catalog query.
+ */
+public final class CatalogSnapshot {
+    /** Price stored for books whose price column is null */
+    public static final int NO_PRICE = Integer.MIN_VALUE;
+
+    /** An empty catalog */
+    public static final CatalogSnapshot EMPTY = new Builder(0).build();
+
+    private final int mCount;
+    private final long[] mIds;
+    private final int[] mPrices;
+    private final int[] mQuantities;
+
+    /** {@link BookEntry#COLUMN_BOOK_VERSION} of each row when it was read */
+    private final long[] mVersions;
+
+    /** All names, back to back */
+    private final char[] mNamePool;
+
+    /** Start of each name in {@link #mNamePool}, with one extra entry marking the end */
+    private final int[] mNameOffsets;
+
+    /** Cover file name per row, null for books without a cover */
+    private final String[] mCoverPaths;
+
+    /** Section index of the rows, empty if the sections weren't loaded */
+    private final CatalogSections mSections;
+
+    CatalogSnapshot(int count, long[] ids, int[] prices, int[] quantities, long[] versions,
+                    char[] namePool, int[] nameOffsets, String[] coverPaths) {
+        this(count, ids, prices, quantities, versions, namePool, nameOffsets, coverPaths,
+                CatalogSections.EMPTY);
+    }
+
+    private CatalogSnapshot(int count, long[] ids, int[] prices, int[] quantities,
+                            long[] versions, char[] namePool, int[] nameOffsets,
+                            String[] coverPaths, CatalogSections sections) {
+        mCount = count;
+        mIds = ids;
+        mPrices = prices;
+        mQuantities = quantities;
+        mVersions = versions;
+        mNamePool = namePool;
+        mNameOffsets = nameOffsets;
+        mCoverPaths = coverPaths;
+        mSections = sections;
+    }
+
+    /**
+     * Returns a snapshot of the same rows with the given section index. The rows are shared,
+     * not copied.
+     */
+    public CatalogSnapshot withSections(CatalogSections sections) {
+        return new CatalogSnapshot(mCount, mIds, mPrices, mQuantities, mVersions, mNamePool,
+                mNameOffsets, mCoverPaths, sections);
+    }
+
+    /**
+     * Returns the section index of the rows, empty if it wasn't loaded.
+     */
+    public CatalogSections getSections() {
+        return mSections;
+    }
+
+    /**
+     * Build a snapshot from a cursor over {@link BookEntry#CATALOG_PROJECTION}. The cursor is
+     * read from the first row to the last but not closed.
+     */
+    public static CatalogSnapshot fromCursor(Cursor cursor) {
+        int idColumnIndex = cursor.getColumnIndexOrThrow(BookEntry._ID);
+        int nameColumnIndex = cursor.getColumnIndexOrThrow(BookEntry.COLUMN_BOOK_PRODUCT_NAME);
+        int priceColumnIndex = cursor.getColumnIndexOrThrow(BookEntry.COLUMN_BOOK_PRICE);
+        int quantityColumnIndex = cursor.getColumnIndexOrThrow(BookEntry.COLUMN_BOOK_QUANTITY);
+        int coverColumnIndex = cursor.getColumnIndexOrThrow(BookEntry.COLUMN_BOOK_COVER_PATH);
+        int versionColumnIndex = cursor.getColumnIndexOrThrow(BookEntry.COLUMN_BOOK_VERSION);
+
+        Builder builder = new Builder(cursor.getCount());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            builder.add(cursor.getLong(idColumnIndex),
+                    cursor.getString(nameColumnIndex),
+                    cursor.isNull(priceColumnIndex) ? NO_PRICE : cursor.getInt(priceColumnIndex),
+                    cursor.getInt(quantityColumnIndex),
+                    cursor.getString(coverColumnIndex),
+                    cursor.getLong(versionColumnIndex));
+        }
+        return builder.build();
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    /**
+     * Returns the price of the book, or {@link #NO_PRICE} if it has none.
+     */
+    public int getPrice(int position) {
+        return mPrices[position];
+    }
+
+    public int getQuantity(int position) {
+        return mQuantities[position];
+    }
+
+    /**
+     * Returns the version of the book the row was read at. An editor opened with the row's
+     * values only needs to reload them if the book is at another version by now.
+     */
+    public long getVersion(int position) {
+        return mVersions[position];
+    }
+
+    /**
+     * Returns the pool holding every name. Use it with {@link #getNameStart(int)} and
+     * {@link #getNameLength(int)} to display a name without copying it.
+     */
+    public char[] getNamePool() {
+        return mNamePool;
+    }
+
+    public int getNameStart(int position) {
+        return mNameOffsets[position];
+    }
+
+    public int getNameLength(int position) {
+        return mNameOffsets[position + 1] - mNameOffsets[position];
+    }
+
+    /**
+     * Returns the name of the book as a new String. Not meant for the bind path.
+     */
+    public String getName(int position) {
+        return new String(mNamePool, getNameStart(position), getNameLength(position));
+    }
+
+    /**
+     * Returns the cover file name of the book, or null if it has no cover.
+     */
+    public String getCoverPath(int position) {
+        return mCoverPaths[position];
+    }
+
+    /**
+     * Collects rows in list order and packs them into a {@link CatalogSnapshot}.
+     */
+    public static final class Builder {
+        private int mCount;
+        private long[] mIds;
+        private int[] mPrices;
+        private int[] mQuantities;
+        private long[] mVersions;
+        private char[] mNamePool;
+        private int mNamePoolLength;
+        private int[] mNameOffsets;
+        private String[] mCoverPaths;
+
+        /**
+         * @param expectedCount Number of rows expected, the arrays grow if more are added
+         */
+        public Builder(int expectedCount) {
+            int capacity = Math.max(expectedCount, 1);
+            mIds = new long[capacity];
+            mPrices = new int[capacity];
+            mQuantities = new int[capacity];
+            mVersions = new long[capacity];
+            mNameOffsets = new int[capacity + 1];
+            mCoverPaths = new String[capacity];
+            // Titles average a couple dozen characters.
+            mNamePool = new char[capacity * 24];
+        }
+
+        /**
+         * Append a row. Rows end up in the snapshot in the order they were added.
+         */
+        public Builder add(long id, String name, int price, int quantity, String coverPath,
+                           long version) {
+            if (mCount == mIds.length) {
+                int capacity = mIds.length * 2;
+                mIds = Arrays.copyOf(mIds, capacity);
+                mPrices = Arrays.copyOf(mPrices, capacity);
+                mQuantities = Arrays.copyOf(mQuantities, capacity);
+                mVersions = Arrays.copyOf(mVersions, capacity);
+                mNameOffsets = Arrays.copyOf(mNameOffsets, capacity + 1);
+                mCoverPaths = Arrays.copyOf(mCoverPaths, capacity);
+            }
+            int nameLength = name == null ? 0 : name.length();
+            if (mNamePoolLength + nameLength > mNamePool.length) {
+                mNamePool = Arrays.copyOf(mNamePool,
+                        Math.max(mNamePool.length * 2, mNamePoolLength + nameLength));
+            }
+            if (nameLength > 0) {
+                name.getChars(0, nameLength, mNamePool, mNamePoolLength);
+                mNamePoolLength += nameLength;
+            }
+
+            mIds[mCount] = id;
+            mPrices[mCount] = price;
+            mQuantities[mCount] = quantity;
+            mVersions[mCount] = version;
+            mCoverPaths[mCount] = coverPath;
+            mCount++;
+            mNameOffsets[mCount] = mNamePoolLength;
+            return this;
+        }
+
+        /**
+         * Returns the snapshot, with every array trimmed to its content.
+         */
+        public CatalogSnapshot build() {
+            return new CatalogSnapshot(mCount,
+                    Arrays.copyOf(mIds, mCount),
+                    Arrays.copyOf(mPrices, mCount),
+                    Arrays.copyOf(mQuantities, mCount),
+                    Arrays.copyOf(mVersions, mCount),
+                    Arrays.copyOf(mNamePool, mNamePoolLength),
+                    Arrays.copyOf(mNameOffsets, mCount + 1),
+                    Arrays.copyOf(mCoverPaths, mCount));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.android.books.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary copy of the {@link CatalogSnapshot} on disk, so a cold start can draw the
+ * catalog before SQLite is even opened.
+ *
+ * Every committed change to the books table bumps a generation counter on disk before the
+ * provider call that made it returns. A snapshot file records the generation it was written
+ * for, and is only read back while that generation is still current. A stale or damaged file
+ * is ignored, never shown.
+ *
+ * File layout, big endian:
+ * <pre>
+ *   int magic, int format version, long generation, int count,
+ *   int name pool length, int cover pool length,
+ *   long[count] ids, int[count] prices, int[count] quantities, long[count] versions,
+ *   int[count + 1] name offsets, int[count] cover lengths (-1 for no cover),
+ *   char[] name pool, char[] cover pool
+ * </pre>
+ */
+public final class CatalogSnapshotFile {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogSnapshotFile.class.getSimpleName();
+
+    /** "BKS1" */
+    private static final int MAGIC = 0x424b5331;
+
+    /** Version of the file layout, bumped whenever the layout changes */
+    private static final int FORMAT_VERSION = 2;
+
+    /** Size of the fixed header in bytes */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+    /** Name of the snapshot file inside the app's no-backup directory */
+    private static final String FILE_NAME = "catalog.snapshot";
+
+    /** Preferences holding the current catalog generation */
+    private static final String PREFERENCES_NAME = "catalog_snapshot";
+
+    /** Preference key of the current catalog generation */
+    private static final String KEY_GENERATION = "generation";
+
+    // Only static helpers.
+    private CatalogSnapshotFile() {}
+
+    /**
+     * Returns the snapshot file of the app.
+     */
+    public static File getFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Returns the current catalog generation.
+     */
+    public static long getGeneration(Context context) {
+        return getPreferences(context).getLong(KEY_GENERATION, 0);
+    }
+
+    /**
+     * Mark the catalog as changed. Called after every committed change to the books table, on
+     * the thread that committed it, which makes any existing snapshot file stale. The new generation is on disk when this returns,
+     * so a process that dies right after can't take the old file for current. Writes to disk,
+     * so not for the main thread.
+     */
+    static synchronized void bumpGeneration(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!preferences.edit()
+                .putLong(KEY_GENERATION, preferences.getLong(KEY_GENERATION, 0) + 1)
+                .commit()) {
+            Log.w(LOG_TAG, "Failed to save the catalog generation");
+        }
+    }
+
+    /**
+     * Returns the snapshot on disk if it matches the current generation, or null.
+     */
+    public static CatalogSnapshot readCurrent(Context context) {
+        return read(getFile(context), getGeneration(context));
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Write the snapshot, replacing the file atomically.
+     */
+    static void write(File file, CatalogSnapshot snapshot, long generation) throws IOException {
+        int count = snapshot.getCount();
+        int namePoolLength = count == 0 ? 0 : snapshot.getNameStart(count - 1)
+                + snapshot.getNameLength(count - 1);
+        int coverPoolLength = 0;
+        for (int i = 0; i < count; i++) {
+            String coverPath = snapshot.getCoverPath(i);
+            if (coverPath != null) {
+                coverPoolLength += coverPath.length();
+            }
+        }
+
+        int size = HEADER_SIZE + count * (8 + 4 + 4 + 8 + 4 + 4) + 4
+                + (namePoolLength + coverPoolLength) * 2;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(generation)
+                .putInt(count)
+                .putInt(namePoolLength)
+                .putInt(coverPoolLength);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(snapshot.getId(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(snapshot.getPrice(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(snapshot.getQuantity(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(snapshot.getVersion(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(snapshot.getNameStart(i));
+        }
+        buffer.putInt(namePoolLength);
+        for (int i = 0; i < count; i++) {
+            String coverPath = snapshot.getCoverPath(i);
+            buffer.putInt(coverPath == null ? -1 : coverPath.length());
+        }
+        buffer.asCharBuffer().put(snapshot.getNamePool(), 0, namePoolLength);
+        buffer.position(buffer.position() + namePoolLength * 2);
+        for (int i = 0; i < count; i++) {
+            String coverPath = snapshot.getCoverPath(i);
+            if (coverPath != null) {
+                for (int c = 0; c < coverPath.length(); c++) {
+                    buffer.putChar(coverPath.charAt(c));
+                }
+            }
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(buffer.array());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Map the file and read the snapshot back.
+     *
+     * @param expectedGeneration The current catalog generation
+     * @return the snapshot, or null if the file is missing, stale or damaged
+     */
+    static CatalogSnapshot read(File file, long expectedGeneration) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                MappedByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return decode(buffer, expectedGeneration);
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable catalog snapshot", e);
+            return null;
+        }
+    }
+
+    private static CatalogSnapshot decode(ByteBuffer buffer, long expectedGeneration) {
+        if (buffer.remaining() < HEADER_SIZE
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != FORMAT_VERSION
+                || buffer.getLong() != expectedGeneration) {
+            return null;
+        }
+        int count = buffer.getInt();
+        int namePoolLength = buffer.getInt();
+        int coverPoolLength = buffer.getInt();
+        if (count < 0 || namePoolLength < 0 || coverPoolLength < 0) {
+            return null;
+        }
+
+        long[] ids = new long[count];
+        buffer.asLongBuffer().get(ids);
+        buffer.position(buffer.position() + count * 8);
+        int[] prices = new int[count];
+        buffer.asIntBuffer().get(prices);
+        buffer.position(buffer.position() + count * 4);
+        int[] quantities = new int[count];
+        buffer.asIntBuffer().get(quantities);
+        buffer.position(buffer.position() + count * 4);
+        long[] versions = new long[count];
+        buffer.asLongBuffer().get(versions);
+        buffer.position(buffer.position() + count * 8);
+        int[] nameOffsets = new int[count + 1];
+        buffer.asIntBuffer().get(nameOffsets);
+        buffer.position(buffer.position() + (count + 1) * 4);
+        int[] coverLengths = new int[count];
+        buffer.asIntBuffer().get(coverLengths);
+        buffer.position(buffer.position() + count * 4);
+        char[] namePool = new char[namePoolLength];
+        buffer.asCharBuffer().get(namePool);
+        buffer.position(buffer.position() + namePoolLength * 2);
+        char[] coverPool = new char[coverPoolLength];
+        buffer.asCharBuffer().get(coverPool);
+
+        String[] coverPaths = new String[count];
+        int coverOffset = 0;
+        for (int i = 0; i < count; i++) {
+            if (nameOffsets[i] < 0 || nameOffsets[i] > nameOffsets[i + 1]) {
+                return null;
+            }
+            if (coverLengths[i] >= 0) {
+                if (coverOffset + coverLengths[i] > coverPoolLength) {
+                    return null;
+                }
+                coverPaths[i] = new String(coverPool, coverOffset, coverLengths[i]);
+                coverOffset += coverLengths[i];
+            }
+        }
+        if (nameOffsets[count] != namePoolLength) {
+            return null;
+        }
+        return new CatalogSnapshot(count, ids, prices, quantities, versions, namePool,
+                nameOffsets, coverPaths);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.books.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rewrites the {@link CatalogSnapshotFile} in the background after the catalog changed.
+ *
+ * Requests that arrive while a write is already queued are folded into it, so a burst of
+ * changes costs one catalog query and one file write. The generation bump that makes the old
+ * file stale is not folded: every change writes it to disk on the committing thread, before
+ * the provider returns, so no process death can leave the old file looking current.
+ */
+class CatalogSnapshotWriter {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogSnapshotWriter.class.getSimpleName();
+
+    private final Context mContext;
+    private final BookDbHelper mDbHelper;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean mWriteQueued = new AtomicBoolean();
+
+    private final Runnable mWrite = new Runnable() {
+        @Override
+        public void run() {
+            mWriteQueued.set(false);
+            try {
+                write();
+            } catch (IOException | RuntimeException e) {
+                Log.w(LOG_TAG, "Failed to write the catalog snapshot", e);
+            }
+        }
+    };
+
+    CatalogSnapshotWriter(Context context, BookDbHelper dbHelper) {
+        mContext = context;
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Mark the catalog as changed and schedule a new snapshot. Must be called after the
+     * change was committed, on the thread that committed it. Writes the new generation to
+     * disk, see {@link CatalogSnapshotFile#bumpGeneration}.
+     */
+    void onCatalogChanged() {
+        CatalogSnapshotFile.bumpGeneration(mContext);
+        if (mWriteQueued.compareAndSet(false, true)) {
+            mExecutor.execute(mWrite);
+        }
+    }
+
+    private void write() throws IOException {
+        // Read the generation before the data. Every commit bumps it before its provider call
+        // returns, so if the catalog changes in between, the file is labelled with a
+        // generation that is already stale and will simply be ignored.
+        long generation = CatalogSnapshotFile.getGeneration(mContext);
+        Cursor cursor = mDbHelper.getReadableDatabase().query(BookEntry.TABLE_NAME,
+                BookEntry.CATALOG_PROJECTION, null, null, null, null,
+                BookEntry.CATALOG_SORT_ORDER);
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = CatalogSnapshot.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+        CatalogSnapshotFile.write(CatalogSnapshotFile.getFile(mContext), snapshot, generation);
+    }
+}
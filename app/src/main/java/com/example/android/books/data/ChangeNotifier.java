@@ -0,0 +1,165 @@
+package com.example.android.books.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends the change notifications of the provider, merged per time window.
+ *
+ * A change only marks its URI as changed. The notifications go out together at the end of
+ * the window started by the first change, once per URI, and a URI is left out if one of its
+ * ancestors changed too, since observers of a URI are told about changes of its ancestors
+ * anyway. A burst of writes therefore costs observers at most one reload per window.
+ *
+ * Changes made inside a batch on the same thread are held back until the batch ends, so
+ * nobody reloads before the batch is committed.
+ */
+final class ChangeNotifier {
+    /** Length of the window changes are merged over */
+    static final long WINDOW_MILLIS = BookContract.CHANGE_NOTIFICATION_WINDOW_MILLIS;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+
+    /** URIs changed in the current window, without query */
+    private final Set<String> mPending = new HashSet<>();
+
+    /** Whether the end of the current window is scheduled */
+    private boolean mFlushScheduled;
+
+    /** The open batch of the calling thread, if any */
+    private final ThreadLocal<Batch> mBatch = new ThreadLocal<>();
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            List<String> uris;
+            synchronized (mLock) {
+                uris = coalesce(mPending);
+                mPending.clear();
+                mFlushScheduled = false;
+            }
+            for (String uri : uris) {
+                mResolver.notifyChange(Uri.parse(uri), null);
+            }
+        }
+    };
+
+    private static final class Batch {
+        int mDepth;
+        final Set<String> mUris = new HashSet<>();
+    }
+
+    ChangeNotifier(ContentResolver resolver, String name) {
+        mResolver = resolver;
+        HandlerThread thread = new HandlerThread(name);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Mark the URI as changed. Must be called after the change was committed, or inside a
+     * batch.
+     */
+    void notifyChange(Uri uri) {
+        // Observers are matched by path, the query only tells what the caller asked for.
+        String key = uri.buildUpon().clearQuery().fragment(null).build().toString();
+        Batch batch = mBatch.get();
+        if (batch != null) {
+            batch.mUris.add(key);
+        } else {
+            schedule(Collections.singleton(key));
+        }
+    }
+
+    /**
+     * Hold back the changes of the calling thread until the matching {@link #endBatch()}.
+     * Batches nest.
+     */
+    void beginBatch() {
+        Batch batch = mBatch.get();
+        if (batch == null) {
+            batch = new Batch();
+            mBatch.set(batch);
+        }
+        batch.mDepth++;
+    }
+
+    /**
+     * End a batch. The outermost batch passes the changes it held back on to the current
+     * window.
+     *
+     * @return true if the outermost batch ended and held back any change
+     */
+    boolean endBatch() {
+        Batch batch = mBatch.get();
+        if (batch == null) {
+            throw new IllegalStateException("No batch to end");
+        }
+        if (--batch.mDepth > 0) {
+            return false;
+        }
+        mBatch.remove();
+        if (batch.mUris.isEmpty()) {
+            return false;
+        }
+        schedule(batch.mUris);
+        return true;
+    }
+
+    private void schedule(Collection<String> uris) {
+        synchronized (mLock) {
+            mPending.addAll(uris);
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mHandler.postDelayed(mFlush, WINDOW_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Returns the URIs to notify for the changed URIs: each one once, leaving out those with
+     * a changed ancestor, in sorted order.
+     *
+     * @param uris Changed URIs without query, like "content://authority/books/3"
+     */
+    static List<String> coalesce(Collection<String> uris) {
+        Set<String> changed = new HashSet<>(uris);
+        List<String> result = new ArrayList<>();
+        for (String uri : changed) {
+            if (!hasChangedAncestor(uri, changed)) {
+                result.add(uri);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static boolean hasChangedAncestor(String uri, Set<String> changed) {
+        // Ancestors end before a slash of the path, which starts after the "//" of the
+        // authority.
+        int authority = uri.indexOf("//");
+        int pathStart = uri.indexOf('/', authority < 0 ? 0 : authority + 2);
+        if (pathStart < 0) {
+            return false;
+        }
+        for (int slash = uri.lastIndexOf('/'); slash > pathStart;
+                slash = uri.lastIndexOf('/', slash - 1)) {
+            if (changed.contains(uri.substring(0, slash))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.android.books.data;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instrumentation around the database operations of {@link BookProvider}.
+ *
+ * For every operation it records the calling thread, the duration and the URI. Operations that
+ * run on the main looper are violations: depending on the {@link Policy} they are logged with
+ * the offending stack trace or fail right away with a {@link ViolationException}, which is how
+ * JVM tests catch new database work on the UI thread.
+ *
+ * The monitor is off by default. Debug builds switch it to {@link Policy#LOG}.
+ */
+public final class DatabaseAccessMonitor {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = DatabaseAccessMonitor.class.getSimpleName();
+
+    /** Number of recent operations kept for inspection */
+    private static final int MAX_RECORDED_ACCESSES = 64;
+
+    /**
+     * What happens when database work runs on the main thread.
+     */
+    public enum Policy {
+        /** Nothing is recorded */
+        OFF,
+        /** Operations are recorded and violations are logged */
+        LOG,
+        /** Operations are recorded and violations throw a {@link ViolationException} */
+        THROW
+    }
+
+    /**
+     * Tells whether the calling thread is the main thread. Replaced in JVM tests, where
+     * there is no main looper.
+     */
+    public interface ThreadChecker {
+        boolean isMainThread();
+    }
+
+    /**
+     * Thrown under {@link Policy#THROW} when database work runs on the main thread.
+     */
+    public static class ViolationException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public ViolationException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A recorded database operation.
+     */
+    public static final class Access {
+        /** Name of the provider operation, such as "query" */
+        public final String operation;
+        /** The URI the operation was called with */
+        public final String uri;
+        /** Name of the calling thread */
+        public final String threadName;
+        /** Whether the operation ran on the main thread */
+        public final boolean mainThread;
+        /** How long the operation took, in nanoseconds */
+        public final long durationNanos;
+
+        Access(String operation, String uri, String threadName, boolean mainThread,
+               long durationNanos) {
+            this.operation = operation;
+            this.uri = uri;
+            this.threadName = threadName;
+            this.mainThread = mainThread;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " " + uri + " on " + threadName + " took "
+                    + (durationNanos / 1000) + "us";
+        }
+    }
+
+    /**
+     * An operation in progress, returned by {@link #begin(String, Object)}.
+     */
+    public static final class Operation {
+        private final String mOperation;
+        private final String mUri;
+        private final Thread mThread;
+        private final boolean mMainThread;
+        private final long mBeginNanos;
+
+        Operation(String operation, String uri, Thread thread, boolean mainThread) {
+            mOperation = operation;
+            mUri = uri;
+            mThread = thread;
+            mMainThread = mainThread;
+            mBeginNanos = System.nanoTime();
+        }
+
+        /**
+         * Mark the operation as finished and record it.
+         */
+        public void end() {
+            if (this == NOT_MONITORED) {
+                return;
+            }
+            record(new Access(mOperation, mUri, mThread.getName(), mMainThread,
+                    System.nanoTime() - mBeginNanos));
+        }
+    }
+
+    /** Shared operation handed out while the monitor is off */
+    private static final Operation NOT_MONITORED = new Operation(null, null, null, false);
+
+    private static final ThreadChecker MAIN_LOOPER_CHECKER = new ThreadChecker() {
+        @Override
+        public boolean isMainThread() {
+            return Looper.myLooper() == Looper.getMainLooper();
+        }
+    };
+
+    private static volatile Policy sPolicy = Policy.OFF;
+    private static volatile ThreadChecker sThreadChecker = MAIN_LOOPER_CHECKER;
+    private static final ArrayDeque<Access> sAccesses = new ArrayDeque<>();
+    private static final List<Access> sViolations = new ArrayList<>();
+
+    // Only static helpers.
+    private DatabaseAccessMonitor() {}
+
+    /**
+     * Set what happens on a main thread violation.
+     */
+    public static void setPolicy(Policy policy) {
+        sPolicy = policy;
+    }
+
+    public static Policy getPolicy() {
+        return sPolicy;
+    }
+
+    /**
+     * Replace the main thread check, or restore the main looper check with null.
+     */
+    public static void setThreadChecker(ThreadChecker checker) {
+        sThreadChecker = checker == null ? MAIN_LOOPER_CHECKER : checker;
+    }
+
+    /**
+     * Start monitoring a database operation. A violation is reported here, before the work
+     * is done, so a failing test points at the caller.
+     *
+     * @param operation Name of the provider operation
+     * @param uri       The URI the operation was called with
+     * @return the operation to end once the database work is done
+     */
+    public static Operation begin(String operation, Object uri) {
+        Policy policy = sPolicy;
+        if (policy == Policy.OFF) {
+            return NOT_MONITORED;
+        }
+        boolean mainThread = sThreadChecker.isMainThread();
+        String uriString = String.valueOf(uri);
+        if (mainThread) {
+            String message = "Database " + operation + " of " + uriString + " on the main thread";
+            if (policy == Policy.THROW) {
+                ViolationException violation = new ViolationException(message);
+                synchronized (sViolations) {
+                    sViolations.add(new Access(operation, uriString,
+                            Thread.currentThread().getName(), true, 0));
+                }
+                throw violation;
+            }
+            Log.w(LOG_TAG, message, new ViolationException(message));
+        }
+        return new Operation(operation, uriString, Thread.currentThread(), mainThread);
+    }
+
+    private static void record(Access access) {
+        synchronized (sAccesses) {
+            if (sAccesses.size() == MAX_RECORDED_ACCESSES) {
+                sAccesses.removeFirst();
+            }
+            sAccesses.addLast(access);
+        }
+        if (access.mainThread) {
+            synchronized (sViolations) {
+                sViolations.add(access);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recent operations, oldest first.
+     */
+    public static List<Access> getRecentAccesses() {
+        synchronized (sAccesses) {
+            return new ArrayList<>(sAccesses);
+        }
+    }
+
+    /**
+     * Returns every main thread violation since the last {@link #reset()}.
+     */
+    public static List<Access> getViolations() {
+        synchronized (sViolations) {
+            return new ArrayList<>(sViolations);
+        }
+    }
+
+    /**
+     * Forget the recorded operations and violations.
+     */
+    public static void reset() {
+        synchronized (sAccesses) {
+            sAccesses.clear();
+        }
+        synchronized (sViolations) {
+            sViolations.clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.books.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+/**
+ * Background warm-up of the database at process start.
+ *
+ * By the time the catalog asks for its first rows the database is open, the statements
+ * used by the catalog and the editor are compiled in the connection's statement cache and
+ * the first page of the catalog is in SQLite's page cache.
+ *
+ * The warm-up reads the database directly, not through {@link BookProvider}, so the
+ * {@link StartupTrace#FIRST_QUERY} trace point times the catalog's own first query. The
+ * warm-up has a trace point of its own.
+ */
+public final class DatabaseWarmUp {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = DatabaseWarmUp.class.getSimpleName();
+
+    // Only static helpers.
+    private DatabaseWarmUp() {}
+
+    /**
+     * Start the warm-up on a background thread.
+     */
+    public static void start(Context context) {
+        final Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    warmUp(appContext);
+                } catch (RuntimeException e) {
+                    // Warming up is an optimization only, the first real query will retry.
+                    Log.w(LOG_TAG, "Database warm-up failed", e);
+                }
+            }
+        }, LOG_TAG);
+        thread.start();
+    }
+
+    /**
+     * Open the database, prepare the hot statements and prefetch the first catalog page.
+     */
+    static void warmUp(Context context) {
+        long traceBegin = StartupTrace.begin();
+        SQLiteDatabase database = BookDbHelper.getInstance(context).getReadableDatabase();
+
+        // Compiling a statement leaves it in the connection's prepared statement cache.
+        // The SQL must be built exactly the way SQLiteDatabase.query() builds it.
+        String catalogSql = SQLiteQueryBuilder.buildQueryString(false, BookEntry.TABLE_NAME,
+                BookEntry.CATALOG_PROJECTION, null, null, null, BookEntry.CATALOG_SORT_ORDER, null);
+        String detailSql = SQLiteQueryBuilder.buildQueryString(false, BookEntry.TABLE_NAME,
+                BookEntry.DETAIL_PROJECTION, BookEntry._ID + "=?", null, null, null, null);
+        database.compileStatement(catalogSql).close();
+        database.compileStatement(detailSql).close();
+
+        // Fill the first cursor window with the statement the catalog query will run.
+        Cursor cursor = database.query(BookEntry.TABLE_NAME, BookEntry.CATALOG_PROJECTION,
+                null, null, null, null, BookEntry.CATALOG_SORT_ORDER);
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+        StartupTrace.end(StartupTrace.WARM_UP, traceBegin);
+        Log.v(LOG_TAG, "Warm-up done: " + StartupTrace.summary());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.books.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * The dedupe key of a book: its name and supplier, compared the way a person would. Case,
+ * Unicode composition and runs of whitespace don't matter, so "The  Art of Programming" from
+ * "ACME Press" and "the art of programming" from "Acme press" are the same book.
+ *
+ * The books table keeps the key in {@link BookEntry#COLUMN_BOOK_DEDUPE_KEY} with a unique
+ * index, which is what lets an upsert find the existing book by trying the insert.
+ */
+final class DedupeKey {
+    /** Separates the name from the supplier, a character names don't contain */
+    private static final char SEPARATOR = '\u001f';
+
+    // Only static helpers.
+    private DedupeKey() {}
+
+    /**
+     * Returns the dedupe key of a book with the given name and supplier. A null supplier is
+     * the same as an empty one.
+     */
+    static String of(String name, String supplier) {
+        return normalize(name) + SEPARATOR + normalize(supplier);
+    }
+
+    /**
+     * Returns the text case folded, in compatibility composed form, with whitespace runs
+     * collapsed to single spaces and none at either end.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the values of a new book with its dedupe key added.
+     */
+    static ContentValues withKey(ContentValues values) {
+        ContentValues keyed = new ContentValues(values);
+        keyed.put(BookEntry.COLUMN_BOOK_DEDUPE_KEY,
+                of(values.getAsString(BookEntry.COLUMN_BOOK_PRODUCT_NAME),
+                        values.getAsString(BookEntry.COLUMN_BOOK_SUPPLIER_NAME)));
+        return keyed;
+    }
+
+    /**
+     * Returns the ID of the book with the key, or -1 if there is none.
+     */
+    static long findBook(SQLiteDatabase database, String key) {
+        Cursor cursor = database.query(BookEntry.TABLE_NAME,
+                new String[] { BookEntry._ID },
+                BookEntry.COLUMN_BOOK_DEDUPE_KEY + "=?",
+                new String[] { key },
+                null,
+                null,
+                null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Recompute the keys of the books after their name or supplier changed. Must be called
+     * inside the transaction of the change.
+     *
+     * @throws DuplicateBookException if another book, hot or archived, already has the new
+     *                                key
+     */
+    static void refresh(SQLiteDatabase database, long[] bookIds) {
+        for (long bookId : bookIds) {
+            String[] idArgs = { String.valueOf(bookId) };
+            String name;
+            String supplier;
+            Cursor cursor = database.query(BookEntry.TABLE_NAME,
+                    new String[] {
+                            BookEntry.COLUMN_BOOK_PRODUCT_NAME,
+                            BookEntry.COLUMN_BOOK_SUPPLIER_NAME
+                    },
+                    BookEntry._ID + "=?",
+                    idArgs,
+                    null,
+                    null,
+                    null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    continue;
+                }
+                name = cursor.getString(0);
+                supplier = cursor.getString(1);
+            } finally {
+                cursor.close();
+            }
+
+            String key = of(name, supplier);
+            long existing = findBook(database, key);
+            if (existing == -1) {
+                existing = BookArchive.findBook(database, key);
+            }
+            if (existing != -1 && existing != bookId) {
+                throw new DuplicateBookException("Book " + existing
+                        + " already has the name and supplier of book " + bookId);
+            }
+            ContentValues values = new ContentValues();
+            values.put(BookEntry.COLUMN_BOOK_DEDUPE_KEY, key);
+            database.update(BookEntry.TABLE_NAME, values, BookEntry._ID + "=?", idArgs);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.books.data;
+
+/**
+ * Exponentially weighted demand of a book, kept up to date one sale at a time.
+ *
+ * The model keeps a decayed sum of the units sold: every sale adds its units, and the sum
+ * decays with a time constant of {@link #TIME_CONSTANT_DAYS}. Dividing the sum by the time
+ * constant gives the recent daily demand, where older sales weigh exponentially less. Adding
+ * a sale only needs the previous sum and the time of the previous sale, so the sales history
+ * never has to be scanned.
+ */
+public final class DemandModel {
+    /** Time constant of the decay, in days. Sales this old weigh about a third of new ones. */
+    public static final double TIME_CONSTANT_DAYS = 28;
+
+    /** Milliseconds in one day */
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    // Only static helpers.
+    private DemandModel() {}
+
+    /**
+     * Returns the decayed units after a sale.
+     *
+     * @param decayedUnits   Decayed units after the previous sale, 0 for the first sale
+     * @param lastSaleMillis Time of the previous sale
+     * @param units          Units sold now
+     * @param nowMillis      Time of this sale
+     */
+    public static double addSale(double decayedUnits, long lastSaleMillis, int units,
+                                 long nowMillis) {
+        return decay(decayedUnits, lastSaleMillis, nowMillis) + units;
+    }
+
+    /**
+     * Returns the expected units sold per day.
+     *
+     * @param decayedUnits   Decayed units after the last sale
+     * @param lastSaleMillis Time of the last sale
+     * @param nowMillis      Time the demand is estimated for
+     */
+    public static double dailyDemand(double decayedUnits, long lastSaleMillis, long nowMillis) {
+        return decay(decayedUnits, lastSaleMillis, nowMillis) / TIME_CONSTANT_DAYS;
+    }
+
+    /**
+     * Returns the number of days the quantity on hand lasts at the given demand, or
+     * {@link Double#POSITIVE_INFINITY} if there is no demand.
+     */
+    public static double daysRemaining(int quantity, double dailyDemand) {
+        if (dailyDemand <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return quantity / dailyDemand;
+    }
+
+    /**
+     * Returns how many units to order so the stock covers the demand of the next days.
+     *
+     * @param quantity    Units on hand
+     * @param dailyDemand Expected units sold per day
+     * @param horizonDays Number of days the stock should last
+     */
+    public static int suggestedReorder(int quantity, double dailyDemand, int horizonDays) {
+        double needed = Math.ceil(dailyDemand * horizonDays);
+        return (int) Math.max(0, needed - quantity);
+    }
+
+    private static double decay(double decayedUnits, long fromMillis, long toMillis) {
+        // A clock that went backwards must not make old sales weigh more.
+        double elapsedDays = Math.max(0, toMillis - fromMillis) / MILLIS_PER_DAY;
+        return decayedUnits * Math.exp(-elapsedDays / TIME_CONSTANT_DAYS);
+    }
+}
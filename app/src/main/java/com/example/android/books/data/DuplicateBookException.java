@@ -0,0 +1,13 @@
+package com.example.android.books.data;
+
+/**
+ * Thrown by {@link BookProvider} when an update would give a book the name and supplier of
+ * another book, in the catalog or archived.
+ */
+public class DuplicateBookException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public DuplicateBookException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.android.books.data;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative IDs, with fast intersection, union and difference.
+ *
+ * The IDs are split into chunks of 65536 by their upper 16 bits. A chunk holding few IDs
+ * keeps their lower 16 bits as a sorted array, two bytes per ID; a chunk holding more than
+ * {@link #ARRAY_MAX} keeps a plain bitmap of 8 KB instead, which is smaller from then on.
+ * Chunks without IDs take no space. Combining two sets works chunk by chunk and word by word,
+ * so it costs about the size of the sets, not the range of their IDs.
+ *
+ * Not thread safe.
+ */
+final class IdBitmap {
+    /** Most IDs a chunk keeps as an array */
+    static final int ARRAY_MAX = 4096;
+
+    /** Words of the bitmap of a full chunk */
+    private static final int CHUNK_WORDS = 1 << 16 >>> 6;
+
+    /** Upper 16 bits of the IDs of each chunk, ascending */
+    private int[] mKeys = new int[0];
+
+    /** The chunks, in the order of their keys */
+    private Chunk[] mChunks = new Chunk[0];
+
+    /** Number of chunks in use */
+    private int mCount;
+
+    /**
+     * Returns a set of the given IDs.
+     */
+    static IdBitmap of(int... ids) {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Add the ID to the set.
+     *
+     * @throws IllegalArgumentException if the ID is negative
+     */
+    void add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative ID " + id);
+        }
+        int index = indexOf(id >>> 16);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, id >>> 16, new Chunk());
+        }
+        mChunks[index].add((char) id);
+    }
+
+    /**
+     * Remove the ID from the set, if it is in it.
+     */
+    void remove(int id) {
+        int index = id < 0 ? -1 : indexOf(id >>> 16);
+        if (index >= 0) {
+            Chunk chunk = mChunks[index];
+            chunk.remove((char) id);
+            if (chunk.mSize == 0) {
+                removeChunk(index);
+            }
+        }
+    }
+
+    boolean contains(int id) {
+        int index = id < 0 ? -1 : indexOf(id >>> 16);
+        return index >= 0 && mChunks[index].contains((char) id);
+    }
+
+    /**
+     * Returns the number of IDs in the set.
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < mCount; i++) {
+            cardinality += mChunks[i].mSize;
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * Returns the IDs in ascending order.
+     */
+    int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int next = 0;
+        for (int i = 0; i < mCount; i++) {
+            next = mChunks[i].copyTo(mKeys[i] << 16, ids, next);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a new set of the IDs in both sets.
+     */
+    IdBitmap and(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < mCount && j < other.mCount) {
+            if (mKeys[i] < other.mKeys[j]) {
+                i++;
+            } else if (mKeys[i] > other.mKeys[j]) {
+                j++;
+            } else {
+                result.appendChunk(mKeys[i], Chunk.and(mChunks[i], other.mChunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set of the IDs in either set.
+     */
+    IdBitmap or(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < mCount || j < other.mCount) {
+            if (j == other.mCount || (i < mCount && mKeys[i] < other.mKeys[j])) {
+                result.appendChunk(mKeys[i], mChunks[i].copy());
+                i++;
+            } else if (i == mCount || mKeys[i] > other.mKeys[j]) {
+                result.appendChunk(other.mKeys[j], other.mChunks[j].copy());
+                j++;
+            } else {
+                result.appendChunk(mKeys[i], Chunk.or(mChunks[i], other.mChunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set of the IDs in this set but not in the other.
+     */
+    IdBitmap andNot(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int j = 0;
+        for (int i = 0; i < mCount; i++) {
+            while (j < other.mCount && other.mKeys[j] < mKeys[i]) {
+                j++;
+            }
+            if (j < other.mCount && other.mKeys[j] == mKeys[i]) {
+                result.appendChunk(mKeys[i], Chunk.andNot(mChunks[i], other.mChunks[j]));
+            } else {
+                result.appendChunk(mKeys[i], mChunks[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of chunks kept as bitmaps rather than arrays.
+     */
+    int bitmapChunkCount() {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mChunks[i].mBits != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(mKeys, 0, mCount, key);
+    }
+
+    private void insertChunk(int index, int key, Chunk chunk) {
+        if (mCount == mKeys.length) {
+            int capacity = Math.max(4, mCount * 2);
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mChunks = Arrays.copyOf(mChunks, capacity);
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mCount - index);
+        System.arraycopy(mChunks, index, mChunks, index + 1, mCount - index);
+        mKeys[index] = key;
+        mChunks[index] = chunk;
+        mCount++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(mKeys, index + 1, mKeys, index, mCount - index - 1);
+        System.arraycopy(mChunks, index + 1, mChunks, index, mCount - index - 1);
+        mChunks[--mCount] = null;
+    }
+
+    /** Adds a chunk after all others, unless it is empty */
+    private void appendChunk(int key, Chunk chunk) {
+        if (chunk.mSize > 0) {
+            insertChunk(mCount, key, chunk);
+        }
+    }
+
+    /**
+     * The lower 16 bits of the IDs of one chunk: a sorted array while there are at most
+     * {@link #ARRAY_MAX}, a bitmap beyond that.
+     */
+    private static final class Chunk {
+        /** Sorted values, if the chunk is an array */
+        char[] mValues;
+
+        /** Bits of the values, if the chunk is a bitmap */
+        long[] mBits;
+
+        /** Number of values */
+        int mSize;
+
+        Chunk() {
+            mValues = new char[4];
+        }
+
+        private Chunk(char[] values, long[] bits, int size) {
+            mValues = values;
+            mBits = bits;
+            mSize = size;
+        }
+
+        void add(char value) {
+            if (mBits != null) {
+                if (!testBit(mBits, value)) {
+                    mBits[value >>> 6] |= 1L << value;
+                    mSize++;
+                }
+                return;
+            }
+            int index = Arrays.binarySearch(mValues, 0, mSize, value);
+            if (index >= 0) {
+                return;
+            }
+            if (mSize == ARRAY_MAX) {
+                mBits = toBits();
+                mValues = null;
+                add(value);
+                return;
+            }
+            index = -index - 1;
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, Math.min(ARRAY_MAX, mSize * 2));
+            }
+            System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+            mValues[index] = value;
+            mSize++;
+        }
+
+        void remove(char value) {
+            if (mBits != null) {
+                if (testBit(mBits, value)) {
+                    mBits[value >>> 6] &= ~(1L << value);
+                    mSize--;
+                    if (mSize <= ARRAY_MAX) {
+                        mValues = toValues(mBits, mSize);
+                        mBits = null;
+                    }
+                }
+                return;
+            }
+            int index = Arrays.binarySearch(mValues, 0, mSize, value);
+            if (index >= 0) {
+                System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+                mSize--;
+            }
+        }
+
+        boolean contains(char value) {
+            return mBits != null
+                    ? testBit(mBits, value)
+                    : Arrays.binarySearch(mValues, 0, mSize, value) >= 0;
+        }
+
+        int copyTo(int base, int[] ids, int next) {
+            if (mBits == null) {
+                for (int i = 0; i < mSize; i++) {
+                    ids[next++] = base | mValues[i];
+                }
+                return next;
+            }
+            for (int word = 0; word < CHUNK_WORDS; word++) {
+                long bits = mBits[word];
+                while (bits != 0) {
+                    ids[next++] = base | (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            return next;
+        }
+
+        Chunk copy() {
+            return new Chunk(mValues == null ? null : Arrays.copyOf(mValues, mSize),
+                    mBits == null ? null : mBits.clone(), mSize);
+        }
+
+        /** Returns the bits of the chunk, a new array even if it already is a bitmap */
+        long[] toBits() {
+            if (mBits != null) {
+                return mBits.clone();
+            }
+            long[] bits = new long[CHUNK_WORDS];
+            for (int i = 0; i < mSize; i++) {
+                bits[mValues[i] >>> 6] |= 1L << mValues[i];
+            }
+            return bits;
+        }
+
+        static Chunk and(Chunk a, Chunk b) {
+            if (a.mBits == null || b.mBits == null) {
+                // Only the values of the array can be in the result, look each one up.
+                Chunk array = a.mBits == null ? a : b;
+                Chunk other = array == a ? b : a;
+                char[] values = new char[array.mSize];
+                int size = 0;
+                for (int i = 0; i < array.mSize; i++) {
+                    if (other.contains(array.mValues[i])) {
+                        values[size++] = array.mValues[i];
+                    }
+                }
+                return new Chunk(values, null, size);
+            }
+            long[] bits = new long[CHUNK_WORDS];
+            for (int word = 0; word < CHUNK_WORDS; word++) {
+                bits[word] = a.mBits[word] & b.mBits[word];
+            }
+            return fromBits(bits);
+        }
+
+        static Chunk or(Chunk a, Chunk b) {
+            if (a.mBits == null && b.mBits == null && a.mSize + b.mSize <= ARRAY_MAX) {
+                char[] values = new char[a.mSize + b.mSize];
+                int size = 0;
+                int i = 0;
+                int j = 0;
+                while (i < a.mSize || j < b.mSize) {
+                    if (j == b.mSize || (i < a.mSize && a.mValues[i] < b.mValues[j])) {
+                        values[size++] = a.mValues[i++];
+                    } else if (i == a.mSize || a.mValues[i] > b.mValues[j]) {
+                        values[size++] = b.mValues[j++];
+                    } else {
+                        values[size++] = a.mValues[i++];
+                        j++;
+                    }
+                }
+                return new Chunk(values, null, size);
+            }
+            long[] bits = a.toBits();
+            if (b.mBits != null) {
+                for (int word = 0; word < CHUNK_WORDS; word++) {
+                    bits[word] |= b.mBits[word];
+                }
+            } else {
+                for (int i = 0; i < b.mSize; i++) {
+                    bits[b.mValues[i] >>> 6] |= 1L << b.mValues[i];
+                }
+            }
+            return fromBits(bits);
+        }
+
+        static Chunk andNot(Chunk a, Chunk b) {
+            if (a.mBits == null) {
+                char[] values = new char[a.mSize];
+                int size = 0;
+                for (int i = 0; i < a.mSize; i++) {
+                    if (!b.contains(a.mValues[i])) {
+                        values[size++] = a.mValues[i];
+                    }
+                }
+                return new Chunk(values, null, size);
+            }
+            long[] bits = a.mBits.clone();
+            if (b.mBits != null) {
+                for (int word = 0; word < CHUNK_WORDS; word++) {
+                    bits[word] &= ~b.mBits[word];
+                }
+            } else {
+                for (int i = 0; i < b.mSize; i++) {
+                    bits[b.mValues[i] >>> 6] &= ~(1L << b.mValues[i]);
+                }
+            }
+            return fromBits(bits);
+        }
+
+        /** Returns a chunk of the bits, as an array if there are few enough */
+        private static Chunk fromBits(long[] bits) {
+            int size = 0;
+            for (long word : bits) {
+                size += Long.bitCount(word);
+            }
+            return size > ARRAY_MAX
+                    ? new Chunk(null, bits, size)
+                    : new Chunk(toValues(bits, size), null, size);
+        }
+
+        private static char[] toValues(long[] bits, int size) {
+            char[] values = new char[Math.max(4, size)];
+            int next = 0;
+            for (int word = 0; word < CHUNK_WORDS; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    values[next++] = (char) ((word << 6) | Long.numberOfTrailingZeros(remaining));
+                    remaining &= remaining - 1;
+                }
+            }
+            return values;
+        }
+
+        private static boolean testBit(long[] bits, char value) {
+            return (bits[value >>> 6] & (1L << value)) != 0;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.android.books.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookStockEntry;
+import com.example.android.books.data.BookContract.LocationEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the quantities per location.
+ *
+ * The quantity of a book at a location is one row keyed by (location, book), so the catalog
+ * of a location is a range of the primary key. The total over all locations stays in the
+ * books table, updated together with the rows here, so reading a total is never a sum.
+ *
+ * The write methods must be called inside the transaction of the change they record.
+ */
+final class LocationStock {
+    /** Prefix of the columns of the books table in the joined location catalog */
+    private static final String BOOKS_PREFIX = BookEntry.TABLE_NAME + ".";
+
+    /** Prefix of the columns of the quantities table in the joined location catalog */
+    private static final String STOCK_PREFIX = BookStockEntry.TABLE_NAME + ".";
+
+    /** The books of a location, with their details */
+    private static final String CATALOG_TABLES = BookStockEntry.TABLE_NAME + " JOIN "
+            + BookEntry.TABLE_NAME + " ON " + BOOKS_PREFIX + BookEntry._ID + " = "
+            + STOCK_PREFIX + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID;
+
+    /** The locations of a book, with their names */
+    private static final String BOOK_LOCATIONS_TABLES = BookStockEntry.TABLE_NAME + " JOIN "
+            + LocationEntry.TABLE_NAME + " ON " + LocationEntry.TABLE_NAME + "."
+            + LocationEntry._ID + " = " + STOCK_PREFIX
+            + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID;
+
+    /**
+     * Book columns of the location catalog. The quantity is the one at the location, every
+     * other column comes from the books table.
+     */
+    private static final Map<String, String> CATALOG_PROJECTION_MAP = new HashMap<>();
+
+    static {
+        String[] bookColumns = {
+                BookEntry._ID,
+                BookEntry.COLUMN_BOOK_PRODUCT_NAME,
+                BookEntry.COLUMN_BOOK_PRICE,
+                BookEntry.COLUMN_BOOK_SUPPLIER_NAME,
+                BookEntry.COLUMN_BOOK_SUPPLIER_PHONE_NUMBER,
+                BookEntry.COLUMN_BOOK_COVER_PATH,
+                BookEntry.COLUMN_BOOK_VERSION,
+                BookEntry.COLUMN_BOOK_REORDER_THRESHOLD,
+                BookEntry.COLUMN_BOOK_LOW_SINCE
+        };
+        for (String column : bookColumns) {
+            CATALOG_PROJECTION_MAP.put(column, BOOKS_PREFIX + column + " AS " + column);
+        }
+        CATALOG_PROJECTION_MAP.put(BookEntry.COLUMN_BOOK_QUANTITY,
+                STOCK_PREFIX + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + " AS "
+                        + BookEntry.COLUMN_BOOK_QUANTITY);
+    }
+
+    /** Columns of the locations of a book */
+    private static final String[] BOOK_LOCATIONS_COLUMNS = {
+            LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " AS " + LocationEntry._ID,
+            LocationEntry.COLUMN_LOCATION_NAME,
+            BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY
+    };
+
+    // Only static helpers.
+    private LocationStock() {}
+
+    /**
+     * Put the initial quantity of a new book at the default location.
+     */
+    static void recordNewBook(SQLiteDatabase database, long bookId, int quantity) {
+        writeQuantity(database, LocationEntry.DEFAULT_LOCATION_ID, bookId, quantity);
+    }
+
+    /**
+     * Returns the quantity of the book at the location, 0 if it has none there.
+     */
+    static int quantityAt(SQLiteDatabase database, long locationId, long bookId) {
+        return (int) DatabaseUtils.longForQuery(database,
+                "SELECT COALESCE(MAX(" + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + "), 0)"
+                        + " FROM " + BookStockEntry.TABLE_NAME
+                        + " WHERE " + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + "=?"
+                        + " AND " + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + "=?",
+                new String[] { String.valueOf(locationId), String.valueOf(bookId) });
+    }
+
+    /**
+     * Change the quantity of the book at the location by the delta. The caller changes the
+     * book's total by the same delta.
+     *
+     * @throws IllegalArgumentException if the location doesn't exist or doesn't hold enough
+     *                                  units for a decrease
+     */
+    static void applyDelta(SQLiteDatabase database, long locationId, long bookId, int delta) {
+        checkLocation(database, locationId);
+        int quantity = quantityAt(database, locationId, bookId);
+        if (quantity + delta < 0) {
+            throw new IllegalArgumentException("Location " + locationId + " holds only "
+                    + quantity + " units of book " + bookId);
+        }
+        writeQuantity(database, locationId, bookId, quantity + delta);
+    }
+
+    /**
+     * Change the quantity of the book by the delta where the caller didn't name a location,
+     * and only knows the book's total over all of them. An increase goes to the default
+     * location. A decrease takes the units from the default location first, then from the
+     * other locations in the order they were added.
+     *
+     * @throws IllegalArgumentException if the locations together don't hold enough units
+     */
+    static void applyTotalDelta(SQLiteDatabase database, long bookId, int delta) {
+        if (delta >= 0) {
+            applyDelta(database, LocationEntry.DEFAULT_LOCATION_ID, bookId, delta);
+            return;
+        }
+        // Read all the locations first, the writes below would move the cursor's rows.
+        long[] locationIds;
+        int[] quantities;
+        Cursor cursor = database.query(BookStockEntry.TABLE_NAME,
+                new String[] {
+                        BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID,
+                        BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY
+                },
+                BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + "=? AND "
+                        + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + ">0",
+                new String[] { String.valueOf(bookId) },
+                null,
+                null,
+                BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + "!="
+                        + LocationEntry.DEFAULT_LOCATION_ID + ", "
+                        + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID);
+        try {
+            locationIds = new long[cursor.getCount()];
+            quantities = new int[locationIds.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                locationIds[i] = cursor.getLong(0);
+                quantities[i] = cursor.getInt(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int remaining = -delta;
+        for (int i = 0; i < locationIds.length && remaining > 0; i++) {
+            int taken = Math.min(remaining, quantities[i]);
+            writeQuantity(database, locationIds[i], bookId, quantities[i] - taken);
+            remaining -= taken;
+        }
+        if (remaining > 0) {
+            throw new IllegalArgumentException("Locations hold only " + (-delta - remaining)
+                    + " units of book " + bookId);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the location doesn't exist
+     */
+    static void checkLocation(SQLiteDatabase database, long locationId) {
+        if (DatabaseUtils.queryNumEntries(database, LocationEntry.TABLE_NAME,
+                LocationEntry._ID + "=?", new String[] { String.valueOf(locationId) }) == 0) {
+            throw new IllegalArgumentException("Unknown location " + locationId);
+        }
+    }
+
+    /**
+     * Returns the total units held at the location.
+     */
+    static long unitsAt(SQLiteDatabase database, long locationId) {
+        return DatabaseUtils.longForQuery(database,
+                "SELECT COALESCE(SUM(" + BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY + "), 0)"
+                        + " FROM " + BookStockEntry.TABLE_NAME
+                        + " WHERE " + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + "=?",
+                new String[] { String.valueOf(locationId) });
+    }
+
+    /**
+     * Query the books at the location, with the columns of the books table and the quantity
+     * at the location.
+     *
+     * @param projection Book columns to return, or null for all of them
+     * @param selection  Optional filter on the books, in terms of book columns
+     */
+    static Cursor queryCatalog(SQLiteDatabase database, long locationId, String[] projection,
+                               String selection, String[] selectionArgs, String sortOrder) {
+        String[] args = DatabaseUtils.appendSelectionArgs(
+                new String[] { String.valueOf(locationId) }, selectionArgs);
+        if (QueryPlanChecker.isEnabled()) {
+            QueryPlanChecker.check(database, buildCatalogQueryString(projection, selection,
+                    sortOrder));
+        }
+        return newCatalogBuilder().query(database, projection, selection, args, null, null,
+                sortOrder);
+    }
+
+    /**
+     * Returns the SQL {@link #queryCatalog} runs for the same arguments.
+     */
+    static String buildCatalogQueryString(String[] projection, String selection,
+                                          String sortOrder) {
+        return newCatalogBuilder().buildQuery(projection, selection, null, null, sortOrder,
+                null);
+    }
+
+    private static SQLiteQueryBuilder newCatalogBuilder() {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(CATALOG_TABLES);
+        builder.setProjectionMap(CATALOG_PROJECTION_MAP);
+        builder.setStrict(true);
+        // The location comes first in the WHERE clause, so its argument is bound before the
+        // caller's.
+        builder.appendWhere(STOCK_PREFIX + BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID + "=?");
+        return builder;
+    }
+
+    /**
+     * Query the locations holding the book, by location name.
+     */
+    static Cursor queryBookLocations(SQLiteDatabase database, long bookId) {
+        return database.query(BOOK_LOCATIONS_TABLES,
+                BOOK_LOCATIONS_COLUMNS,
+                STOCK_PREFIX + BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID + "=?",
+                new String[] { String.valueOf(bookId) },
+                null,
+                null,
+                LocationEntry.COLUMN_LOCATION_NAME);
+    }
+
+    private static void writeQuantity(SQLiteDatabase database, long locationId, long bookId,
+                                      int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(BookStockEntry.COLUMN_BOOK_STOCK_LOCATION_ID, locationId);
+        values.put(BookStockEntry.COLUMN_BOOK_STOCK_BOOK_ID, bookId);
+        values.put(BookStockEntry.COLUMN_BOOK_STOCK_QUANTITY, quantity);
+        database.insertWithOnConflict(BookStockEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
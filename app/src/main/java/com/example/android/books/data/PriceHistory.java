@@ -0,0 +1,151 @@
+package com.example.android.books.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.books.data.BookContract.PriceEntry;
+import com.example.android.books.data.BookContract.PriceHistoryEntry;
+import com.example.android.books.data.BookContract.PriceRollupEntry;
+
+/**
+ * Writes and reads the price history of the books.
+ *
+ * Every price change is appended to the history and folded into the rollup of its day and
+ * of its month right away, so the rollups never need to be rebuilt from the history. A chart
+ * reads whichever of the three is the coarsest one that still shows the detail it can draw,
+ * see {@link PriceResolution#pickLevel(long)}.
+ *
+ * The write methods must be called inside the transaction of the change they record.
+ */
+final class PriceHistory {
+    /** Levels of the rollups kept for every change */
+    private static final int[] ROLLUP_LEVELS = { PriceEntry.LEVEL_DAY, PriceEntry.LEVEL_MONTH };
+
+    /** Folds a change into an existing period */
+    private static final String ROLLUP_UPDATE = "UPDATE " + PriceRollupEntry.TABLE_NAME
+            + " SET " + PriceRollupEntry.COLUMN_ROLLUP_HIGH + " = MAX("
+            + PriceRollupEntry.COLUMN_ROLLUP_HIGH + ", ?), "
+            + PriceRollupEntry.COLUMN_ROLLUP_LOW + " = MIN("
+            + PriceRollupEntry.COLUMN_ROLLUP_LOW + ", ?), "
+            + PriceRollupEntry.COLUMN_ROLLUP_CLOSE + " = ?, "
+            + PriceRollupEntry.COLUMN_ROLLUP_CHANGES + " = "
+            + PriceRollupEntry.COLUMN_ROLLUP_CHANGES + " + 1"
+            + " WHERE " + PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID + "=?"
+            + " AND " + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + "=?"
+            + " AND " + PriceRollupEntry.COLUMN_ROLLUP_START + "=?";
+
+    /** The chart points of one book and level in a time range, in time order */
+    private static final String ROLLUP_QUERY = "SELECT "
+            + PriceRollupEntry.COLUMN_ROLLUP_START + " AS " + PriceEntry.COLUMN_PRICE_AT + ", "
+            + PriceRollupEntry.COLUMN_ROLLUP_OPEN + " AS " + PriceEntry.COLUMN_PRICE_OPEN + ", "
+            + PriceRollupEntry.COLUMN_ROLLUP_HIGH + " AS " + PriceEntry.COLUMN_PRICE_HIGH + ", "
+            + PriceRollupEntry.COLUMN_ROLLUP_LOW + " AS " + PriceEntry.COLUMN_PRICE_LOW + ", "
+            + PriceRollupEntry.COLUMN_ROLLUP_CLOSE + " AS " + PriceEntry.COLUMN_PRICE_CLOSE + ", "
+            + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + " AS " + PriceEntry.COLUMN_PRICE_LEVEL
+            + " FROM " + PriceRollupEntry.TABLE_NAME
+            + " WHERE " + PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID + "=?"
+            + " AND " + PriceRollupEntry.COLUMN_ROLLUP_LEVEL + "=?"
+            + " AND " + PriceRollupEntry.COLUMN_ROLLUP_START + " BETWEEN ? AND ?"
+            + " ORDER BY " + PriceRollupEntry.COLUMN_ROLLUP_START;
+
+    /** The single changes of one book in a time range, in time order */
+    private static final String RAW_QUERY = "SELECT "
+            + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME + " AS " + PriceEntry.COLUMN_PRICE_AT
+            + ", " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + " AS "
+            + PriceEntry.COLUMN_PRICE_OPEN
+            + ", " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + " AS "
+            + PriceEntry.COLUMN_PRICE_HIGH
+            + ", " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + " AS "
+            + PriceEntry.COLUMN_PRICE_LOW
+            + ", " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE + " AS "
+            + PriceEntry.COLUMN_PRICE_CLOSE
+            + ", " + PriceEntry.LEVEL_RAW + " AS " + PriceEntry.COLUMN_PRICE_LEVEL
+            + " FROM " + PriceHistoryEntry.TABLE_NAME
+            + " WHERE " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID + "=?"
+            + " AND " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME + " BETWEEN ? AND ?"
+            + " ORDER BY " + PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME;
+
+    // Only static helpers.
+    private PriceHistory() {}
+
+    /**
+     * Record the first price of a new book.
+     */
+    static void recordNewBook(SQLiteDatabase database, long bookId, int price, long now) {
+        recordChange(database, bookId, price, price, now);
+    }
+
+    /**
+     * Append a price change to the history and fold it into the rollups of its day and month.
+     *
+     * @param oldPrice Price before the change, which opens a period without earlier changes
+     */
+    static void recordChange(SQLiteDatabase database, long bookId, int oldPrice, int newPrice,
+                             long now) {
+        ContentValues change = new ContentValues();
+        change.put(PriceHistoryEntry.COLUMN_PRICE_HISTORY_BOOK_ID, bookId);
+        change.put(PriceHistoryEntry.COLUMN_PRICE_HISTORY_TIME, now);
+        change.put(PriceHistoryEntry.COLUMN_PRICE_HISTORY_PRICE, newPrice);
+        database.insertOrThrow(PriceHistoryEntry.TABLE_NAME, null, change);
+
+        for (int level : ROLLUP_LEVELS) {
+            long start = PriceResolution.periodStart(level, now);
+            // SQLite on older devices has no upsert, so try the update first and insert
+            // the period only if it doesn't exist yet.
+            SQLiteStatement update = database.compileStatement(ROLLUP_UPDATE);
+            int updated;
+            try {
+                update.bindLong(1, newPrice);
+                update.bindLong(2, newPrice);
+                update.bindLong(3, newPrice);
+                update.bindLong(4, bookId);
+                update.bindLong(5, level);
+                update.bindLong(6, start);
+                updated = update.executeUpdateDelete();
+            } finally {
+                update.close();
+            }
+            if (updated == 0) {
+                ContentValues rollup = new ContentValues();
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_BOOK_ID, bookId);
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_LEVEL, level);
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_START, start);
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_OPEN, oldPrice);
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_HIGH, Math.max(oldPrice, newPrice));
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_LOW, Math.min(oldPrice, newPrice));
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_CLOSE, newPrice);
+                rollup.put(PriceRollupEntry.COLUMN_ROLLUP_CHANGES, 1);
+                database.insertOrThrow(PriceRollupEntry.TABLE_NAME, null, rollup);
+            }
+        }
+    }
+
+    /**
+     * Query the chart points of the book in the time range, at the level picked for the
+     * resolution.
+     */
+    static Cursor queryChart(SQLiteDatabase database, long bookId, long fromMillis,
+                             long toMillis, long resolutionMillis) {
+        int level = PriceResolution.pickLevel(resolutionMillis);
+        if (level == PriceEntry.LEVEL_RAW) {
+            return database.rawQuery(RAW_QUERY, new String[] {
+                    String.valueOf(bookId), String.valueOf(fromMillis), String.valueOf(toMillis)
+            });
+        }
+        // The period containing the start of the range is part of the chart too.
+        long from = PriceResolution.periodStart(level, fromMillis);
+        return database.rawQuery(ROLLUP_QUERY, new String[] {
+                String.valueOf(bookId), String.valueOf(level), String.valueOf(from),
+                String.valueOf(toMillis)
+        });
+    }
+
+    /**
+     * Returns the SQL {@link #queryChart} runs at the level.
+     */
+    static String getChartQueryString(int level) {
+        return level == PriceEntry.LEVEL_RAW ? RAW_QUERY : ROLLUP_QUERY;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.android.books.data;
+
+import com.example.android.books.data.BookContract.PriceEntry;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Picks the level of a price chart and the periods of the rollups.
+ *
+ * Periods are days and calendar months in UTC, so the stored rollups don't depend on the
+ * time zone the device happened to be in when a price changed.
+ */
+final class PriceResolution {
+    /** Milliseconds in one day */
+    static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** Milliseconds in the shortest month, so a month is only picked if every month fits */
+    static final long MONTH_MILLIS = 28 * DAY_MILLIS;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // Only static helpers.
+    private PriceResolution() {}
+
+    /**
+     * Returns the coarsest level whose periods are no longer than the resolution, so a chart
+     * reads as few rows as possible without losing detail it could draw.
+     *
+     * @param resolutionMillis Time one point of the chart stands for
+     */
+    static int pickLevel(long resolutionMillis) {
+        if (resolutionMillis >= MONTH_MILLIS) {
+            return PriceEntry.LEVEL_MONTH;
+        }
+        if (resolutionMillis >= DAY_MILLIS) {
+            return PriceEntry.LEVEL_DAY;
+        }
+        return PriceEntry.LEVEL_RAW;
+    }
+
+    /**
+     * Returns the resolution of a chart of the given length drawn with
+     * {@link PriceEntry#DEFAULT_POINTS} points.
+     */
+    static long defaultResolution(long fromMillis, long toMillis) {
+        return Math.max(0, toMillis - fromMillis) / PriceEntry.DEFAULT_POINTS;
+    }
+
+    /**
+     * Returns the start of the day or month of the level that contains the time.
+     *
+     * @throws IllegalArgumentException for {@link PriceEntry#LEVEL_RAW}, which has no periods
+     */
+    static long periodStart(int level, long millis) {
+        switch (level) {
+            case PriceEntry.LEVEL_DAY:
+                // Rounds down before 1970 too.
+                return millis - ((millis % DAY_MILLIS) + DAY_MILLIS) % DAY_MILLIS;
+            case PriceEntry.LEVEL_MONTH:
+                Calendar calendar = Calendar.getInstance(UTC);
+                calendar.setTimeInMillis(millis);
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                return calendar.getTimeInMillis();
+            default:
+                throw new IllegalArgumentException("Level " + level + " has no periods");
+        }
+    }
+}
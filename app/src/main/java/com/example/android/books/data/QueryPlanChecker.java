@@ -0,0 +1,201 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Looks at the query plan of every distinct query the provider runs, in debug builds.
+ *
+ * A query shape is its SQL with the arguments left as placeholders, so each shape is
+ * explained once and its plan cached. Plans that scan a whole table, or sort through a
+ * temporary b-tree, are logged once the tables involved hold more rows than the size
+ * threshold; small tables are cheap to scan either way.
+ *
+ * The checker is off by default. Debug builds switch it on.
+ */
+public final class QueryPlanChecker {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = QueryPlanChecker.class.getSimpleName();
+
+    /** Row count above which a scan or temporary sort of a table is reported */
+    public static final long DEFAULT_TABLE_SIZE_THRESHOLD = 1000;
+
+    /**
+     * A full table scan. Older SQLite versions write "SCAN TABLE books", newer ones
+     * "SCAN books"; a scan through an index names it after "USING". Subqueries and
+     * constant rows aren't tables.
+     */
+    private static final Pattern TABLE_STEP = Pattern.compile(
+            "^(SCAN|SEARCH) (?:TABLE )?(?!SUBQUERY\\b|CONSTANT ROW)(\\w+)(?: AS \\w+)?(.*)$");
+
+    /** A sort that SQLite can't take from an index */
+    private static final String TEMP_B_TREE = "USE TEMP B-TREE";
+
+    /**
+     * The explained plan of one query shape.
+     */
+    public static final class Plan {
+        /** The SQL of the query */
+        public final String sql;
+        /** The detail lines of EXPLAIN QUERY PLAN, in order */
+        public final List<String> details;
+        /** The lines that scan or sort a table above the size threshold */
+        public final List<String> problems;
+
+        Plan(String sql, List<String> details, List<String> problems) {
+            this.sql = sql;
+            this.details = Collections.unmodifiableList(details);
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        @Override
+        public String toString() {
+            return sql + " -> " + details;
+        }
+    }
+
+    private static volatile boolean sEnabled;
+    private static volatile long sTableSizeThreshold = DEFAULT_TABLE_SIZE_THRESHOLD;
+    private static final Map<String, Plan> sPlans = new ConcurrentHashMap<>();
+
+    // Only static helpers.
+    private QueryPlanChecker() {}
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Set the row count above which scans and temporary sorts are reported.
+     */
+    public static void setTableSizeThreshold(long rows) {
+        sTableSizeThreshold = rows;
+    }
+
+    /**
+     * Explain the query unless its shape was seen before, and log the plan if it scans or
+     * sorts a large table. Does nothing while the checker is off.
+     *
+     * @param sql The SQL of the query, with placeholders for the arguments
+     */
+    static void check(SQLiteDatabase database, String sql) {
+        if (!sEnabled || sPlans.containsKey(sql)) {
+            return;
+        }
+        try {
+            sPlans.put(sql, explainAndReport(database, sql));
+        } catch (RuntimeException e) {
+            // A debugging aid must never break the query it looks at.
+            Log.w(LOG_TAG, "Failed to explain " + sql, e);
+        }
+    }
+
+    private static Plan explainAndReport(SQLiteDatabase database, String sql) {
+        List<String> details = explain(database, sql);
+        List<String> problems = new ArrayList<>();
+        Map<String, Long> tableSizes = new HashMap<>();
+        long largestTable = 0;
+        for (String detail : details) {
+            String table = tableOf(detail);
+            if (table != null && !tableSizes.containsKey(table)) {
+                long size = DatabaseUtils.queryNumEntries(database, table);
+                tableSizes.put(table, size);
+                largestTable = Math.max(largestTable, size);
+            }
+        }
+        long threshold = sTableSizeThreshold;
+        for (String detail : findProblems(details)) {
+            String table = tableOf(detail);
+            long size = table != null ? tableSizes.get(table) : largestTable;
+            if (size > threshold) {
+                problems.add(detail);
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            Log.w(LOG_TAG, "Unindexed query plan " + problems + " for " + sql);
+        }
+        return new Plan(sql, details, problems);
+    }
+
+    /**
+     * Returns the detail lines of the query plan of the SQL.
+     *
+     * @param sql The SQL of the query, with placeholders for the arguments
+     */
+    public static List<String> explain(SQLiteDatabase database, String sql) {
+        List<String> details = new ArrayList<>();
+        // Placeholders are left unbound, the plan doesn't depend on their values.
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailColumn));
+            }
+        } finally {
+            cursor.close();
+        }
+        return details;
+    }
+
+    /**
+     * Returns the plan lines that scan a whole table or sort through a temporary b-tree,
+     * regardless of the table sizes.
+     */
+    public static List<String> findProblems(List<String> details) {
+        List<String> problems = new ArrayList<>();
+        for (String detail : details) {
+            if (detail.startsWith(TEMP_B_TREE) || isTableScan(detail)) {
+                problems.add(detail);
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Returns whether the plan line reads every row of a table without an index.
+     */
+    static boolean isTableScan(String detail) {
+        Matcher matcher = TABLE_STEP.matcher(detail);
+        return matcher.matches() && matcher.group(1).equals("SCAN")
+                && !matcher.group(3).contains("INDEX")
+                && !matcher.group(3).contains("INTEGER PRIMARY KEY");
+    }
+
+    /**
+     * Returns the table a plan line reads, or null if it doesn't read a table.
+     */
+    static String tableOf(String detail) {
+        Matcher matcher = TABLE_STEP.matcher(detail);
+        return matcher.matches() ? matcher.group(2) : null;
+    }
+
+    /**
+     * Returns the plans explained so far, by SQL.
+     */
+    public static Map<String, Plan> getPlans() {
+        return Collections.unmodifiableMap(sPlans);
+    }
+
+    /**
+     * Forget the cached plans, for tests.
+     */
+    public static void reset() {
+        sPlans.clear();
+    }
+}
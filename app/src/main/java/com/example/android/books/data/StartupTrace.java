@@ -0,0 +1,124 @@
+package com.example.android.books.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Trace points of a cold start, from process start to the first catalog row on screen.
+ *
+ * Each trace point is recorded once per process, the first time it is reached. Durations and
+ * completion times are kept in memory so tests and debug screens can read them back.
+ */
+public final class StartupTrace {
+    /** Creation of {@link BookProvider} */
+    public static final String PROVIDER_CREATE = "provider_create";
+
+    /** Opening (and if needed creating or upgrading) the database */
+    public static final String DATABASE_OPEN = "database_open";
+
+    /** The background warm-up of the database, see {@link DatabaseWarmUp} */
+    public static final String WARM_UP = "warm_up";
+
+    /** The first query served by {@link BookProvider}, the warm-up doesn't go through it */
+    public static final String FIRST_QUERY = "first_query";
+
+    /** The first catalog row bound to a list item */
+    public static final String FIRST_BIND = "first_bind";
+
+    /** Time the trace started, all completion times are relative to it */
+    private static long sStartNanos = System.nanoTime();
+
+    /** Duration of each recorded trace point, in nanoseconds */
+    private static final Map<String, Long> sDurations = new LinkedHashMap<>();
+
+    /** Completion time of each recorded trace point, in nanoseconds after the start */
+    private static final Map<String, Long> sCompletions = new LinkedHashMap<>();
+
+    // Only static helpers.
+    private StartupTrace() {}
+
+    /**
+     * Mark the start of the process. Called as early as possible by the application.
+     */
+    public static synchronized void markProcessStart() {
+        sStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the begin timestamp to pass to {@link #end(String, long)}.
+     */
+    public static long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the trace point as ending now, unless it was already recorded.
+     *
+     * @param point      One of the trace point constants of this class
+     * @param beginNanos The value returned by {@link #begin()}
+     */
+    public static synchronized void end(String point, long beginNanos) {
+        if (sDurations.containsKey(point)) {
+            return;
+        }
+        long now = System.nanoTime();
+        sDurations.put(point, now - beginNanos);
+        sCompletions.put(point, now - sStartNanos);
+    }
+
+    /**
+     * Returns true if the trace point was recorded.
+     */
+    public static synchronized boolean isRecorded(String point) {
+        return sDurations.containsKey(point);
+    }
+
+    /**
+     * Returns how long the trace point took in nanoseconds, or -1 if it wasn't recorded.
+     */
+    public static synchronized long getDurationNanos(String point) {
+        Long duration = sDurations.get(point);
+        return duration == null ? -1 : duration;
+    }
+
+    /**
+     * Returns when the trace point completed in nanoseconds after the process start,
+     * or -1 if it wasn't recorded.
+     */
+    public static synchronized long getCompletionNanos(String point) {
+        Long completion = sCompletions.get(point);
+        return completion == null ? -1 : completion;
+    }
+
+    /**
+     * Returns the cold start time to the first catalog row, or -1 if no row was bound yet.
+     */
+    public static long getTimeToFirstRowNanos() {
+        return getCompletionNanos(FIRST_BIND);
+    }
+
+    /**
+     * Returns a readable summary of the recorded trace points, for logging.
+     */
+    public static synchronized String summary() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : sDurations.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey())
+                    .append('=').append(entry.getValue() / 1000000).append("ms")
+                    .append(" @").append(sCompletions.get(entry.getKey()) / 1000000).append("ms");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Forget all recorded trace points and restart the clock. Used by tests.
+     */
+    public static synchronized void reset() {
+        sDurations.clear();
+        sCompletions.clear();
+        sStartNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.android.books.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.books.data.BookContract.MovementEntry;
+import com.example.android.books.data.BookContract.StockSnapshotEntry;
+
+/**
+ * Writes and reads the stock movement ledger.
+ *
+ * Every quantity change is appended as a movement. After every {@link #SNAPSHOT_INTERVAL}
+ * movements of a book, a snapshot of its quantity is written as well, so the quantity at any
+ * past time is the nearest earlier snapshot plus at most that many movements. Compaction
+ * anchors every book with a snapshot at the cutoff, after which everything older can go.
+ *
+ * All methods must be called inside the transaction of the change they record.
+ */
+final class StockLedger {
+    /** Number of movements of a book between two snapshots */
+    static final int SNAPSHOT_INTERVAL = 64;
+
+    // Only static helpers.
+    private StockLedger() {}
+
+    /**
+     * Returns the kind to record a quantity change as.
+     *
+     * @param kindParameter The kind given by the caller, or null to derive it from the delta
+     * @param delta         Change of the quantity
+     * @throws IllegalArgumentException if the kind is unknown or contradicts the delta, like
+     *                                  a receipt that lowers the quantity
+     */
+    static int resolveKind(String kindParameter, int delta) {
+        if (kindParameter == null) {
+            return delta < 0 ? MovementEntry.KIND_SALE : MovementEntry.KIND_RECEIPT;
+        }
+        int kind;
+        try {
+            kind = Integer.parseInt(kindParameter);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid movement kind " + kindParameter);
+        }
+        if (!MovementEntry.isValidKind(kind)) {
+            throw new IllegalArgumentException("Invalid movement kind " + kindParameter);
+        }
+        boolean outgoing = kind == MovementEntry.KIND_SALE || kind == MovementEntry.KIND_WRITE_OFF;
+        if ((kind == MovementEntry.KIND_RECEIPT && delta < 0) || (outgoing && delta > 0)) {
+            throw new IllegalArgumentException("Movement kind " + kind
+                    + " can't change the quantity by " + delta);
+        }
+        return kind;
+    }
+
+    /**
+     * Start the ledger of a new book: a snapshot of nothing, followed by the receipt of its
+     * initial quantity.
+     */
+    static void recordNewBook(SQLiteDatabase database, long bookId, int quantity, long now) {
+        insertSnapshot(database, bookId, 0, now, 0);
+        if (quantity != 0) {
+            recordMovement(database, bookId, MovementEntry.KIND_RECEIPT, quantity, quantity, now);
+        }
+    }
+
+    /**
+     * Append a movement, and a snapshot if the book is due for one.
+     *
+     * @param quantityAfter Quantity of the book after the movement
+     */
+    static void recordMovement(SQLiteDatabase database, long bookId, int kind, int delta,
+                               int quantityAfter, long now) {
+        ContentValues movement = new ContentValues();
+        movement.put(MovementEntry.COLUMN_MOVEMENT_BOOK_ID, bookId);
+        movement.put(MovementEntry.COLUMN_MOVEMENT_KIND, kind);
+        movement.put(MovementEntry.COLUMN_MOVEMENT_DELTA, delta);
+        movement.put(MovementEntry.COLUMN_MOVEMENT_TIME, now);
+        long movementId = database.insertOrThrow(MovementEntry.TABLE_NAME, null, movement);
+
+        String bookIdArg = String.valueOf(bookId);
+        long snapshotMovementId = DatabaseUtils.longForQuery(database,
+                "SELECT COALESCE(MAX(" + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + "), 0)"
+                        + " FROM " + StockSnapshotEntry.TABLE_NAME
+                        + " WHERE " + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + "=?",
+                new String[] { bookIdArg });
+        long movementsSinceSnapshot = DatabaseUtils.queryNumEntries(database,
+                MovementEntry.TABLE_NAME,
+                MovementEntry.COLUMN_MOVEMENT_BOOK_ID + "=? AND " + MovementEntry._ID + ">?",
+                new String[] { bookIdArg, String.valueOf(snapshotMovementId) });
+        if (movementsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            insertSnapshot(database, bookId, movementId, now, quantityAfter);
+        }
+    }
+
+    /**
+     * Returns the quantity the book had at the given time, or null if that is before the
+     * book's oldest snapshot.
+     */
+    static Integer quantityAt(SQLiteDatabase database, long bookId, long atMillis) {
+        String bookIdArg = String.valueOf(bookId);
+        String atArg = String.valueOf(atMillis);
+        long snapshotMovementId;
+        int snapshotQuantity;
+        Cursor cursor = database.query(StockSnapshotEntry.TABLE_NAME,
+                new String[] {
+                        StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID,
+                        StockSnapshotEntry.COLUMN_SNAPSHOT_QUANTITY
+                },
+                StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + "=? AND "
+                        + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + "<=?",
+                new String[] { bookIdArg, atArg },
+                null,
+                null,
+                StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + " DESC, "
+                        + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + " DESC",
+                "1");
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            snapshotMovementId = cursor.getLong(0);
+            snapshotQuantity = cursor.getInt(1);
+        } finally {
+            cursor.close();
+        }
+
+        long tail = DatabaseUtils.longForQuery(database,
+                "SELECT COALESCE(SUM(" + MovementEntry.COLUMN_MOVEMENT_DELTA + "), 0)"
+                        + " FROM " + MovementEntry.TABLE_NAME
+                        + " WHERE " + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + "=?"
+                        + " AND " + MovementEntry._ID + ">?"
+                        + " AND " + MovementEntry.COLUMN_MOVEMENT_TIME + "<=?",
+                new String[] { bookIdArg, String.valueOf(snapshotMovementId), atArg });
+        return (int) (snapshotQuantity + tail);
+    }
+
+    /**
+     * Fold the movements up to the given time into one snapshot per book at that time, then
+     * remove those movements and the snapshots before them. Quantities at or after the cutoff
+     * stay exact; earlier ones are no longer known.
+     *
+     * @return the number of movements removed
+     */
+    static int compact(SQLiteDatabase database, long beforeMillis) {
+        String beforeArg = String.valueOf(beforeMillis);
+        Cursor books = database.query(true, StockSnapshotEntry.TABLE_NAME,
+                new String[] { StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID },
+                StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + "<?",
+                new String[] { beforeArg },
+                null,
+                null,
+                null,
+                null);
+        try {
+            while (books.moveToNext()) {
+                long bookId = books.getLong(0);
+                long movementId = DatabaseUtils.longForQuery(database,
+                        "SELECT COALESCE(MAX(" + MovementEntry._ID + "), 0)"
+                                + " FROM " + MovementEntry.TABLE_NAME
+                                + " WHERE " + MovementEntry.COLUMN_MOVEMENT_BOOK_ID + "=?"
+                                + " AND " + MovementEntry.COLUMN_MOVEMENT_TIME + "<=?",
+                        new String[] { String.valueOf(bookId), beforeArg });
+                Integer quantity = quantityAt(database, bookId, beforeMillis);
+                if (movementId == 0) {
+                    // No movement to anchor at, keep the position of the latest snapshot.
+                    movementId = DatabaseUtils.longForQuery(database,
+                            "SELECT MAX(" + StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID + ")"
+                                    + " FROM " + StockSnapshotEntry.TABLE_NAME
+                                    + " WHERE " + StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID + "=?"
+                                    + " AND " + StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + "<?",
+                            new String[] { String.valueOf(bookId), beforeArg });
+                }
+                insertSnapshot(database, bookId, movementId, beforeMillis, quantity);
+            }
+        } finally {
+            books.close();
+        }
+
+        database.delete(StockSnapshotEntry.TABLE_NAME,
+                StockSnapshotEntry.COLUMN_SNAPSHOT_TIME + "<?", new String[] { beforeArg });
+        return database.delete(MovementEntry.TABLE_NAME,
+                MovementEntry.COLUMN_MOVEMENT_TIME + "<=?", new String[] { beforeArg });
+    }
+
+    private static void insertSnapshot(SQLiteDatabase database, long bookId, long movementId,
+                                       long takenAt, int quantity) {
+        ContentValues snapshot = new ContentValues();
+        snapshot.put(StockSnapshotEntry.COLUMN_SNAPSHOT_BOOK_ID, bookId);
+        snapshot.put(StockSnapshotEntry.COLUMN_SNAPSHOT_MOVEMENT_ID, movementId);
+        snapshot.put(StockSnapshotEntry.COLUMN_SNAPSHOT_TIME, takenAt);
+        snapshot.put(StockSnapshotEntry.COLUMN_SNAPSHOT_QUANTITY, quantity);
+        // A periodic snapshot at the same movement is replaced by the newer one.
+        database.insertWithOnConflict(StockSnapshotEntry.TABLE_NAME, null, snapshot,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.SupplierReportEntry;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the per-supplier stock report as one GROUP BY query over the books table.
+ *
+ * Every column the report reads is part of the supplier index of the database, so SQLite
+ * walks that index in supplier order and never touches the table rows. Only the final sort
+ * by an aggregate needs a temporary b-tree, over one row per supplier.
+ */
+final class SupplierReport {
+    /** Report columns and the expressions computing them */
+    private static final Map<String, String> PROJECTION_MAP = new LinkedHashMap<>();
+
+    static {
+        PROJECTION_MAP.put(SupplierReportEntry._ID,
+                "MIN(" + BookEntry._ID + ") AS " + SupplierReportEntry._ID);
+        PROJECTION_MAP.put(SupplierReportEntry.COLUMN_SUPPLIER_NAME,
+                BookEntry.COLUMN_BOOK_SUPPLIER_NAME);
+        PROJECTION_MAP.put(SupplierReportEntry.COLUMN_TITLE_COUNT,
+                "COUNT(*) AS " + SupplierReportEntry.COLUMN_TITLE_COUNT);
+        PROJECTION_MAP.put(SupplierReportEntry.COLUMN_UNITS,
+                "SUM(" + BookEntry.COLUMN_BOOK_QUANTITY + ") AS "
+                        + SupplierReportEntry.COLUMN_UNITS);
+        PROJECTION_MAP.put(SupplierReportEntry.COLUMN_STOCK_VALUE,
+                "SUM(" + BookEntry.COLUMN_BOOK_PRICE + " * " + BookEntry.COLUMN_BOOK_QUANTITY
+                        + ") AS " + SupplierReportEntry.COLUMN_STOCK_VALUE);
+        // Each book against its own threshold, unless the URI gives a reorder point
+        PROJECTION_MAP.put(SupplierReportEntry.COLUMN_BELOW_REORDER,
+                belowReorderExpression(BookEntry.COLUMN_BOOK_REORDER_THRESHOLD));
+    }
+
+    /** Sort order of the report when the caller doesn't give one */
+    static final String DEFAULT_SORT_ORDER = SupplierReportEntry.COLUMN_SUPPLIER_NAME;
+
+    // Only static helpers.
+    private SupplierReport() {}
+
+    /**
+     * Run the report for the given report URI.
+     *
+     * @param projection    Report columns to return, or null for all of them
+     * @param selection     Optional filter on the books that are summed up
+     * @param selectionArgs Arguments of the selection
+     * @param sortOrder     Comma separated report columns, each optionally followed by ASC
+     *                      or DESC, or null to sort by supplier name
+     */
+    static Cursor query(SQLiteDatabase database, Uri uri, String[] projection,
+                        String selection, String[] selectionArgs, String sortOrder) {
+        String[] args = selectionArgs;
+        int reorderPoint = getReorderPoint(uri);
+        if (reorderPoint >= 0 && (projection == null || Arrays.asList(projection)
+                .contains(SupplierReportEntry.COLUMN_BELOW_REORDER))) {
+            // The reorder point is bound as the first argument of the statement.
+            args = new String[(selectionArgs == null ? 0 : selectionArgs.length) + 1];
+            args[0] = String.valueOf(reorderPoint);
+            if (selectionArgs != null) {
+                System.arraycopy(selectionArgs, 0, args, 1, selectionArgs.length);
+            }
+        }
+
+        if (QueryPlanChecker.isEnabled()) {
+            QueryPlanChecker.check(database,
+                    buildQueryString(uri, projection, selection, sortOrder));
+        }
+        return newBuilder(uri).query(database, projection, selection, args,
+                BookEntry.COLUMN_BOOK_SUPPLIER_NAME, null,
+                checkSortOrder(sortOrder), UriParameters.getLimit(uri));
+    }
+
+    /**
+     * Returns the SQL {@link #query} runs for the same arguments.
+     */
+    static String buildQueryString(Uri uri, String[] projection, String selection,
+                                   String sortOrder) {
+        return newBuilder(uri).buildQuery(projection, selection,
+                BookEntry.COLUMN_BOOK_SUPPLIER_NAME, null,
+                checkSortOrder(sortOrder), UriParameters.getLimit(uri));
+    }
+
+    private static SQLiteQueryBuilder newBuilder(Uri uri) {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(BookEntry.TABLE_NAME);
+        builder.setStrict(true);
+        if (getReorderPoint(uri) < 0) {
+            builder.setProjectionMap(PROJECTION_MAP);
+        } else {
+            Map<String, String> projectionMap = new LinkedHashMap<>(PROJECTION_MAP);
+            projectionMap.put(SupplierReportEntry.COLUMN_BELOW_REORDER,
+                    belowReorderExpression("?"));
+            builder.setProjectionMap(projectionMap);
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the reorder point given by the URI, or -1 to use each book's own threshold.
+     */
+    private static int getReorderPoint(Uri uri) {
+        return UriParameters.getInt(uri, SupplierReportEntry.QUERY_PARAMETER_REORDER_POINT, -1);
+    }
+
+    private static String belowReorderExpression(String reorderPoint) {
+        return "SUM(" + BookEntry.COLUMN_BOOK_QUANTITY + " < " + reorderPoint + ") AS "
+                + SupplierReportEntry.COLUMN_BELOW_REORDER;
+    }
+
+    /**
+     * Returns the sort order if it only names report columns, the default order for null.
+     * Aggregates tie often, and a page of tied rows could repeat or skip suppliers, so an
+     * order without the supplier name gets it as the last term. Suppliers are unique in the
+     * report, so any order naming them is total already.
+     *
+     * @throws IllegalArgumentException for anything else, so callers can't sort by
+     *                                  arbitrary expressions
+     */
+    static String checkSortOrder(String sortOrder) {
+        if (sortOrder == null || sortOrder.trim().isEmpty()) {
+            return DEFAULT_SORT_ORDER;
+        }
+        boolean total = false;
+        for (String term : sortOrder.split(",")) {
+            String[] words = term.trim().split("\\s+");
+            boolean validDirection = words.length == 1 || (words.length == 2
+                    && (words[1].equalsIgnoreCase("ASC") || words[1].equalsIgnoreCase("DESC")));
+            if (!PROJECTION_MAP.containsKey(words[0]) || !validDirection) {
+                throw new IllegalArgumentException("Cannot sort the report by " + term);
+            }
+            total |= words[0].equals(SupplierReportEntry.COLUMN_SUPPLIER_NAME);
+        }
+        return total ? sortOrder : sortOrder + ", " + SupplierReportEntry.COLUMN_SUPPLIER_NAME;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.android.books.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tags of the catalog in memory: one {@link IdBitmap} of book IDs per tag, plus one of
+ * all books.
+ *
+ * A filter like "sci-fi AND discounted AND NOT hardcover" is then a few bitmap operations
+ * instead of one join per tag. Tag names are matched ignoring the case of ASCII letters,
+ * like the unique index of the tags table.
+ *
+ * Thread safe.
+ */
+final class TagBitmapIndex {
+    /** Books per tag ID */
+    private final Map<Long, IdBitmap> mTagBooks = new HashMap<>();
+
+    /** Tag IDs by case folded name */
+    private final Map<String, Long> mTagIds = new HashMap<>();
+
+    /** Every book, whether tagged or not */
+    private final IdBitmap mBooks = new IdBitmap();
+
+    synchronized void addBook(long bookId) {
+        mBooks.add(toIndexId(bookId));
+    }
+
+    /**
+     * Remove the book from the index, together with its tags.
+     */
+    synchronized void removeBook(long bookId) {
+        int id = toIndexId(bookId);
+        mBooks.remove(id);
+        for (IdBitmap books : mTagBooks.values()) {
+            books.remove(id);
+        }
+    }
+
+    synchronized void addTag(long tagId, String name) {
+        mTagIds.put(fold(name), tagId);
+        if (!mTagBooks.containsKey(tagId)) {
+            mTagBooks.put(tagId, new IdBitmap());
+        }
+    }
+
+    /**
+     * Remove the tag from the index, and so from all books.
+     */
+    synchronized void removeTag(long tagId) {
+        mTagBooks.remove(tagId);
+        mTagIds.values().remove(tagId);
+    }
+
+    /**
+     * Add the tag to the book. Unknown tags are ignored: the tag was created after the index
+     * read the tags, and is added with its books when its creation is passed on.
+     */
+    synchronized void tagBook(long tagId, long bookId) {
+        IdBitmap books = mTagBooks.get(tagId);
+        if (books != null) {
+            books.add(toIndexId(bookId));
+        }
+    }
+
+    synchronized void untagBook(long tagId, long bookId) {
+        IdBitmap books = mTagBooks.get(tagId);
+        if (books != null) {
+            books.remove(toIndexId(bookId));
+        }
+    }
+
+    /**
+     * Returns the IDs of the books that have all of the required tags, at least one of the
+     * optional tags if any are given, and none of the excluded tags, in ascending order.
+     * Unknown names match no book.
+     *
+     * @param requiredTags Tags the books must all have, ANDed
+     * @param optionalTags Tags the books must have at least one of, ORed
+     * @param excludedTags Tags the books must not have, subtracted
+     */
+    synchronized int[] filter(Collection<String> requiredTags,
+                              Collection<String> optionalTags,
+                              Collection<String> excludedTags) {
+        return evaluate(mBooks, lookUp(requiredTags), lookUp(optionalTags), lookUp(excludedTags))
+                .toArray();
+    }
+
+    /**
+     * Evaluate a filter over the bitmaps of its tags, see {@link #filter}.
+     */
+    static IdBitmap evaluate(IdBitmap books,
+                             List<IdBitmap> required,
+                             List<IdBitmap> optional,
+                             List<IdBitmap> excluded) {
+        // Intersect the smallest sets first, so every later step has less to look at.
+        List<IdBitmap> sorted = new ArrayList<>(required);
+        Collections.sort(sorted, new Comparator<IdBitmap>() {
+            @Override
+            public int compare(IdBitmap a, IdBitmap b) {
+                return Integer.compare(a.cardinality(), b.cardinality());
+            }
+        });
+        IdBitmap result = books;
+        for (IdBitmap tagBooks : sorted) {
+            result = result.and(tagBooks);
+        }
+        if (!optional.isEmpty()) {
+            IdBitmap any = new IdBitmap();
+            for (IdBitmap tagBooks : optional) {
+                any = any.or(tagBooks);
+            }
+            result = result.and(any);
+        }
+        for (IdBitmap tagBooks : excluded) {
+            result = result.andNot(tagBooks);
+        }
+        // Never hand out the set of all books itself.
+        return result == books ? books.and(books) : result;
+    }
+
+    private List<IdBitmap> lookUp(Collection<String> names) {
+        List<IdBitmap> bitmaps = new ArrayList<>(names.size());
+        for (String name : names) {
+            Long tagId = mTagIds.get(fold(name));
+            bitmaps.add(tagId == null ? new IdBitmap() : mTagBooks.get(tagId));
+        }
+        return bitmaps;
+    }
+
+    /** Folds the case of ASCII letters only, like SQLite's NOCASE collation */
+    private static String fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static int toIndexId(long bookId) {
+        if (bookId < 0 || bookId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Book ID " + bookId + " is out of range");
+        }
+        return (int) bookId;
+    }
+}
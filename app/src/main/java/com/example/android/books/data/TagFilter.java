@@ -0,0 +1,168 @@
+package com.example.android.books.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.android.books.data.BookContract.BookEntry;
+import com.example.android.books.data.BookContract.BookTagEntry;
+import com.example.android.books.data.BookContract.TagEntry;
+
+/**
+ * Filters the catalog by tags through a {@link TagBitmapIndex}.
+ *
+ * The index is loaded from the database by the first filter, and from then on the provider
+ * passes every committed change of the books and tags on to it, so it never has to be
+ * rebuilt. Loading and updates take the same lock: an update committed while the index was
+ * loading is applied once the load is done, and applying it twice does no harm. The load
+ * doesn't hold a transaction, which could deadlock with a batch passing on its changes, so
+ * the tables are read one after the other and the updates fill in what they missed.
+ */
+final class TagFilter {
+    private final BookDbHelper mDbHelper;
+
+    /** The index, or null until the first filter needs it */
+    private TagBitmapIndex mIndex;
+
+    TagFilter(BookDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Query the books matching the tag filter of the URI, see
+     * {@link BookEntry#buildFilterUri}. The selection and sort order apply as in a query of
+     * all books.
+     */
+    Cursor query(SQLiteDatabase database, Uri uri, String[] projection, String selection,
+                 String[] selectionArgs, String sortOrder) {
+        int[] bookIds = getIndex().filter(
+                uri.getQueryParameters(BookContract.QUERY_PARAMETER_TAG),
+                uri.getQueryParameters(BookContract.QUERY_PARAMETER_ANY_TAG),
+                uri.getQueryParameters(BookContract.QUERY_PARAMETER_NOT_TAG));
+        return database.query(BookEntry.TABLE_NAME,
+                projection,
+                DatabaseUtils.concatenateWhere(selection, getSelection(bookIds)),
+                selectionArgs,
+                null,
+                null,
+                sortOrder);
+    }
+
+    /**
+     * Returns the selection of the books with the given IDs. The IDs are numbers, so they are
+     * written into the SQL directly; there can be far more of them than a statement can bind.
+     */
+    static String getSelection(int[] bookIds) {
+        StringBuilder selection = new StringBuilder(BookEntry._ID).append(" IN (");
+        for (int i = 0; i < bookIds.length; i++) {
+            if (i > 0) {
+                selection.append(',');
+            }
+            selection.append(bookIds[i]);
+        }
+        return selection.append(')').toString();
+    }
+
+    synchronized void onBookAdded(long bookId) {
+        if (mIndex != null) {
+            mIndex.addBook(bookId);
+        }
+    }
+
+    /**
+     * A book came back from the archive with its tags. Restores are rare, so the index is just
+     * loaded again by the next filter rather than told about each tag.
+     */
+    synchronized void onBookRestored(long bookId) {
+        mIndex = null;
+    }
+
+    synchronized void onBooksRemoved(long[] bookIds) {
+        if (mIndex != null) {
+            for (long bookId : bookIds) {
+                mIndex.removeBook(bookId);
+            }
+        }
+    }
+
+    synchronized void onTagAdded(long tagId, String name) {
+        if (mIndex != null) {
+            mIndex.addTag(tagId, name);
+        }
+    }
+
+    synchronized void onTagRemoved(long tagId) {
+        if (mIndex != null) {
+            mIndex.removeTag(tagId);
+        }
+    }
+
+    synchronized void onBookTagged(long tagId, long bookId) {
+        if (mIndex != null) {
+            mIndex.tagBook(tagId, bookId);
+        }
+    }
+
+    synchronized void onBookUntagged(long tagId, long bookId) {
+        if (mIndex != null) {
+            mIndex.untagBook(tagId, bookId);
+        }
+    }
+
+    /**
+     * Drop the index after changes that weren't passed on, such as a restore or a batch that
+     * was rolled back after its operations passed theirs on. The next filter loads it again.
+     */
+    synchronized void invalidate() {
+        mIndex = null;
+    }
+
+    private synchronized TagBitmapIndex getIndex() {
+        if (mIndex == null) {
+            mIndex = load(mDbHelper.getReadableDatabase());
+        }
+        return mIndex;
+    }
+
+    private static TagBitmapIndex load(SQLiteDatabase database) {
+        TagBitmapIndex index = new TagBitmapIndex();
+        Cursor cursor = database.query(BookEntry.TABLE_NAME, new String[] { BookEntry._ID },
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                index.addBook(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = database.query(TagEntry.TABLE_NAME,
+                new String[] { TagEntry._ID, TagEntry.COLUMN_TAG_NAME },
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                index.addTag(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // In key order, so each tag's books arrive in ascending order and append cheaply.
+        cursor = database.query(BookTagEntry.TABLE_NAME,
+                new String[] {
+                        BookTagEntry.COLUMN_BOOK_TAG_TAG_ID,
+                        BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID
+                },
+                null, null, null, null,
+                BookTagEntry.COLUMN_BOOK_TAG_TAG_ID + ", " + BookTagEntry.COLUMN_BOOK_TAG_BOOK_ID);
+        try {
+            while (cursor.moveToNext()) {
+                index.tagBook(cursor.getLong(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return index;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.android.books.data;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory prefix index over book titles, for type-ahead suggestions.
+ *
+ * Titles are normalized (case folded, accents removed, whitespace collapsed) and every word
+ * start of every title becomes one entry of a sorted array, so "alg" finds
+ * "Introduction to Algorithms" as well as "Algorithms". A lookup is a binary search followed
+ * by a short scan, without touching the database.
+ *
+ * Entries are packed into a single long array as (title index &lt;&lt; 32 | word offset), so the
+ * index costs one long per word on top of the normalized titles.
+ */
+public final class TitleIndex {
+    /** An index without titles */
+    public static final TitleIndex EMPTY = new TitleIndex(new long[0], new String[0], new String[0]);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final String[] mNormalizedTitles;
+
+    /** Sorted word entries, see the class comment */
+    private final long[] mEntries;
+
+    private TitleIndex(long[] ids, String[] titles, String[] normalizedTitles) {
+        mIds = ids;
+        mTitles = titles;
+        mNormalizedTitles = normalizedTitles;
+        mEntries = buildEntries(normalizedTitles);
+    }
+
+    /**
+     * Build an index over the given books.
+     *
+     * @param ids    Book IDs
+     * @param titles Book titles, in the same order as the IDs
+     */
+    public static TitleIndex build(long[] ids, String[] titles) {
+        String[] normalizedTitles = new String[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            normalizedTitles[i] = normalize(titles[i]);
+        }
+        return new TitleIndex(ids.clone(), titles.clone(), normalizedTitles);
+    }
+
+    /**
+     * Returns the form titles and prefixes are compared in: lower case, without accents, with
+     * runs of whitespace collapsed to one space and no leading or trailing whitespace.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return WHITESPACE.matcher(stripped).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the number of indexed titles.
+     */
+    public int size() {
+        return mIds.length;
+    }
+
+    /**
+     * Find up to {@code limit} books with a word in their title starting with the prefix.
+     * Books are returned in the order of the matching words, each book at most once.
+     *
+     * @param prefix    What the user typed so far
+     * @param limit     Maximum number of suggestions
+     * @param outIds    Receives the IDs of the matches, at least {@code limit} long
+     * @param outTitles Receives the titles of the matches, at least {@code limit} long
+     * @return the number of matches written to the output arrays
+     */
+    public int suggest(String prefix, int limit, long[] outIds, String[] outTitles) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return 0;
+        }
+        int[] found = new int[limit];
+        int count = 0;
+        for (int i = lowerBound(normalizedPrefix); i < mEntries.length && count < limit; i++) {
+            int title = title(mEntries[i]);
+            if (!mNormalizedTitles[title].startsWith(normalizedPrefix, offset(mEntries[i]))) {
+                break;
+            }
+            if (!contains(found, count, title)) {
+                found[count++] = title;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            outIds[i] = mIds[found[i]];
+            outTitles[i] = mTitles[found[i]];
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the first entry whose text is not smaller than the prefix.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = mEntries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long entry = mEntries[middle];
+            if (compareSuffix(mNormalizedTitles[title(entry)], offset(entry), prefix, 0) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int title(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int offset(long entry) {
+        return (int) entry;
+    }
+
+    private static long entry(int title, int offset) {
+        return ((long) title << 32) | offset;
+    }
+
+    private static int compareSuffix(String a, int aOffset, String b, int bOffset) {
+        int aLength = a.length() - aOffset;
+        int bLength = b.length() - bOffset;
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            char aChar = a.charAt(aOffset + i);
+            char bChar = b.charAt(bOffset + i);
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private int compareEntries(long a, long b) {
+        int result = compareSuffix(mNormalizedTitles[title(a)], offset(a),
+                mNormalizedTitles[title(b)], offset(b));
+        return result != 0 ? result : Long.compare(a, b);
+    }
+
+    private long[] buildEntries(String[] normalizedTitles) {
+        int count = 0;
+        for (String title : normalizedTitles) {
+            count += wordCount(title);
+        }
+        long[] entries = new long[count];
+        int index = 0;
+        for (int t = 0; t < normalizedTitles.length; t++) {
+            String title = normalizedTitles[t];
+            for (int i = 0; i < title.length(); i++) {
+                if (i == 0 || title.charAt(i - 1) == ' ') {
+                    entries[index++] = entry(t, i);
+                }
+            }
+        }
+        sort(entries, new long[entries.length], 0, entries.length);
+        return entries;
+    }
+
+    private static int wordCount(String normalizedTitle) {
+        if (normalizedTitle.isEmpty()) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = 0; i < normalizedTitle.length(); i++) {
+            if (normalizedTitle.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Merge sort of entries[from, to) by their text, without boxing.
+     */
+    private void sort(long[] entries, long[] scratch, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(entries, scratch, from, middle);
+        sort(entries, scratch, middle, to);
+        if (compareEntries(entries[middle - 1], entries[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(entries, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareEntries(scratch[left], scratch[right]) <= 0)) {
+                entries[i] = scratch[left++];
+            } else {
+                entries[i] = scratch[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.books.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.example.android.books.data.BookContract.BookEntry;
+
+/**
+ * Keeps a {@link TitleIndex} of the catalog current for the search suggestions.
+ *
+ * The index is built on a background thread and rebuilt when the provider notifies a change
+ * to the books URI. Changes arriving in quick succession are folded into one rebuild. Until
+ * the first build finishes, lookups run against an empty index.
+ */
+class TitleSuggestions {
+    /** Tag for the log messages */
+    private static final String LOG_TAG = TitleSuggestions.class.getSimpleName();
+
+    /** Delay before rebuilding after a change, so bursts of writes cause one rebuild */
+    private static final long REBUILD_DELAY_MS = 300;
+
+    private final Context mContext;
+    private final BookDbHelper mDbHelper;
+    private final Handler mHandler;
+    private volatile TitleIndex mIndex = TitleIndex.EMPTY;
+
+    private final Runnable mRebuild = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                mIndex = load();
+            } catch (RuntimeException e) {
+                Log.w(LOG_TAG, "Failed to build the title index", e);
+            }
+        }
+    };
+
+    TitleSuggestions(Context context, BookDbHelper dbHelper) {
+        mContext = context;
+        mDbHelper = dbHelper;
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Build the index in the background and keep it current from change notifications.
+     */
+    void start() {
+        mContext.getContentResolver().registerContentObserver(BookEntry.CONTENT_URI, true,
+                new ContentObserver(mHandler) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        mHandler.removeCallbacks(mRebuild);
+                        mHandler.postDelayed(mRebuild, REBUILD_DELAY_MS);
+                    }
+                });
+        mHandler.post(mRebuild);
+    }
+
+    /**
+     * Returns the current index. Never null.
+     */
+    TitleIndex getIndex() {
+        return mIndex;
+    }
+
+    private TitleIndex load() {
+        Cursor cursor = mDbHelper.getReadableDatabase().query(BookEntry.TABLE_NAME,
+                new String[] { BookEntry._ID, BookEntry.COLUMN_BOOK_PRODUCT_NAME },
+                null, null, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            String[] titles = new String[ids.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                titles[i] = cursor.getString(1);
+            }
+            return TitleIndex.build(ids, titles);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.books.data;
+
+import android.net.Uri;
+
+import java.util.Locale;
+
+/**
+ * Parsing of the query parameters the provider accepts on its URIs.
+ */
+final class UriParameters {
+    // Only static helpers.
+    private UriParameters() {}
+
+    /**
+     * Returns the non-negative integer query parameter of the URI, or the default value if
+     * the URI doesn't have it.
+     *
+     * @throws IllegalArgumentException if the parameter isn't a non-negative integer
+     */
+    static int getInt(Uri uri, String name, int defaultValue) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 0) {
+                throw new IllegalArgumentException("Negative " + name + " in " + uri);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+        }
+    }
+
+    /**
+     * Returns the non-negative long query parameter of the URI, or the default value if
+     * the URI doesn't have it.
+     *
+     * @throws IllegalArgumentException if the parameter isn't a non-negative integer
+     */
+    static long getLong(Uri uri, String name, long defaultValue) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value);
+            if (result < 0) {
+                throw new IllegalArgumentException("Negative " + name + " in " + uri);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+        }
+    }
+
+    /**
+     * Returns the LIMIT clause of the page asked for by the URI, or null for all rows.
+     */
+    static String getLimit(Uri uri) {
+        int limit = getInt(uri, BookContract.QUERY_PARAMETER_LIMIT, -1);
+        int offset = getInt(uri, BookContract.QUERY_PARAMETER_OFFSET, 0);
+        if (limit < 0) {
+            if (offset > 0) {
+                throw new IllegalArgumentException("Offset without limit in " + uri);
+            }
+            return null;
+        }
+        return String.format(Locale.ROOT, "%d,%d", offset, limit);
+    }
+}
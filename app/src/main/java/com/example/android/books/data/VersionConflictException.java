@@ -0,0 +1,13 @@
+package com.example.android.books.data;
+
+/**
+ * Thrown by {@link BookProvider} when an update names the version it expects a book to be at,
+ * and another writer changed the book since.
+ */
+public class VersionConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.books;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the bytes a piece of code allocates on the calling thread, for tests that keep hot
+ * paths like binding a list row from allocating.
+ *
+ * The code runs a number of times to warm up first, so class loading and the first
+ * compilation don't count, and then many more times to average the rest out. Tests on a JVM
+ * without per thread allocation counters are skipped.
+ */
+final class AllocationMeter {
+    private static final int WARM_UP_RUNS = 20000;
+
+    // Only static helpers.
+    private AllocationMeter() {}
+
+    /**
+     * Returns the average number of bytes one run of the code allocates.
+     *
+     * @param runs Number of measured runs, each one gets its index
+     */
+    static double bytesPerRun(int runs, Run run) {
+        com.sun.management.ThreadMXBean threads = getThreadBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            run.run(i % runs);
+        }
+        // The counter itself allocates a little, measure it to take it out again.
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < runs; i++) {
+            run.run(i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+        return Math.max(0, allocated) / (double) runs;
+    }
+
+    /**
+     * Fail if one run of the code allocates more than the budget on average.
+     *
+     * @param name              What the code does, for the failure message
+     * @param budgetBytesPerRun Bytes one run may allocate on average
+     */
+    static void assertWithinBudget(String name, double budgetBytesPerRun, int runs, Run run) {
+        double bytesPerRun = bytesPerRun(runs, run);
+        if (bytesPerRun > budgetBytesPerRun) {
+            fail(String.format("%s allocates %.1f bytes per run, the budget is %.1f", name,
+                    bytesPerRun, budgetBytesPerRun));
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue("No allocation counters on this JVM",
+                threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue("No allocation counters on this JVM",
+                counters.isThreadAllocatedMemorySupported());
+        if (!counters.isThreadAllocatedMemoryEnabled()) {
+            counters.setThreadAllocatedMemoryEnabled(true);
+        }
+        return counters;
+    }
+
+    /**
+     * The code to measure.
+     */
+    interface Run {
+        void run(int index);
+    }
+}
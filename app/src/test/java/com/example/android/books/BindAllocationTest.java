@@ -0,0 +1,151 @@
+package com.example.android.books;
+
+import com.example.android.books.data.CatalogSnapshot;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests keeping the list bind and the editor population from allocating, see
+ * {@link AllocationMeter}.
+ */
+public class BindAllocationTest {
+    /** Bytes one catalog row bind may allocate. None, the slack is for the measurement. */
+    private static final double CATALOG_BIND_BUDGET_BYTES = 1;
+
+    /** Bytes one editor population may allocate. None, the slack is for the measurement. */
+    private static final double EDITOR_LOAD_BUDGET_BYTES = 1;
+
+    /** Rows bound per measurement */
+    private static final int ROWS = 5000;
+
+    /** Keeps the result of the probe reachable, so it can't be optimized away */
+    private static Object sEscape;
+
+    @Test
+    public void meter_seesAllocations() {
+        double bytes = AllocationMeter.bytesPerRun(ROWS, new AllocationMeter.Run() {
+            @Override
+            public void run(int index) {
+                sEscape = Integer.toString(index + 1000);
+            }
+        });
+        assertTrue("Measured " + bytes, bytes >= 16);
+    }
+
+    @Test
+    public void catalogBind_staysWithinBudget() {
+        final CatalogSnapshot snapshot = catalog(ROWS, false);
+        final CatalogRowText text = new CatalogRowText();
+
+        AllocationMeter.assertWithinBudget("Catalog row bind", CATALOG_BIND_BUDGET_BYTES, ROWS,
+                new AllocationMeter.Run() {
+                    @Override
+                    public void run(int index) {
+                        text.bind(snapshot, index);
+                    }
+                });
+    }
+
+    @Test
+    public void catalogBindWithCovers_staysWithinBudget() {
+        final CatalogSnapshot snapshot = catalog(ROWS, true);
+        final CatalogRowText text = new CatalogRowText();
+        // Stands in for the memory cache of the CoverLoader, every cover is a hit.
+        final Map<String, Object> coverCache = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            coverCache.put(CoverLoader.getCacheKey(snapshot.getCoverPath(i)), text);
+        }
+
+        AllocationMeter.assertWithinBudget("Catalog row bind with cover",
+                CATALOG_BIND_BUDGET_BYTES, ROWS, new AllocationMeter.Run() {
+                    @Override
+                    public void run(int index) {
+                        text.bind(snapshot, index);
+                        sEscape = coverCache.get(
+                                CoverLoader.getCacheKey(snapshot.getCoverPath(index)));
+                    }
+                });
+    }
+
+    @Test
+    public void editorLoad_staysWithinBudget() {
+        final EditorFields fields = new EditorFields();
+
+        AllocationMeter.assertWithinBudget("Editor population", EDITOR_LOAD_BUDGET_BYTES, ROWS,
+                new AllocationMeter.Run() {
+                    @Override
+                    public void run(int index) {
+                        // A new version every time, so every field is refilled.
+                        fields.onLoaded(index, "Algorithms", index * 37 - 500, index,
+                                "ACME Press", "555-0100", false);
+                    }
+                });
+    }
+
+    @Test
+    public void catalogBind_formatsNumbers() {
+        CatalogSnapshot snapshot = new CatalogSnapshot.Builder(2)
+                .add(1, "Algorithms", 1250, 7, null, 0)
+                .add(2, "SICP", CatalogSnapshot.NO_PRICE, -3, null, 0)
+                .build();
+        CatalogRowText text = new CatalogRowText();
+
+        text.bind(snapshot, 0);
+        assertEquals("1250", new String(text.priceChars, 0, text.priceLength));
+        assertEquals("7", new String(text.quantityChars, 0, text.quantityLength));
+
+        text.bind(snapshot, 1);
+        assertEquals(-1, text.priceLength);
+        assertEquals("-3", new String(text.quantityChars, 0, text.quantityLength));
+    }
+
+    @Test
+    public void editorLoad_refillsOnlyWhatChanged() {
+        EditorFields fields = new EditorFields();
+        fields.prefill(4, "SICP", 10, 2);
+
+        // The catalog handed this version over, only the supplier is new.
+        assertEquals(EditorFields.SUPPLIER_FIELDS, fields.onLoaded(4, "SICP", 10, 2, "MIT", null, false));
+        assertEquals(0, fields.onLoaded(4, "SICP", 10, 2, "MIT", null, false));
+
+        assertEquals(EditorFields.BOOK_FIELDS | EditorFields.SUPPLIER_FIELDS,
+                fields.onLoaded(5, "SICP", 12, 1, "MIT", null, false));
+        assertEquals("12", new String(fields.priceChars, 0, fields.priceLength));
+        assertEquals(5, fields.getVersion());
+
+        // While the user edits, a newer version changes nothing.
+        assertEquals(0, fields.onLoaded(6, "SICP", 14, 1, "MIT", null, true));
+        assertEquals(5, fields.getVersion());
+        assertEquals("12", new String(fields.priceChars, 0, fields.priceLength));
+
+        fields.reset();
+        assertEquals(-1, fields.getVersion());
+        assertEquals(EditorFields.BOOK_FIELDS | EditorFields.SUPPLIER_FIELDS,
+                fields.onLoaded(5, "SICP", 12, 1, "MIT", null, false));
+
+        // Edited before the first load: the supplier the catalog didn't hand over still
+        // arrives, the rest stays as typed.
+        fields = new EditorFields();
+        fields.prefill(4, "SICP", 10, 2);
+        assertEquals(EditorFields.SUPPLIER_FIELDS,
+                fields.onLoaded(5, "SICP", 12, 1, "MIT", null, true));
+        assertEquals(4, fields.getVersion());
+        assertEquals(0, fields.onLoaded(5, "SICP", 12, 1, "MIT", null, true));
+        assertEquals(0, fields.getChangedColumns("SICP", 10, 2, "MIT", ""));
+    }
+
+    private static CatalogSnapshot catalog(int count, boolean covers) {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(count);
+        for (int i = 0; i < count; i++) {
+            int price = i % 10 == 0 ? CatalogSnapshot.NO_PRICE : i * 101;
+            builder.add(i + 1, "Book " + i, price, i % 500, covers ? "cover_" + i + ".jpg" : null,
+                    0);
+        }
+        return builder.build();
+    }
+}
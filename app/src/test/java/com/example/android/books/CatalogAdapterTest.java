@@ -0,0 +1,23 @@
+package com.example.android.books;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the number formatting of {@link CatalogAdapter}.
+ */
+public class CatalogAdapterTest {
+    private static String format(int value) {
+        char[] buffer = new char[11];
+        return new String(buffer, 0, CatalogAdapter.formatInt(value, buffer));
+    }
+
+    @Test
+    public void formatInt_matchesIntegerToString() {
+        int[] values = {0, 1, 9, 10, 42, 1000, -1, -987, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int value : values) {
+            assertEquals(Integer.toString(value), format(value));
+        }
+    }
+}
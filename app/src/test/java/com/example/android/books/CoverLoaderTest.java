@@ -0,0 +1,27 @@
+package com.example.android.books;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the downsampling math of {@link CoverLoader}.
+ */
+public class CoverLoaderTest {
+    @Test
+    public void inSampleSize_keepsImageAtLeastAsLargeAsRow() {
+        assertEquals(8, CoverLoader.calculateInSampleSize(1600, 2400, 168, 168));
+        assertEquals(4, CoverLoader.calculateInSampleSize(1600, 2400, 300, 300));
+    }
+
+    @Test
+    public void inSampleSize_isOneForSmallImages() {
+        assertEquals(1, CoverLoader.calculateInSampleSize(100, 150, 168, 168));
+        assertEquals(1, CoverLoader.calculateInSampleSize(300, 300, 168, 168));
+    }
+
+    @Test
+    public void inSampleSize_ignoresUnknownRowSize() {
+        assertEquals(1, CoverLoader.calculateInSampleSize(1600, 2400, 0, 0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.books;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the change tracking of {@link EditorFields}.
+ */
+public class EditorFieldsTest {
+    private static final int ALL_COLUMNS = EditorFields.CHANGED_NAME
+            | EditorFields.CHANGED_PRICE
+            | EditorFields.CHANGED_QUANTITY
+            | EditorFields.CHANGED_SUPPLIER_NAME
+            | EditorFields.CHANGED_SUPPLIER_PHONE;
+
+    @Test
+    public void changedColumns_noneWhenSavedAsLoaded() {
+        EditorFields fields = loaded();
+        assertEquals(0, fields.getChangedColumns("SICP", 10, 2, "MIT Press", ""));
+    }
+
+    @Test
+    public void changedColumns_onlyTheEditedOnes() {
+        EditorFields fields = loaded();
+        assertEquals(EditorFields.CHANGED_QUANTITY,
+                fields.getChangedColumns("SICP", 10, 1, "MIT Press", ""));
+        assertEquals(EditorFields.CHANGED_NAME | EditorFields.CHANGED_SUPPLIER_PHONE,
+                fields.getChangedColumns("SICP 2nd ed.", 10, 2, "MIT Press", "555-0100"));
+    }
+
+    @Test
+    public void changedColumns_comparesTextsAsSaved() {
+        EditorFields fields = new EditorFields();
+        fields.onLoaded(3, " SICP ", 10, 2, "MIT Press", null, false);
+        // Surrounding spaces are trimmed on save, and a missing phone number saves as empty.
+        assertEquals(0, fields.getChangedColumns("SICP", 10, 2, "MIT Press", ""));
+    }
+
+    @Test
+    public void changedColumns_againstTheLatestLoad() {
+        EditorFields fields = loaded();
+        fields.onLoaded(4, "SICP", 12, 2, "MIT Press", "555-0100", false);
+        assertEquals(0, fields.getChangedColumns("SICP", 12, 2, "MIT Press", "555-0100"));
+        assertEquals(EditorFields.CHANGED_PRICE,
+                fields.getChangedColumns("SICP", 10, 2, "MIT Press", "555-0100"));
+    }
+
+    @Test
+    public void changedColumns_againstTheEditedVersion() {
+        EditorFields fields = loaded();
+        // Someone else saved the book while the user was editing it.
+        assertEquals(0, fields.onLoaded(4, "SICP", 12, 2, "MIT Press", "555-0100", true));
+        assertEquals(3, fields.getVersion());
+        assertEquals(EditorFields.CHANGED_QUANTITY,
+                fields.getChangedColumns("SICP", 10, 1, "MIT Press", ""));
+    }
+
+    @Test
+    public void changedColumns_supplierTypedBeforeLoad() {
+        // The catalog handed the book over, its supplier isn't loaded yet and shows empty.
+        EditorFields fields = new EditorFields();
+        fields.prefill(3, "SICP", 10, 2);
+        assertEquals(0, fields.getChangedColumns("SICP", 10, 2, "", ""));
+        assertEquals(EditorFields.CHANGED_SUPPLIER_NAME,
+                fields.getChangedColumns("SICP", 10, 2, "MIT Press", ""));
+    }
+
+    @Test
+    public void changedColumns_allAfterReset() {
+        EditorFields fields = loaded();
+        fields.reset();
+        assertEquals(ALL_COLUMNS, fields.getChangedColumns("SICP", 10, 2, "MIT Press", "1"));
+        assertEquals(EditorFields.CHANGED_PRICE | EditorFields.CHANGED_QUANTITY,
+                fields.getChangedColumns("", 0, 0, "", ""));
+    }
+
+    private static EditorFields loaded() {
+        EditorFields fields = new EditorFields();
+        fields.onLoaded(3, "SICP", 10, 2, "MIT Press", null, false);
+        return fields;
+    }
+}
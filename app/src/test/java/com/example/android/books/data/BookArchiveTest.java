@@ -0,0 +1,31 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BookArchive}.
+ */
+public class BookArchiveTest {
+    @Test
+    public void createTableSql_keepsColumnOrderAndTypes() {
+        assertEquals("CREATE TABLE books_archive (_id INTEGER PRIMARY KEY, product_name TEXT, "
+                        + "price INTEGER, cover_path TEXT)",
+                BookArchive.getCreateTableSql(
+                        new String[] { "_id", "product_name", "price", "cover_path" },
+                        new String[] { "INTEGER", "TEXT", "INTEGER", "TEXT" }));
+    }
+
+    @Test
+    public void createTableSql_leavesOutMissingTypes() {
+        assertEquals("CREATE TABLE books_archive (_id INTEGER PRIMARY KEY, note)",
+                BookArchive.getCreateTableSql(new String[] { "_id", "note" },
+                        new String[] { "INTEGER", "" }));
+    }
+
+    @Test
+    public void selection_listsIds() {
+        assertEquals("_id IN (3,17,42)", BookArchive.getSelection(new long[] { 3, 17, 42 }));
+    }
+}
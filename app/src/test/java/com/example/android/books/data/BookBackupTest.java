@@ -0,0 +1,108 @@
+package com.example.android.books.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the archive handling of {@link BookBackup}.
+ */
+public class BookBackupTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void compressThenDecompress_restoresSameBytes() throws IOException {
+        byte[] content = sampleContent();
+        File source = write("inventory.db", content);
+        File archive = new File(mFolder.getRoot(), "backup.gz");
+
+        String checksum = BookBackup.compress(source, archive);
+        BookBackup.verify(archive);
+        File restored = new File(mFolder.getRoot(), "restored.db");
+        BookBackup.decompress(archive, restored);
+
+        assertTrue(Arrays.equals(content, Files.readAllBytes(restored.toPath())));
+        assertEquals(64, checksum.length());
+        assertTrue(archive.length() < content.length);
+        assertFalse(new File(archive.getPath() + ".partial").exists());
+    }
+
+    @Test
+    public void checksumFile_usesSha256sumFormat() throws IOException {
+        File archive = new File(mFolder.getRoot(), "backup.gz");
+        String checksum = BookBackup.compress(write("inventory.db", sampleContent()), archive);
+
+        String line = new String(Files.readAllBytes(
+                BookBackup.getChecksumFile(archive).toPath()), "UTF-8");
+        assertEquals(checksum + "  backup.gz\n", line);
+    }
+
+    @Test(expected = IOException.class)
+    public void verify_rejectsTamperedArchive() throws IOException {
+        File archive = new File(mFolder.getRoot(), "backup.gz");
+        BookBackup.compress(write("inventory.db", sampleContent()), archive);
+
+        RandomAccessFile file = new RandomAccessFile(archive, "rw");
+        try {
+            file.seek(archive.length() / 2);
+            int b = file.read();
+            file.seek(archive.length() / 2);
+            file.write(b ^ 0xff);
+        } finally {
+            file.close();
+        }
+        BookBackup.verify(archive);
+    }
+
+    @Test(expected = IOException.class)
+    public void verify_rejectsMissingChecksum() throws IOException {
+        File archive = new File(mFolder.getRoot(), "backup.gz");
+        BookBackup.compress(write("inventory.db", sampleContent()), archive);
+        assertTrue(BookBackup.getChecksumFile(archive).delete());
+
+        BookBackup.verify(archive);
+    }
+
+    @Test
+    public void compareVersions_comparesEachNumber() {
+        int[] vacuumInto = { 3, 27, 0 };
+        assertTrue(BookBackup.compareVersions("3.22.0", vacuumInto) < 0);
+        assertTrue(BookBackup.compareVersions("3.9.2", vacuumInto) < 0);
+        assertEquals(0, BookBackup.compareVersions("3.27", vacuumInto));
+        assertTrue(BookBackup.compareVersions("3.28.0", vacuumInto) > 0);
+        assertTrue(BookBackup.compareVersions("3.100.1", vacuumInto) > 0);
+        assertTrue(BookBackup.compareVersions("unknown", vacuumInto) < 0);
+    }
+
+    /** Database-like content: repetitive pages with some noise, so it compresses */
+    private static byte[] sampleContent() {
+        byte[] content = new byte[256 * 1024];
+        Random random = new Random(7);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = i % 64 == 0 ? (byte) random.nextInt() : (byte) (i % 4096 / 16);
+        }
+        return content;
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = mFolder.newFile(name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CatalogGenerator}.
+ */
+public class CatalogGeneratorTest {
+
+    /** Collects the generated books as strings */
+    private static final class ListSink implements CatalogGenerator.RowSink {
+        final List<String> rows = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<Integer> prices = new ArrayList<>();
+        final List<Integer> quantities = new ArrayList<>();
+        final Map<String, Integer> booksPerSupplier = new HashMap<>();
+
+        @Override
+        public void addBook(String name, int price, int quantity, String supplierName,
+                            String supplierPhone) {
+            rows.add(name + "|" + price + "|" + quantity + "|" + supplierName + "|"
+                    + supplierPhone);
+            names.add(name);
+            prices.add(price);
+            quantities.add(quantity);
+            Integer count = booksPerSupplier.get(supplierName);
+            booksPerSupplier.put(supplierName, count == null ? 1 : count + 1);
+        }
+    }
+
+    private static ListSink generate(long seed, int count) {
+        ListSink sink = new ListSink();
+        new CatalogGenerator(seed, count).generate(sink);
+        return sink;
+    }
+
+    @Test
+    public void generate_sameSeedSameCatalog() {
+        assertEquals(generate(7, 500).rows, generate(7, 500).rows);
+    }
+
+    @Test
+    public void generate_otherSeedOtherCatalog() {
+        assertNotEquals(generate(7, 500).rows, generate(8, 500).rows);
+    }
+
+    @Test
+    public void generate_smallerCatalogIsPrefixOfLarger() {
+        // The supplier population grows with the size, so only the titles line up.
+        List<String> small = generate(3, 100).names;
+        List<String> large = generate(3, 1000).names;
+        assertEquals(small, large.subList(0, 100));
+    }
+
+    @Test
+    public void generate_namesAreUnique() {
+        ListSink sink = generate(11, 5000);
+        assertEquals(5000, sink.names.size());
+        assertEquals(5000, new HashSet<>(sink.names).size());
+    }
+
+    @Test
+    public void generate_nameLengthsVary() {
+        Set<Integer> wordCounts = new HashSet<>();
+        for (String name : generate(5, 2000).names) {
+            wordCounts.add(name.split(" ").length);
+        }
+        assertTrue(wordCounts.contains(2));
+        assertTrue(wordCounts.size() >= 5);
+    }
+
+    @Test
+    public void generate_pricesAndQuantitiesAreValid() {
+        ListSink sink = generate(13, 5000);
+        int outOfStock = 0;
+        int expensive = 0;
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(sink.prices.get(i) >= 1);
+            assertTrue(sink.quantities.get(i) >= 0);
+            if (sink.quantities.get(i) == 0) {
+                outOfStock++;
+            }
+            if (sink.prices.get(i) > 45) {
+                expensive++;
+            }
+        }
+        assertTrue(outOfStock > 0);
+        assertTrue(expensive > 0);
+    }
+
+    @Test
+    public void generate_suppliersAreSkewed() {
+        ListSink sink = generate(17, 10000);
+        int largest = 0;
+        for (int count : sink.booksPerSupplier.values()) {
+            largest = Math.max(largest, count);
+        }
+        // With a uniform spread every supplier would have about 50 books.
+        assertTrue(largest > 500);
+        assertTrue(sink.booksPerSupplier.size() <= 200);
+    }
+
+    @Test
+    public void generate_emptyCatalog() {
+        assertTrue(generate(1, 0).rows.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNegativeCount() {
+        new CatalogGenerator(1, -1);
+    }
+
+    @Test
+    public void sample_picksFirstRankReachingTheValue() {
+        double[] cumulative = { 0.5, 0.75, 1.0 };
+        assertEquals(0, CatalogGenerator.sample(cumulative, 0.0));
+        assertEquals(0, CatalogGenerator.sample(cumulative, 0.5));
+        assertEquals(1, CatalogGenerator.sample(cumulative, 0.6));
+        assertEquals(2, CatalogGenerator.sample(cumulative, 0.99));
+    }
+
+    @Test
+    public void zipfCumulative_endsAtOne() {
+        double[] cumulative = CatalogGenerator.zipfCumulative(100, 1.1);
+        assertEquals(1.0, cumulative[99], 1e-9);
+        assertTrue(cumulative[0] > cumulative[1] - cumulative[0]);
+    }
+}
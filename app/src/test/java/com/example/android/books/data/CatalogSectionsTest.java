@@ -0,0 +1,67 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CatalogSections}.
+ */
+public class CatalogSectionsTest {
+    private static final CatalogSections SECTIONS = new CatalogSections(
+            new String[] { "A", "C", "M" }, new int[] { 3, 1, 5 });
+
+    @Test
+    public void getPositionForSection_sumsUpEarlierCounts() {
+        assertEquals(0, SECTIONS.getPositionForSection(0));
+        assertEquals(3, SECTIONS.getPositionForSection(1));
+        assertEquals(4, SECTIONS.getPositionForSection(2));
+        assertEquals(9, SECTIONS.getCount());
+    }
+
+    @Test
+    public void getPositionForSection_clampsOutOfRange() {
+        assertEquals(0, SECTIONS.getPositionForSection(-1));
+        assertEquals(4, SECTIONS.getPositionForSection(7));
+    }
+
+    @Test
+    public void getSectionForPosition_findsEnclosingSection() {
+        assertEquals(0, SECTIONS.getSectionForPosition(0));
+        assertEquals(0, SECTIONS.getSectionForPosition(2));
+        assertEquals(1, SECTIONS.getSectionForPosition(3));
+        assertEquals(2, SECTIONS.getSectionForPosition(4));
+        assertEquals(2, SECTIONS.getSectionForPosition(8));
+        assertEquals(2, SECTIONS.getSectionForPosition(100));
+    }
+
+    @Test
+    public void emptyLabel_becomesHash() {
+        CatalogSections sections = new CatalogSections(new String[] { "", "B" }, new int[] { 1, 1 });
+        assertArrayEquals(new String[] { "#", "B" }, sections.getLabels());
+    }
+
+    @Test
+    public void empty_hasNoSections() {
+        assertEquals(0, CatalogSections.EMPTY.getLabels().length);
+        assertEquals(0, CatalogSections.EMPTY.getPositionForSection(3));
+        assertEquals(0, CatalogSections.EMPTY.getSectionForPosition(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMismatchedArrays() {
+        new CatalogSections(new String[] { "A" }, new int[0]);
+    }
+
+    @Test
+    public void snapshotWithSections_sharesRows() {
+        CatalogSnapshot snapshot = new CatalogSnapshot.Builder(1)
+                .add(1, "Algorithms", 10, 2, null, 0)
+                .build();
+        CatalogSnapshot withSections = snapshot.withSections(SECTIONS);
+        assertSame(CatalogSections.EMPTY, snapshot.getSections());
+        assertSame(SECTIONS, withSections.getSections());
+        assertSame(snapshot.getNamePool(), withSections.getNamePool());
+        assertEquals(1, withSections.getCount());
+    }
+}
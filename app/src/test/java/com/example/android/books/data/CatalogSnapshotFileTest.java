@@ -0,0 +1,81 @@
+package com.example.android.books.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CatalogSnapshotFile}.
+ */
+public class CatalogSnapshotFileTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static CatalogSnapshot sampleSnapshot() {
+        return new CatalogSnapshot.Builder(3)
+                .add(1, "Algorithms", 10, 5, null, 3)
+                .add(2, "Compilers", CatalogSnapshot.NO_PRICE, 0, "2-1536000000000.jpg", 12)
+                .add(5, "", 7, 1, null, 0)
+                .build();
+    }
+
+    @Test
+    public void read_returnsWrittenSnapshot() throws IOException {
+        File file = mFolder.newFile();
+        CatalogSnapshotFile.write(file, sampleSnapshot(), 42);
+
+        CatalogSnapshot snapshot = CatalogSnapshotFile.read(file, 42);
+
+        assertNotNull(snapshot);
+        assertEquals(3, snapshot.getCount());
+        assertEquals(1, snapshot.getId(0));
+        assertEquals("Algorithms", snapshot.getName(0));
+        assertEquals(10, snapshot.getPrice(0));
+        assertEquals(5, snapshot.getQuantity(0));
+        assertEquals(3, snapshot.getVersion(0));
+        assertNull(snapshot.getCoverPath(0));
+        assertEquals("Compilers", snapshot.getName(1));
+        assertEquals(CatalogSnapshot.NO_PRICE, snapshot.getPrice(1));
+        assertEquals("2-1536000000000.jpg", snapshot.getCoverPath(1));
+        assertEquals(12, snapshot.getVersion(1));
+        assertEquals(5, snapshot.getId(2));
+        assertEquals("", snapshot.getName(2));
+    }
+
+    @Test
+    public void read_ignoresStaleGeneration() throws IOException {
+        File file = mFolder.newFile();
+        CatalogSnapshotFile.write(file, sampleSnapshot(), 41);
+
+        assertNull(CatalogSnapshotFile.read(file, 42));
+    }
+
+    @Test
+    public void read_ignoresForeignFile() throws IOException {
+        File file = mFolder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[64]);
+        out.close();
+
+        assertNull(CatalogSnapshotFile.read(file, 0));
+    }
+
+    @Test
+    public void read_ignoresMissingFile() {
+        assertNull(CatalogSnapshotFile.read(new File(mFolder.getRoot(), "missing"), 0));
+    }
+
+    @Test
+    public void emptySnapshot_roundTrips() throws IOException {
+        File file = mFolder.newFile();
+        CatalogSnapshotFile.write(file, CatalogSnapshot.EMPTY, 0);
+
+        assertEquals(0, CatalogSnapshotFile.read(file, 0).getCount());
+    }
+}
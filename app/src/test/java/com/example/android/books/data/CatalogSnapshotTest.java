@@ -0,0 +1,51 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CatalogSnapshot}.
+ */
+public class CatalogSnapshotTest {
+    @Test
+    public void builder_keepsRowsInOrder() {
+        CatalogSnapshot snapshot = new CatalogSnapshot.Builder(1)
+                .add(7, "Algorithms", 10, 5, null, 0)
+                .add(3, "SICP", CatalogSnapshot.NO_PRICE, 0, "3-1.jpg", 0)
+                .add(9, "", 4, 2, null, 0)
+                .build();
+
+        assertEquals(3, snapshot.getCount());
+        assertEquals(7, snapshot.getId(0));
+        assertEquals("Algorithms", snapshot.getName(0));
+        assertEquals(10, snapshot.getPrice(0));
+        assertEquals(5, snapshot.getQuantity(0));
+        assertNull(snapshot.getCoverPath(0));
+
+        assertEquals(3, snapshot.getId(1));
+        assertEquals("SICP", snapshot.getName(1));
+        assertEquals(CatalogSnapshot.NO_PRICE, snapshot.getPrice(1));
+        assertEquals("3-1.jpg", snapshot.getCoverPath(1));
+
+        assertEquals("", snapshot.getName(2));
+        assertEquals(0, snapshot.getNameLength(2));
+    }
+
+    @Test
+    public void namePool_holdsNamesBackToBack() {
+        CatalogSnapshot snapshot = new CatalogSnapshot.Builder(2)
+                .add(1, "ab", 0, 0, null, 0)
+                .add(2, "cde", 0, 0, null, 0)
+                .build();
+
+        assertEquals("abcde", new String(snapshot.getNamePool()));
+        assertEquals(2, snapshot.getNameStart(1));
+        assertEquals(3, snapshot.getNameLength(1));
+    }
+
+    @Test
+    public void empty_hasNoRows() {
+        assertEquals(0, CatalogSnapshot.EMPTY.getCount());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the merging of {@link ChangeNotifier}.
+ */
+public class ChangeNotifierTest {
+    private static final String BOOKS = "content://com.example.android.books/books";
+    private static final String LOCATIONS = "content://com.example.android.books/locations";
+
+    @Test
+    public void coalesce_notifiesEachUriOnce() {
+        assertEquals(Collections.singletonList(BOOKS + "/3"),
+                ChangeNotifier.coalesce(Arrays.asList(BOOKS + "/3", BOOKS + "/3", BOOKS + "/3")));
+    }
+
+    @Test
+    public void coalesce_dropsDescendantsOfChangedUris() {
+        List<String> uris = ChangeNotifier.coalesce(Arrays.asList(
+                BOOKS + "/3", BOOKS + "/4/prices", BOOKS, LOCATIONS + "/2/books", LOCATIONS));
+        assertEquals(Arrays.asList(BOOKS, LOCATIONS), uris);
+    }
+
+    @Test
+    public void coalesce_keepsSiblingsAndLookalikes() {
+        List<String> uris = ChangeNotifier.coalesce(Arrays.asList(
+                BOOKS + "/3", BOOKS + "/31", BOOKS + "-archive/3"));
+        assertEquals(Arrays.asList(BOOKS + "-archive/3", BOOKS + "/3", BOOKS + "/31"), uris);
+    }
+
+    @Test
+    public void coalesce_ofNothingIsNothing() {
+        assertTrue(ChangeNotifier.coalesce(Collections.<String>emptyList()).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.books.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DatabaseAccessMonitor}.
+ */
+public class DatabaseAccessMonitorTest {
+    private boolean mOnMainThread;
+
+    @Before
+    public void setUp() {
+        DatabaseAccessMonitor.reset();
+        DatabaseAccessMonitor.setPolicy(DatabaseAccessMonitor.Policy.THROW);
+        DatabaseAccessMonitor.setThreadChecker(new DatabaseAccessMonitor.ThreadChecker() {
+            @Override
+            public boolean isMainThread() {
+                return mOnMainThread;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseAccessMonitor.setPolicy(DatabaseAccessMonitor.Policy.OFF);
+        DatabaseAccessMonitor.setThreadChecker(null);
+        DatabaseAccessMonitor.reset();
+    }
+
+    @Test
+    public void backgroundOperation_isRecorded() {
+        DatabaseAccessMonitor.begin("query", "content://com.example.android.books/books").end();
+
+        List<DatabaseAccessMonitor.Access> accesses = DatabaseAccessMonitor.getRecentAccesses();
+        assertEquals(1, accesses.size());
+        DatabaseAccessMonitor.Access access = accesses.get(0);
+        assertEquals("query", access.operation);
+        assertEquals("content://com.example.android.books/books", access.uri);
+        assertEquals(Thread.currentThread().getName(), access.threadName);
+        assertFalse(access.mainThread);
+        assertTrue(access.durationNanos >= 0);
+        assertTrue(DatabaseAccessMonitor.getViolations().isEmpty());
+    }
+
+    @Test(expected = DatabaseAccessMonitor.ViolationException.class)
+    public void mainThreadOperation_throwsUnderThrowPolicy() {
+        mOnMainThread = true;
+        DatabaseAccessMonitor.begin("delete", "content://com.example.android.books/books");
+    }
+
+    @Test
+    public void mainThreadOperation_isRecordedAsViolation() {
+        mOnMainThread = true;
+        try {
+            DatabaseAccessMonitor.begin("update", "content://com.example.android.books/books/1");
+            fail("Expected a violation");
+        } catch (DatabaseAccessMonitor.ViolationException expected) {
+            // expected
+        }
+        assertEquals(1, DatabaseAccessMonitor.getViolations().size());
+        assertEquals("update", DatabaseAccessMonitor.getViolations().get(0).operation);
+    }
+
+    @Test
+    public void offPolicy_recordsNothing() {
+        DatabaseAccessMonitor.setPolicy(DatabaseAccessMonitor.Policy.OFF);
+        mOnMainThread = true;
+        DatabaseAccessMonitor.begin("insert", "content://com.example.android.books/books").end();
+
+        assertTrue(DatabaseAccessMonitor.getRecentAccesses().isEmpty());
+        assertTrue(DatabaseAccessMonitor.getViolations().isEmpty());
+    }
+}
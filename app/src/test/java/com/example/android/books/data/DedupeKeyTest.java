@@ -0,0 +1,45 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DedupeKey}.
+ */
+public class DedupeKeyTest {
+    @Test
+    public void normalize_foldsCaseAndCollapsesWhitespace() {
+        assertEquals("the art of programming",
+                DedupeKey.normalize("  The \t Art\nof   PROGRAMMING "));
+    }
+
+    @Test
+    public void normalize_treatsCompatibilityFormsAlike() {
+        // Composed and decomposed e with acute accent, a ligature and full width letters.
+        assertEquals(DedupeKey.normalize("Caf\u00e9"), DedupeKey.normalize("Cafe\u0301"));
+        assertEquals("office", DedupeKey.normalize("O\ufb03ce"));
+        assertEquals("acme", DedupeKey.normalize("\uff21\uff23\uff2d\uff25"));
+        // A no-break space separates words like any other space.
+        assertEquals("acme press", DedupeKey.normalize("Acme\u00a0Press"));
+    }
+
+    @Test
+    public void normalize_nullIsEmpty() {
+        assertEquals("", DedupeKey.normalize(null));
+        assertEquals("", DedupeKey.normalize(" \t "));
+    }
+
+    @Test
+    public void of_matchesSameBookWrittenDifferently() {
+        assertEquals(DedupeKey.of("The  Art of Programming", "ACME Press"),
+                DedupeKey.of("the art of programming", "Acme press "));
+    }
+
+    @Test
+    public void of_keepsNameAndSupplierApart() {
+        assertNotEquals(DedupeKey.of("Dune", "Ace"), DedupeKey.of("Dune", "Chilton"));
+        assertNotEquals(DedupeKey.of("a b", "c"), DedupeKey.of("a", "b c"));
+        assertEquals(DedupeKey.of("Dune", null), DedupeKey.of("Dune", ""));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DemandModel}.
+ */
+public class DemandModelTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void addSale_firstSaleCountsFully() {
+        assertEquals(3, DemandModel.addSale(0, 0, 3, 10 * DAY), DELTA);
+    }
+
+    @Test
+    public void addSale_decaysOlderSales() {
+        double timeConstantMillis = DemandModel.TIME_CONSTANT_DAYS * DAY;
+        double decayed = DemandModel.addSale(10, 0, 2, (long) timeConstantMillis);
+        assertEquals(10 * Math.exp(-1) + 2, decayed, 1e-6);
+    }
+
+    @Test
+    public void addSale_ignoresClockGoingBackwards() {
+        assertEquals(5, DemandModel.addSale(4, 10 * DAY, 1, 9 * DAY), DELTA);
+    }
+
+    @Test
+    public void dailyDemand_convergesToSteadyRate() {
+        // Selling 2 units every day settles at a demand of about 2 per day.
+        double decayed = 0;
+        for (int day = 1; day <= 1000; day++) {
+            decayed = DemandModel.addSale(decayed, (day - 1) * DAY, 2, day * DAY);
+        }
+        assertEquals(2, DemandModel.dailyDemand(decayed, 1000 * DAY, 1000 * DAY), 0.05);
+    }
+
+    @Test
+    public void daysRemaining_isInfiniteWithoutDemand() {
+        assertTrue(Double.isInfinite(DemandModel.daysRemaining(5, 0)));
+        assertEquals(2.5, DemandModel.daysRemaining(5, 2), DELTA);
+    }
+
+    @Test
+    public void suggestedReorder_coversHorizon() {
+        assertEquals(55, DemandModel.suggestedReorder(5, 2, 30));
+        assertEquals(0, DemandModel.suggestedReorder(100, 2, 30));
+        assertEquals(1, DemandModel.suggestedReorder(0, 0.01, 30));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link IdBitmap}, checked against a {@link BitSet}.
+ */
+public class IdBitmapTest {
+    @Test
+    public void add_keepsIdsSortedAndUnique() {
+        IdBitmap bitmap = IdBitmap.of(70000, 5, 3, 5, 65536);
+
+        assertArrayEquals(new int[] { 3, 5, 65536, 70000 }, bitmap.toArray());
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(bitmap.contains(65536));
+        assertFalse(bitmap.contains(4));
+    }
+
+    @Test
+    public void remove_dropsEmptyChunks() {
+        IdBitmap bitmap = IdBitmap.of(1, 100000);
+
+        bitmap.remove(100000);
+        bitmap.remove(2);
+
+        assertArrayEquals(new int[] { 1 }, bitmap.toArray());
+        bitmap.remove(1);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void denseChunk_switchesToBitmapAndBack() {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id = 0; id <= IdBitmap.ARRAY_MAX; id++) {
+            bitmap.add(id * 2);
+        }
+        assertEquals(1, bitmap.bitmapChunkCount());
+        assertEquals(IdBitmap.ARRAY_MAX + 1, bitmap.cardinality());
+
+        bitmap.remove(0);
+        assertEquals(0, bitmap.bitmapChunkCount());
+        assertEquals(IdBitmap.ARRAY_MAX, bitmap.cardinality());
+        assertTrue(bitmap.contains(2 * IdBitmap.ARRAY_MAX));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsNegativeId() {
+        new IdBitmap().add(-1);
+    }
+
+    @Test
+    public void operations_matchBitSet() {
+        Random random = new Random(46);
+        // Sparse and dense chunks, overlapping in some chunks only.
+        BitSet a = randomIds(random, 0, 200000, 0.01);
+        a.or(randomIds(random, 65536, 131072, 0.5));
+        BitSet b = randomIds(random, 0, 300000, 0.02);
+        b.or(randomIds(random, 100000, 140000, 0.7));
+
+        IdBitmap bitmapA = toBitmap(a);
+        IdBitmap bitmapB = toBitmap(b);
+
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        BitSet or = (BitSet) a.clone();
+        or.or(b);
+        BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+
+        assertArrayEquals(toArray(and), bitmapA.and(bitmapB).toArray());
+        assertArrayEquals(toArray(or), bitmapA.or(bitmapB).toArray());
+        assertArrayEquals(toArray(andNot), bitmapA.andNot(bitmapB).toArray());
+        // The operands stay as they were.
+        assertArrayEquals(toArray(a), bitmapA.toArray());
+        assertArrayEquals(toArray(b), bitmapB.toArray());
+    }
+
+    private static BitSet randomIds(Random random, int from, int to, double density) {
+        BitSet ids = new BitSet();
+        for (int id = from; id < to; id++) {
+            if (random.nextDouble() < density) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    private static IdBitmap toBitmap(BitSet ids) {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    private static int[] toArray(BitSet ids) {
+        int[] array = ids.stream().toArray();
+        Arrays.sort(array);
+        return array;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.books.data;
+
+import com.example.android.books.data.BookContract.PriceEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PriceResolution}.
+ */
+public class PriceResolutionTest {
+    /** 2018-03-15T13:45:10.123Z */
+    private static final long MID_MARCH = 1521121510123L;
+
+    /** 2018-03-15T00:00:00Z */
+    private static final long MARCH_15 = 1521072000000L;
+
+    /** 2018-03-01T00:00:00Z */
+    private static final long MARCH_1 = 1519862400000L;
+
+    @Test
+    public void pickLevel_picksCoarsestLevelNotLongerThanResolution() {
+        assertEquals(PriceEntry.LEVEL_RAW, PriceResolution.pickLevel(0));
+        assertEquals(PriceEntry.LEVEL_RAW,
+                PriceResolution.pickLevel(PriceResolution.DAY_MILLIS - 1));
+        assertEquals(PriceEntry.LEVEL_DAY, PriceResolution.pickLevel(PriceResolution.DAY_MILLIS));
+        assertEquals(PriceEntry.LEVEL_DAY,
+                PriceResolution.pickLevel(PriceResolution.MONTH_MILLIS - 1));
+        assertEquals(PriceEntry.LEVEL_MONTH,
+                PriceResolution.pickLevel(PriceResolution.MONTH_MILLIS));
+        assertEquals(PriceEntry.LEVEL_MONTH, PriceResolution.pickLevel(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void defaultResolution_spreadsRangeOverDefaultPoints() {
+        long year = 365 * PriceResolution.DAY_MILLIS;
+        assertEquals(year / PriceEntry.DEFAULT_POINTS,
+                PriceResolution.defaultResolution(MID_MARCH, MID_MARCH + year));
+        // A year over 300 points is about a day per point.
+        assertEquals(PriceEntry.LEVEL_DAY,
+                PriceResolution.pickLevel(PriceResolution.defaultResolution(0, year)));
+        assertEquals(0, PriceResolution.defaultResolution(MID_MARCH, 0));
+    }
+
+    @Test
+    public void periodStart_roundsDownToUtcDay() {
+        assertEquals(MARCH_15, PriceResolution.periodStart(PriceEntry.LEVEL_DAY, MID_MARCH));
+        assertEquals(MARCH_15, PriceResolution.periodStart(PriceEntry.LEVEL_DAY, MARCH_15));
+        assertEquals(-PriceResolution.DAY_MILLIS,
+                PriceResolution.periodStart(PriceEntry.LEVEL_DAY, -1));
+    }
+
+    @Test
+    public void periodStart_roundsDownToUtcMonth() {
+        assertEquals(MARCH_1, PriceResolution.periodStart(PriceEntry.LEVEL_MONTH, MID_MARCH));
+        assertEquals(MARCH_1, PriceResolution.periodStart(PriceEntry.LEVEL_MONTH, MARCH_1));
+        assertEquals(MARCH_1, PriceResolution.periodStart(PriceEntry.LEVEL_MONTH,
+                MARCH_1 + 31 * PriceResolution.DAY_MILLIS - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void periodStart_rejectsRawLevel() {
+        PriceResolution.periodStart(PriceEntry.LEVEL_RAW, MID_MARCH);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QueryPlanChecker}.
+ */
+public class QueryPlanCheckerTest {
+    @Test
+    public void isTableScan_detectsBothPlanFormats() {
+        assertTrue(QueryPlanChecker.isTableScan("SCAN TABLE books"));
+        assertTrue(QueryPlanChecker.isTableScan("SCAN books"));
+        assertTrue(QueryPlanChecker.isTableScan("SCAN TABLE books AS b"));
+    }
+
+    @Test
+    public void isTableScan_acceptsIndexedSteps() {
+        assertFalse(QueryPlanChecker.isTableScan(
+                "SCAN TABLE books USING COVERING INDEX books_supplier_report"));
+        assertFalse(QueryPlanChecker.isTableScan(
+                "SEARCH TABLE books USING INTEGER PRIMARY KEY (rowid=?)"));
+        assertFalse(QueryPlanChecker.isTableScan("SEARCH books USING INDEX books_low_since "
+                + "(low_since>? AND low_since<?)"));
+        assertFalse(QueryPlanChecker.isTableScan("SCAN CONSTANT ROW"));
+        assertFalse(QueryPlanChecker.isTableScan("SCAN SUBQUERY 1"));
+    }
+
+    @Test
+    public void tableOf_returnsTableName() {
+        assertEquals("books", QueryPlanChecker.tableOf("SCAN TABLE books"));
+        assertEquals("stock_movements", QueryPlanChecker.tableOf(
+                "SEARCH stock_movements USING INDEX stock_movements_book (book_id=?)"));
+        assertNull(QueryPlanChecker.tableOf("USE TEMP B-TREE FOR ORDER BY"));
+        assertNull(QueryPlanChecker.tableOf("SCAN CONSTANT ROW"));
+    }
+
+    @Test
+    public void findProblems_flagsScansAndTemporarySorts() {
+        assertEquals(Arrays.asList("SCAN TABLE books", "USE TEMP B-TREE FOR ORDER BY"),
+                QueryPlanChecker.findProblems(Arrays.asList(
+                        "SCAN TABLE books", "USE TEMP B-TREE FOR ORDER BY")));
+        assertEquals(Collections.emptyList(), QueryPlanChecker.findProblems(
+                Collections.singletonList("SEARCH TABLE books USING INTEGER PRIMARY KEY (rowid=?)")));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.android.books.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StartupTrace}.
+ */
+public class StartupTraceTest {
+    @Before
+    public void setUp() {
+        StartupTrace.reset();
+    }
+
+    @Test
+    public void unrecordedPoint_hasNoDuration() {
+        assertFalse(StartupTrace.isRecorded(StartupTrace.FIRST_QUERY));
+        assertEquals(-1, StartupTrace.getDurationNanos(StartupTrace.FIRST_QUERY));
+        assertEquals(-1, StartupTrace.getTimeToFirstRowNanos());
+    }
+
+    @Test
+    public void end_recordsDurationAndCompletion() throws InterruptedException {
+        long begin = StartupTrace.begin();
+        Thread.sleep(2);
+        StartupTrace.end(StartupTrace.DATABASE_OPEN, begin);
+
+        assertTrue(StartupTrace.isRecorded(StartupTrace.DATABASE_OPEN));
+        long duration = StartupTrace.getDurationNanos(StartupTrace.DATABASE_OPEN);
+        assertTrue(duration >= 2000000);
+        assertTrue(StartupTrace.getCompletionNanos(StartupTrace.DATABASE_OPEN) >= duration);
+    }
+
+    @Test
+    public void end_onlyKeepsFirstOccurrence() {
+        StartupTrace.end(StartupTrace.FIRST_BIND, StartupTrace.begin());
+        long first = StartupTrace.getDurationNanos(StartupTrace.FIRST_BIND);
+
+        StartupTrace.end(StartupTrace.FIRST_BIND, StartupTrace.begin() - 1000000000L);
+
+        assertEquals(first, StartupTrace.getDurationNanos(StartupTrace.FIRST_BIND));
+        assertEquals(StartupTrace.getCompletionNanos(StartupTrace.FIRST_BIND),
+                StartupTrace.getTimeToFirstRowNanos());
+    }
+}
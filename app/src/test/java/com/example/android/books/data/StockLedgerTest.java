@@ -0,0 +1,43 @@
+package com.example.android.books.data;
+
+import com.example.android.books.data.BookContract.MovementEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StockLedger}.
+ */
+public class StockLedgerTest {
+    @Test
+    public void resolveKind_derivesKindFromDelta() {
+        assertEquals(MovementEntry.KIND_SALE, StockLedger.resolveKind(null, -2));
+        assertEquals(MovementEntry.KIND_RECEIPT, StockLedger.resolveKind(null, 3));
+    }
+
+    @Test
+    public void resolveKind_usesGivenKind() {
+        assertEquals(MovementEntry.KIND_WRITE_OFF, StockLedger.resolveKind(
+                String.valueOf(MovementEntry.KIND_WRITE_OFF), -1));
+        assertEquals(MovementEntry.KIND_ADJUSTMENT, StockLedger.resolveKind(
+                String.valueOf(MovementEntry.KIND_ADJUSTMENT), -1));
+        assertEquals(MovementEntry.KIND_ADJUSTMENT, StockLedger.resolveKind(
+                String.valueOf(MovementEntry.KIND_ADJUSTMENT), 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolveKind_rejectsUnknownKind() {
+        StockLedger.resolveKind("9", -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolveKind_rejectsReceiptLoweringQuantity() {
+        StockLedger.resolveKind(String.valueOf(MovementEntry.KIND_RECEIPT), -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolveKind_rejectsSaleRaisingQuantity() {
+        StockLedger.resolveKind(String.valueOf(MovementEntry.KIND_SALE), 1);
+    }
+}
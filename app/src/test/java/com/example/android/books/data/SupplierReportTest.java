@@ -0,0 +1,40 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SupplierReport}.
+ */
+public class SupplierReportTest {
+    @Test
+    public void checkSortOrder_defaultsToSupplierName() {
+        assertEquals(SupplierReport.DEFAULT_SORT_ORDER, SupplierReport.checkSortOrder(null));
+        assertEquals(SupplierReport.DEFAULT_SORT_ORDER, SupplierReport.checkSortOrder(" "));
+    }
+
+    @Test
+    public void checkSortOrder_acceptsReportColumns() {
+        String sortOrder = "stock_value DESC, below_reorder asc,supplier_name";
+        assertEquals(sortOrder, SupplierReport.checkSortOrder(sortOrder));
+    }
+
+    @Test
+    public void checkSortOrder_breaksTiesBySupplierName() {
+        assertEquals("title_count DESC, supplier_name",
+                SupplierReport.checkSortOrder("title_count DESC"));
+        assertEquals("supplier_name DESC, units", SupplierReport.checkSortOrder(
+                "supplier_name DESC, units"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkSortOrder_rejectsOtherColumns() {
+        SupplierReport.checkSortOrder("price");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkSortOrder_rejectsExpressions() {
+        SupplierReport.checkSortOrder("units DESC; DROP TABLE books");
+    }
+}
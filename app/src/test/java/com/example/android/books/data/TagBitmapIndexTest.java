@@ -0,0 +1,103 @@
+package com.example.android.books.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TagBitmapIndex}.
+ */
+public class TagBitmapIndexTest {
+    private static final long SCI_FI = 1;
+    private static final long DISCOUNTED = 2;
+    private static final long HARDCOVER = 3;
+
+    private final TagBitmapIndex mIndex = new TagBitmapIndex();
+
+    @Before
+    public void setUp() {
+        for (long bookId = 1; bookId <= 6; bookId++) {
+            mIndex.addBook(bookId);
+        }
+        mIndex.addTag(SCI_FI, "Sci-Fi");
+        mIndex.addTag(DISCOUNTED, "discounted");
+        mIndex.addTag(HARDCOVER, "hardcover");
+        for (long bookId : new long[] { 1, 2, 3, 4 }) {
+            mIndex.tagBook(SCI_FI, bookId);
+        }
+        for (long bookId : new long[] { 2, 3, 5 }) {
+            mIndex.tagBook(DISCOUNTED, bookId);
+        }
+        mIndex.tagBook(HARDCOVER, 3);
+    }
+
+    @Test
+    public void filter_combinesRequiredAndExcludedTags() {
+        assertArrayEquals(new int[] { 2 },
+                mIndex.filter(tags("sci-fi", "discounted"), tags(), tags("hardcover")));
+    }
+
+    @Test
+    public void filter_optionalTagsMatchAny() {
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5 },
+                mIndex.filter(tags(), tags("sci-fi", "discounted"), tags()));
+        assertArrayEquals(new int[] { 2, 3 },
+                mIndex.filter(tags("sci-fi"), tags("discounted", "unknown"), tags()));
+    }
+
+    @Test
+    public void filter_withoutTagsMatchesAllBooks() {
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6 }, mIndex.filter(tags(), tags(), tags()));
+        assertArrayEquals(new int[] { 6 },
+                mIndex.filter(tags(), tags(), tags("sci-fi", "discounted")));
+    }
+
+    @Test
+    public void filter_unknownRequiredTagMatchesNothing() {
+        assertEquals(0, mIndex.filter(tags("sci-fi", "paperback"), tags(), tags()).length);
+        // An unknown excluded tag excludes nothing.
+        assertEquals(4, mIndex.filter(tags("sci-fi"), tags(), tags("paperback")).length);
+    }
+
+    @Test
+    public void changes_showInLaterFilters() {
+        mIndex.untagBook(HARDCOVER, 3);
+        mIndex.removeBook(1);
+        mIndex.addBook(7);
+        mIndex.tagBook(SCI_FI, 7);
+
+        assertArrayEquals(new int[] { 2, 3, 4, 7 },
+                mIndex.filter(tags("sci-fi"), tags(), tags("hardcover")));
+
+        mIndex.removeTag(DISCOUNTED);
+        assertEquals(0, mIndex.filter(tags("discounted"), tags(), tags()).length);
+    }
+
+    @Test
+    public void tagBook_ignoresUnknownTag() {
+        mIndex.tagBook(42, 1);
+
+        mIndex.addTag(42, "new");
+        assertEquals(0, mIndex.filter(tags("new"), tags(), tags()).length);
+    }
+
+    @Test
+    public void evaluate_neverReturnsTheBooksItself() {
+        IdBitmap books = IdBitmap.of(1, 2);
+        List<IdBitmap> none = Collections.emptyList();
+
+        IdBitmap result = TagBitmapIndex.evaluate(books, none, none, none);
+        result.add(3);
+
+        assertArrayEquals(new int[] { 1, 2 }, books.toArray());
+    }
+
+    private static List<String> tags(String... names) {
+        return Arrays.asList(names);
+    }
+}
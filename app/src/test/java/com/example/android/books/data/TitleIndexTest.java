@@ -0,0 +1,70 @@
+package com.example.android.books.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TitleIndex}.
+ */
+public class TitleIndexTest {
+    private static final TitleIndex INDEX = TitleIndex.build(
+            new long[] { 1, 2, 3, 4 },
+            new String[] { "Introduction to Algorithms", "Algorithms", "\u00c9lan  Vital", "SICP" });
+
+    @Test
+    public void normalize_foldsCaseAccentsAndWhitespace() {
+        assertEquals("elan vital", TitleIndex.normalize("  \u00c9lan \t Vital "));
+        assertEquals("", TitleIndex.normalize(null));
+    }
+
+    @Test
+    public void suggest_matchesAnyWordStart() {
+        long[] ids = new long[10];
+        String[] titles = new String[10];
+
+        int count = INDEX.suggest("alg", 10, ids, titles);
+
+        // Both match on the same word, so they keep the catalog order
+        assertEquals(2, count);
+        assertEquals(1, ids[0]);
+        assertEquals("Introduction to Algorithms", titles[0]);
+        assertEquals(2, ids[1]);
+        assertEquals("Algorithms", titles[1]);
+    }
+
+    @Test
+    public void suggest_ignoresCaseAndAccents() {
+        long[] ids = new long[10];
+        String[] titles = new String[10];
+
+        assertEquals(1, INDEX.suggest("ELA", 10, ids, titles));
+        assertEquals(3, ids[0]);
+        assertEquals(1, INDEX.suggest("v\u00eet", 10, ids, titles));
+        assertEquals(3, ids[0]);
+    }
+
+    @Test
+    public void suggest_doesNotMatchInsideWords() {
+        assertEquals(0, INDEX.suggest("gorithms", 10, new long[10], new String[10]));
+    }
+
+    @Test
+    public void suggest_respectsLimit() {
+        long[] ids = new long[1];
+        assertEquals(1, INDEX.suggest("a", 1, ids, new String[1]));
+        assertEquals(1, ids[0]);
+    }
+
+    @Test
+    public void suggest_returnsEachBookOnce() {
+        TitleIndex index = TitleIndex.build(new long[] { 5 }, new String[] { "Data and data" });
+        assertEquals(1, index.suggest("data", 10, new long[10], new String[10]));
+    }
+
+    @Test
+    public void suggest_emptyPrefixReturnsNothing() {
+        assertEquals(0, INDEX.suggest(" ", 10, new long[10], new String[10]));
+        assertEquals(0, TitleIndex.EMPTY.suggest("a", 10, new long[10], new String[10]));
+    }
+}